@@ -0,0 +1,219 @@
+package TestDS;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+import de.zib.scalaris.ErlangValue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Stores values in a compact tagged format in Erlang binaries. Every element starts with a one byte tag; strings,
+ * arrays and objects follow with their length as a varint, integers are zigzag varints. Strings holding a plain
+ * decimal number, like all IDs given by BG, are stored as varints as well. Compared to JSON text there are no quotes,
+ * separators or escapes to produce and scan.
+ */
+public class BinaryCodec implements ValueCodec {
+    private static final byte NULL = 0;
+    private static final byte FALSE = 1;
+    private static final byte TRUE = 2;
+    private static final byte LONG = 3;
+    private static final byte DOUBLE = 4;
+    private static final byte STRING = 5;
+    private static final byte ARRAY = 6;
+    private static final byte OBJECT = 7;
+    private static final byte DECIMAL_STRING = 8;
+    private static final int INITIAL_CAPACITY = 256;
+
+    @Override
+    public Object encode(JsonElement value) {
+        Writer writer = new Writer();
+        writer.writeElement(value);
+        return writer.toByteArray();
+    }
+
+    @Override
+    public JsonElement decode(ErlangValue value) {
+        return new Reader(value.binaryValue()).readElement();
+    }
+
+    private static final class Writer {
+        private byte[] buffer = new byte[INITIAL_CAPACITY];
+        private int size;
+
+        private void writeElement(JsonElement element) {
+            if (element.isJsonObject()) {
+                JsonObject object = element.getAsJsonObject();
+                writeByte(OBJECT);
+                writeVarint(object.entrySet().size());
+                for (Map.Entry<String, JsonElement> entry : object.entrySet()) {
+                    writeString(entry.getKey());
+                    writeElement(entry.getValue());
+                }
+            } else if (element.isJsonArray()) {
+                JsonArray array = element.getAsJsonArray();
+                writeByte(ARRAY);
+                writeVarint(array.size());
+                for (JsonElement child : array) {
+                    writeElement(child);
+                }
+            } else if (element.isJsonNull()) {
+                writeByte(NULL);
+            } else {
+                writePrimitive(element.getAsJsonPrimitive());
+            }
+        }
+
+        private void writePrimitive(JsonPrimitive primitive) {
+            if (primitive.isBoolean()) {
+                writeByte(primitive.getAsBoolean() ? TRUE : FALSE);
+            } else if (primitive.isNumber()) {
+                String number = primitive.getAsString();
+                if (isIntegral(number)) {
+                    long value = Long.parseLong(number);
+                    writeByte(LONG);
+                    writeVarint((value << 1) ^ (value >> 63));
+                } else {
+                    writeByte(DOUBLE);
+                    writeVarint(Double.doubleToLongBits(primitive.getAsDouble()));
+                }
+            } else {
+                String string = primitive.getAsString();
+                if (isDecimal(string)) {
+                    writeByte(DECIMAL_STRING);
+                    writeVarint(Long.parseLong(string));
+                } else {
+                    writeByte(STRING);
+                    writeString(string);
+                }
+            }
+        }
+
+        private void writeString(String value) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarint(bytes.length);
+            ensureCapacity(bytes.length);
+            System.arraycopy(bytes, 0, buffer, size, bytes.length);
+            size += bytes.length;
+        }
+
+        private void writeVarint(long value) {
+            ensureCapacity(10);
+            while ((value & ~0x7FL) != 0) {
+                buffer[size++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buffer[size++] = (byte) value;
+        }
+
+        private void writeByte(byte value) {
+            ensureCapacity(1);
+            buffer[size++] = value;
+        }
+
+        private void ensureCapacity(int length) {
+            if (size + length > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, size + length));
+            }
+        }
+
+        private byte[] toByteArray() {
+            return Arrays.copyOf(buffer, size);
+        }
+    }
+
+    private static final class Reader {
+        private final byte[] buffer;
+        private int position;
+
+        private Reader(byte[] buffer) {
+            this.buffer = buffer;
+        }
+
+        private JsonElement readElement() {
+            byte tag = buffer[position++];
+            switch (tag) {
+                case NULL:
+                    return JsonNull.INSTANCE;
+                case FALSE:
+                    return new JsonPrimitive(false);
+                case TRUE:
+                    return new JsonPrimitive(true);
+                case LONG:
+                    long value = readVarint();
+                    return new JsonPrimitive((value >>> 1) ^ -(value & 1));
+                case DOUBLE:
+                    return new JsonPrimitive(Double.longBitsToDouble(readVarint()));
+                case STRING:
+                    return new JsonPrimitive(readString());
+                case DECIMAL_STRING:
+                    return new JsonPrimitive(String.valueOf(readVarint()));
+                case ARRAY:
+                    JsonArray array = new JsonArray();
+                    for (long i = readVarint(); i > 0; i--) {
+                        array.add(readElement());
+                    }
+                    return array;
+                case OBJECT:
+                    JsonObject object = new JsonObject();
+                    for (long i = readVarint(); i > 0; i--) {
+                        String key = readString();
+                        object.add(key, readElement());
+                    }
+                    return object;
+                default:
+                    throw new IllegalArgumentException("Unknown tag " + tag + " at " + (position - 1));
+            }
+        }
+
+        private String readString() {
+            int length = (int) readVarint();
+            String value = new String(buffer, position, length, StandardCharsets.UTF_8);
+            position += length;
+            return value;
+        }
+
+        private long readVarint() {
+            long value = 0;
+            for (int shift = 0; ; shift += 7) {
+                byte b = buffer[position++];
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns whether a string is a non-negative decimal number which reads back the same, so without leading zeros.
+     */
+    private static boolean isDecimal(String string) {
+        if (string.isEmpty() || string.length() > 18 || (string.charAt(0) == '0' && string.length() > 1)) {
+            return false;
+        }
+        for (int i = 0; i < string.length(); i++) {
+            if (string.charAt(i) < '0' || string.charAt(i) > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isIntegral(String number) {
+        int start = number.startsWith("-") ? 1 : 0;
+        if (number.length() == start || number.length() - start > 18) {
+            return false;
+        }
+        for (int i = start; i < number.length(); i++) {
+            if (number.charAt(i) < '0' || number.charAt(i) > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+}
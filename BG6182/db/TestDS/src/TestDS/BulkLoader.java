@@ -0,0 +1,249 @@
+package TestDS;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+import de.zib.scalaris.NotFoundException;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Loads BG's data without transactions and without reading anything back. Resources and images are final when BG
+ * inserts them, so they are written right away in request lists shared by all load threads. Profiles and ID lists are
+ * collected in memory instead and every user key is written exactly once when the last {@link TestDSClient} of the
+ * load phase cleans up, spread over the executor's connections.
+ * <p>
+ * Friendships and friend requests added while loading only exist after that; the loader must not be used while the
+ * benchmark runs.
+ */
+public class BulkLoader implements TestDSClientConstants {
+    private static final int WRITES_PER_BATCH = 128;
+    private static final int USERS_PER_BATCH = 64;
+    private static BulkLoader instance;
+
+    private final TransactionHelper transactionHelper;
+    private final UserStore userStore;
+    private final int topK;
+    private final Executor executor;
+    private final Map<String, Draft> drafts = new ConcurrentHashMap<>();
+    private final Queue<Runnable> writes = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queuedWrites = new AtomicInteger();
+    private int references;
+
+    /**
+     * Profile, ID lists and newest resources on the wall of a user collected so far.
+     */
+    private static final class Draft {
+        private JsonObject profile;
+        private final Map<UserList, JsonArray> ids = new EnumMap<>(UserList.class);
+        private final List<JsonObject> recent = new ArrayList<>();
+    }
+
+    /**
+     * Creates a loader.
+     *
+     * @param transactionHelper A TransactionHelper instance shared by all load threads.
+     * @param userStore         Key layout of users.
+     * @param topK              Number of newest resources kept per wall, see {@link #TOP_K_PROPERTY}.
+     * @param executor          Executor writing the users in parallel, or null to write them on the calling thread.
+     */
+    BulkLoader(TransactionHelper transactionHelper, UserStore userStore, int topK, Executor executor) {
+        this.transactionHelper = transactionHelper;
+        this.userStore = userStore;
+        this.topK = topK;
+        this.executor = executor;
+    }
+
+    /**
+     * Returns the loader of this process, creating it on first use with the helper and store of the first client.
+     *
+     * @param bgProperties      Properties passed to BG with -p.
+     * @param transactionHelper A TransactionHelper instance.
+     * @param userStore         Key layout of users.
+     * @param executor          Executor writing the users in parallel, or null.
+     * @return The shared loader, or null if scalaris.bulkload is false.
+     */
+    public static synchronized BulkLoader getInstance(Properties bgProperties, TransactionHelper transactionHelper,
+                                                      UserStore userStore, Executor executor) {
+        if (!Boolean.parseBoolean(bgProperties.getProperty(BULK_LOAD_PROPERTY, BULK_LOAD_PROPERTY_DEFAULT))) {
+            return null;
+        }
+        if (instance == null) {
+            instance = new BulkLoader(transactionHelper, userStore,
+                    Integer.parseInt(bgProperties.getProperty(TOP_K_PROPERTY, TOP_K_PROPERTY_DEFAULT)), executor);
+        }
+        return instance;
+    }
+
+    /**
+     * Registers a client which loads data. The users are written once every registered client has closed.
+     */
+    public synchronized void open() {
+        references++;
+    }
+
+    /**
+     * Unregisters a client. The last one writes the users collected so far.
+     *
+     * @throws RetryException If a request list could not be written.
+     */
+    public void close() {
+        synchronized (this) {
+            if (--references > 0) {
+                return;
+            }
+        }
+        flush();
+    }
+
+    /**
+     * Adds a user. Its images are written with the next batch.
+     *
+     * @param userId    User ID given by BG.
+     * @param profile   Profile attributes.
+     * @param pic       The profile image, or null.
+     * @param thumbnail The thumbnail, or null.
+     */
+    public void addUser(String userId, JsonObject profile, byte[] pic, byte[] thumbnail) {
+        Draft draft = draft(userId);
+        synchronized (draft) {
+            draft.profile = profile;
+        }
+        if (pic != null || thumbnail != null) {
+            queue(() -> userStore.writeImages(userId, pic, thumbnail));
+        }
+    }
+
+    /**
+     * Adds a resource, which is written with the next batch, to the wall of its user, in front of the newest ones, and
+     * to the created resources of its creator.
+     *
+     * @param resourceId Resource ID given by BG.
+     * @param resource   Resource attributes.
+     * @param wallUserId ID of the user on whose wall the resource is posted.
+     * @param creatorId  ID of the user who created the resource.
+     */
+    public void addResource(String resourceId, JsonObject resource, String wallUserId, String creatorId) {
+        addId(wallUserId, UserList.WALL, resourceId);
+        Draft draft = draft(wallUserId);
+        synchronized (draft) {
+            draft.recent.add(0, resource);
+            if (draft.recent.size() > topK) {
+                draft.recent.remove(topK);
+            }
+        }
+        addId(creatorId, UserList.CREATED, resourceId);
+        queue(() -> transactionHelper.writeResource(resourceId, resource));
+    }
+
+    /**
+     * Appends an ID to a list of a user.
+     *
+     * @param userId User ID given by BG.
+     * @param list   The list.
+     * @param id     The ID to append.
+     */
+    public void addId(String userId, UserList list, String id) {
+        Draft draft = draft(userId);
+        synchronized (draft) {
+            draft.ids.computeIfAbsent(list, l -> new JsonArray()).add(new JsonPrimitive(id));
+        }
+    }
+
+    private Draft draft(String userId) {
+        return drafts.computeIfAbsent(userId, id -> new Draft());
+    }
+
+    /**
+     * Queues a write and sends a batch once enough writes are queued.
+     *
+     * @param write The write.
+     */
+    private void queue(Runnable write) {
+        writes.add(write);
+        if (queuedWrites.incrementAndGet() >= WRITES_PER_BATCH) {
+            writeQueued();
+        }
+    }
+
+    /**
+     * Sends up to {@value #WRITES_PER_BATCH} queued writes.
+     */
+    private void writeQueued() {
+        List<Runnable> batch = new ArrayList<>(WRITES_PER_BATCH);
+        Runnable write;
+        while (batch.size() < WRITES_PER_BATCH && (write = writes.poll()) != null) {
+            batch.add(write);
+        }
+        queuedWrites.addAndGet(-batch.size());
+        runBatched(() -> batch.forEach(Runnable::run));
+    }
+
+    /**
+     * Sends the queued writes and writes every user which was added, {@value #USERS_PER_BATCH} users per batch.
+     */
+    private void flush() {
+        while (!writes.isEmpty()) {
+            writeQueued();
+        }
+
+        List<String> userIds = new ArrayList<>(drafts.keySet());
+        List<CompletableFuture<Void>> batches = new ArrayList<>();
+        for (int from = 0; from < userIds.size(); from += USERS_PER_BATCH) {
+            List<String> batch = userIds.subList(from, Math.min(from + USERS_PER_BATCH, userIds.size()));
+            batches.add(CompletableFuture.runAsync(() -> writeUsers(batch),
+                    executor != null ? executor : Runnable::run));
+        }
+
+        try {
+            CompletableFuture.allOf(batches.toArray(new CompletableFuture<?>[batches.size()])).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        } finally {
+            drafts.clear();
+        }
+    }
+
+    private void writeUsers(List<String> userIds) {
+        runBatched(() -> {
+            for (String userId : userIds) {
+                Draft draft = drafts.get(userId);
+                if (draft.profile == null) {
+                    System.out.println("Skipping the lists of user " + userId + " which was not loaded");
+                    continue;
+                }
+                JsonObject user = draft.profile;
+                for (UserList list : UserList.values()) {
+                    user.add(list.getField(), draft.ids.getOrDefault(list, new JsonArray()));
+                }
+                userStore.writeUser(userId, user);
+                transactionHelper.writeRecentResources(userId, draft.recent);
+            }
+        });
+    }
+
+    private void runBatched(Runnable writes) {
+        try {
+            transactionHelper.runBatched(() -> {
+                writes.run();
+                return null;
+            });
+        } catch (NotFoundException e) {
+            throw new IllegalStateException("A batch of writes read a missing key", e);
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package TestDS;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+import de.zib.scalaris.ErlangValue;
+import de.zib.scalaris.NotFoundException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * The original layout: each user is one JSON document under u&lt;id&gt; holding the profile and all ID lists. Every
+ * change to a list rewrites the whole document. The images are binaries under u&lt;id&gt;:pic and u&lt;id&gt;:tpic,
+ * so rewriting the document does not move them.
+ */
+public class DocumentUserStore implements UserStore {
+    private static final String PIC = "pic";
+    private static final String TPIC = "tpic";
+    private final TransactionHelper transactionHelper;
+
+    /**
+     * Creates a store on top of the given helper.
+     *
+     * @param transactionHelper A TransactionHelper instance.
+     */
+    public DocumentUserStore(TransactionHelper transactionHelper) {
+        this.transactionHelper = transactionHelper;
+    }
+
+    @Override
+    public void writeUser(String userId, JsonObject user) {
+        transactionHelper.writeUser(userId, user);
+    }
+
+    @Override
+    public void writeImages(String userId, byte[] pic, byte[] thumbnail) {
+        if (pic != null) {
+            transactionHelper.writeImage(userId, PIC, pic);
+        }
+        if (thumbnail != null) {
+            transactionHelper.writeImage(userId, TPIC, thumbnail);
+        }
+    }
+
+    @Override
+    public UserView readUser(String userId, boolean pic, UserList... lists) throws NotFoundException {
+        UserView user;
+        if (pic) {
+            List<ErlangValue> values = transactionHelper.readValues(Arrays.asList(TransactionHelper.userKey(userId),
+                    TransactionHelper.imageKey(userId, PIC)));
+            user = new UserView(transactionHelper.toJson(values.get(0)).getAsJsonObject());
+            user.setPic(values.get(1).binaryValue());
+        } else {
+            user = new UserView(transactionHelper.readUser(userId));
+        }
+        for (UserList list : lists) {
+            user.setIds(list, toIdList(user.getProfile().getAsJsonArray(list.getField())));
+        }
+        return user;
+    }
+
+    @Override
+    public UserView readCounts(String userId, boolean pic, UserList... lists) throws NotFoundException {
+        return readUser(userId, pic, lists);
+    }
+
+    @Override
+    public long[] sumCounts(Collection<String> userIds, UserList... lists) throws NotFoundException {
+        long[] totals = new long[lists.length];
+        for (JsonObject user : transactionHelper.readUsers(userIds)) {
+            for (int i = 0; i < lists.length; i++) {
+                JsonArray ids = user.getAsJsonArray(lists[i].getField());
+                totals[i] += ids != null ? ids.size() : 0;
+            }
+        }
+        return totals;
+    }
+
+    @Override
+    public List<UserView> readProfiles(Collection<String> userIds, boolean thumbnails) throws NotFoundException {
+        List<UserView> users = new ArrayList<>(userIds.size());
+        if (!thumbnails) {
+            for (JsonObject profile : transactionHelper.readUsers(userIds)) {
+                users.add(new UserView(profile));
+            }
+            return users;
+        }
+
+        List<String> keys = new ArrayList<>(userIds.size() * 2);
+        for (String userId : userIds) {
+            keys.add(TransactionHelper.userKey(userId));
+            keys.add(TransactionHelper.imageKey(userId, TPIC));
+        }
+        List<ErlangValue> values = transactionHelper.readValues(keys);
+        for (int i = 0; i < values.size(); i += 2) {
+            UserView user = new UserView(transactionHelper.toJson(values.get(i)).getAsJsonObject());
+            user.setThumbnail(values.get(i + 1).binaryValue());
+            users.add(user);
+        }
+        return users;
+    }
+
+    @Override
+    public void addId(String userId, UserList list, String id) throws NotFoundException {
+        JsonObject userObject = transactionHelper.readUser(userId);
+        JsonArray ids = userObject.getAsJsonArray(list.getField());
+        if (ids == null) {
+            ids = new JsonArray();
+            userObject.add(list.getField(), ids);
+        }
+        ids.add(new JsonPrimitive(id));
+        transactionHelper.writeUser(userId, userObject);
+    }
+
+    @Override
+    public void removeId(String userId, UserList list, String id) throws NotFoundException {
+        JsonObject userObject = transactionHelper.readUser(userId);
+        JsonArray ids = userObject.getAsJsonArray(list.getField());
+        if (ids != null && ids.remove(new JsonPrimitive(id))) {
+            transactionHelper.writeUser(userId, userObject);
+        }
+    }
+
+    /**
+     * Returns the IDs stored in a JSON array.
+     *
+     * @param jsonArray A JSON array of IDs, or null if the attribute is absent.
+     * @return A list of IDs in the order of the array.
+     */
+    static List<String> toIdList(JsonArray jsonArray) {
+        if (jsonArray == null) {
+            return new ArrayList<>();
+        }
+        List<String> ids = new ArrayList<>(jsonArray.size());
+        for (JsonElement element : jsonArray) {
+            ids.add(element.getAsString());
+        }
+        return ids;
+    }
+}
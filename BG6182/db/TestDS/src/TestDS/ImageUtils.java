@@ -2,8 +2,6 @@ package TestDS;
 
 import com.google.gson.JsonElement;
 import com.google.gson.JsonPrimitive;
-import edu.usc.bg.base.ByteArrayByteIterator;
-import edu.usc.bg.base.ObjectByteIterator;
 
 import java.util.Base64;
 
@@ -13,7 +11,7 @@ public final class ImageUtils {
         return new JsonPrimitive(Base64.getEncoder().encodeToString(bytes));
     }
 
-    public static ObjectByteIterator toObejctByteIterator(final JsonElement jsonElement) {
-        return new ObjectByteIterator(Base64.getDecoder().decode(jsonElement.getAsString()));
+    public static byte[] toBytes(final JsonElement jsonElement) {
+        return jsonElement != null ? Base64.getDecoder().decode(jsonElement.getAsString()) : null;
     }
 }
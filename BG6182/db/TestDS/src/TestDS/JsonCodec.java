@@ -0,0 +1,22 @@
+package TestDS;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+import de.zib.scalaris.ErlangValue;
+
+/**
+ * Stores values as JSON text in Erlang strings. This is the original format of the binding.
+ */
+public class JsonCodec implements ValueCodec {
+    private static final JsonParser JSON_PARSER = new JsonParser();
+
+    @Override
+    public Object encode(JsonElement value) {
+        return value.toString();
+    }
+
+    @Override
+    public JsonElement decode(ErlangValue value) {
+        return JSON_PARSER.parse(value.stringValue());
+    }
+}
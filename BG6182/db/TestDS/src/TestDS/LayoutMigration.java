@@ -0,0 +1,83 @@
+package TestDS;
+
+import com.google.gson.JsonObject;
+import de.zib.scalaris.AbortException;
+import de.zib.scalaris.NotFoundException;
+
+import java.util.Properties;
+
+/**
+ * Rewrites users loaded in the document layout into the layout given by -p scalaris.layout, normalized by default, and
+ * with counters if -p scalaris.counters=true, so an existing data set can be benchmarked with that layout without
+ * loading it again. Users are migrated in ID order,
+ * starting at 0, until an ID is missing. Resources, comments and images keep their keys; images still embedded in a
+ * document as base64 strings are moved to their own keys. The document keys are left in place.
+ * <p>
+ * Usage: java -cp ... TestDS.LayoutMigration [-p name=value ...]
+ */
+public class LayoutMigration implements TestDSClientConstants {
+    private static final String PROPERTY_FLAG = "-p";
+    private static final String PIC = "pic";
+    private static final String TPIC = "tpic";
+
+    public static void main(String[] args) {
+        Properties properties = new Properties();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            if (!PROPERTY_FLAG.equals(args[i]) || !args[i + 1].contains("=")) {
+                System.err.println("Usage: java TestDS.LayoutMigration [-p name=value ...]");
+                System.exit(1);
+            }
+            String[] property = args[i + 1].split("=", 2);
+            properties.setProperty(property[0], property[1]);
+        }
+
+        String layout = properties.getProperty(LAYOUT_PROPERTY, LAYOUT_NORMALIZED);
+        if (LAYOUT_DOCUMENT.equals(layout)) {
+            System.err.println("Users are already stored in the " + LAYOUT_DOCUMENT + " layout");
+            System.exit(1);
+        }
+
+        TransactionHelper transactionHelper = new TransactionHelper(ScalarisConnectionPool.getInstance(properties),
+                true, TestDSClient.createCodec(properties.getProperty(CODEC_PROPERTY, CODEC_PROPERTY_DEFAULT)));
+        try {
+            boolean counters = Boolean.parseBoolean(properties.getProperty(COUNTERS_PROPERTY,
+                    COUNTERS_PROPERTY_DEFAULT));
+            UserStore target = TestDSClient.createUserStore(layout, counters, transactionHelper);
+            System.out.println("Migrated " + migrate(transactionHelper, target) + " users");
+        } catch (AbortException e) {
+            e.printStackTrace();
+            System.exit(1);
+        }
+        System.exit(0);
+    }
+
+    /**
+     * Migrates all users. Each user is moved in its own transaction.
+     *
+     * @param transactionHelper A TransactionHelper instance.
+     * @param target            Store writing the new layout.
+     * @return Number of migrated users.
+     * @throws AbortException If a user keeps conflicting with concurrent updates.
+     */
+    static int migrate(TransactionHelper transactionHelper, UserStore target) throws AbortException {
+        int userCount = 0;
+        while (true) {
+            final String userId = String.valueOf(userCount);
+            try {
+                transactionHelper.runInTransaction(() -> {
+                    JsonObject user = transactionHelper.readUser(userId);
+                    byte[] pic = ImageUtils.toBytes(user.remove(PIC));
+                    byte[] thumbnail = ImageUtils.toBytes(user.remove(TPIC));
+                    target.writeUser(userId, user);
+                    if (pic != null || thumbnail != null) {
+                        target.writeImages(userId, pic, thumbnail);
+                    }
+                    return null;
+                });
+            } catch (NotFoundException e) {
+                return userCount;
+            }
+            userCount++;
+        }
+    }
+}
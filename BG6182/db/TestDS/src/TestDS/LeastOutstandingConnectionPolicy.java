@@ -0,0 +1,45 @@
+package TestDS;
+
+import de.zib.scalaris.DefaultConnectionPolicy;
+import de.zib.scalaris.PeerNode;
+
+import java.util.List;
+import java.util.function.ToIntFunction;
+
+/**
+ * Connection policy which sends a new or failed-over connection to the reachable node with the lowest load. Nodes
+ * with equal load are taken in turn, so the policy degrades to round robin while the ring is idle. Failed nodes are
+ * handled by {@link DefaultConnectionPolicy}.
+ */
+public class LeastOutstandingConnectionPolicy extends DefaultConnectionPolicy {
+    private final ToIntFunction<PeerNode> load;
+    private int nextNode;
+
+    /**
+     * Creates a policy over the given nodes.
+     *
+     * @param nodes Nodes of the ring.
+     * @param load  Returns the current load of a node, e.g. its outstanding requests.
+     */
+    public LeastOutstandingConnectionPolicy(List<PeerNode> nodes, ToIntFunction<PeerNode> load) {
+        super(nodes);
+        this.load = load;
+    }
+
+    @Override
+    protected synchronized PeerNode getGoodNode() {
+        int size = goodNodes.size();
+        PeerNode best = null;
+        int bestLoad = Integer.MAX_VALUE;
+        for (int i = 0; i < size; i++) {
+            PeerNode node = goodNodes.get((nextNode + i) % size);
+            int nodeLoad = load.applyAsInt(node);
+            if (nodeLoad < bestLoad) {
+                best = node;
+                bestLoad = nodeLoad;
+            }
+        }
+        nextNode = (nextNode + 1) % size;
+        return best;
+    }
+}
@@ -0,0 +1,76 @@
+package TestDS;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonPrimitive;
+import de.zib.scalaris.NotFoundException;
+
+import java.util.Collections;
+
+/**
+ * The normalized layout with the ID lists stored as native Erlang lists. Appending or removing an ID is a single
+ * add_del_on_list operation which Scalaris applies on the server, so appending does not read the list it changes.
+ * Inside a transaction the operations are shipped with the commit, and concurrent invites to the same user do not
+ * conflict.
+ * <p>
+ * As add_del_on_list would create the list of a missing user, adding an ID first reads the profile of the user. The
+ * profile is hardly ever written, so this does not make concurrent invites conflict. Removing an ID reads the list,
+ * which fails for a missing user, and only changes the list and its counter if the ID is in it. Counters are native
+ * numbers changed with add_on_nr.
+ */
+public class NativeListUserStore extends NormalizedUserStore {
+    /**
+     * Creates a store on top of the given helper.
+     *
+     * @param transactionHelper A TransactionHelper instance.
+     */
+    public NativeListUserStore(TransactionHelper transactionHelper) {
+        super(transactionHelper);
+    }
+
+    /**
+     * Creates a store on top of the given helper.
+     *
+     * @param transactionHelper A TransactionHelper instance.
+     * @param counters          If true the size of every list is kept in a counter key.
+     */
+    public NativeListUserStore(TransactionHelper transactionHelper, boolean counters) {
+        super(transactionHelper, counters);
+    }
+
+    @Override
+    protected void writeIds(String key, JsonArray ids) {
+        transactionHelper.writeList(key, DocumentUserStore.toIdList(ids));
+    }
+
+    @Override
+    protected void writeCount(String key, long count) {
+        transactionHelper.writeNumber(key, count);
+    }
+
+    @Override
+    protected void addToCount(String key, long delta) {
+        transactionHelper.addOnNr(key, delta);
+    }
+
+    @Override
+    public void addId(String userId, UserList list, String id) throws NotFoundException {
+        transactionHelper.read(key(userId, PROFILE));
+        transactionHelper.addDelOnList(key(userId, list.getKeySuffix()), Collections.singletonList(id),
+                Collections.<String>emptyList());
+        if (hasCounters()) {
+            addToCount(countKey(userId, list), 1);
+        }
+    }
+
+    @Override
+    public void removeId(String userId, UserList list, String id) throws NotFoundException {
+        String key = key(userId, list.getKeySuffix());
+        if (!transactionHelper.read(key).getAsJsonArray().contains(new JsonPrimitive(id))) {
+            return;
+        }
+        transactionHelper.addDelOnList(key, Collections.<String>emptyList(), Collections.singletonList(id));
+        if (hasCounters()) {
+            addToCount(countKey(userId, list), -1);
+        }
+    }
+}
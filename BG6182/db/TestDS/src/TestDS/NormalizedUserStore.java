@@ -0,0 +1,259 @@
+package TestDS;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+import de.zib.scalaris.ErlangValue;
+import de.zib.scalaris.NotFoundException;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Splits each user over several keys: u&lt;id&gt;:profile holds the profile attributes, u&lt;id&gt;:pic and
+ * u&lt;id&gt;:tpic the images as binaries and u&lt;id&gt;:friends, :pending, :walls and :created one ID list each.
+ * Changing a list only rewrites that list, and actions touching different lists of the same user no longer conflict.
+ * <p>
+ * Images are only written if the loader was given any, so reading them for a user without images fails like any other
+ * missing key. The image keys are the same as in the document layout.
+ * <p>
+ * With counters each list also has a u&lt;id&gt;:&lt;list&gt;:count key holding its size, updated in the same
+ * transaction as the list, so {@link #readCounts(String, boolean, UserList...)} does not read the lists.
+ */
+public class NormalizedUserStore implements UserStore {
+    private static final String USER_KEY_FORMAT = "u%s:%s";
+    protected static final String PROFILE = "profile";
+    private static final String PIC = "pic";
+    private static final String TPIC = "tpic";
+    private static final String COUNT_SUFFIX = ":count";
+    protected final TransactionHelper transactionHelper;
+    private final boolean counters;
+
+    /**
+     * Creates a store on top of the given helper without counters.
+     *
+     * @param transactionHelper A TransactionHelper instance.
+     */
+    public NormalizedUserStore(TransactionHelper transactionHelper) {
+        this(transactionHelper, false);
+    }
+
+    /**
+     * Creates a store on top of the given helper.
+     *
+     * @param transactionHelper A TransactionHelper instance.
+     * @param counters          If true the size of every list is kept in a counter key.
+     */
+    public NormalizedUserStore(TransactionHelper transactionHelper, boolean counters) {
+        this.transactionHelper = transactionHelper;
+        this.counters = counters;
+    }
+
+    @Override
+    public void writeUser(String userId, JsonObject user) {
+        JsonObject profile = new JsonObject();
+        for (Map.Entry<String, JsonElement> entry : user.entrySet()) {
+            if (!entry.getValue().isJsonArray()) {
+                profile.add(entry.getKey(), entry.getValue());
+            }
+        }
+        transactionHelper.write(key(userId, PROFILE), profile);
+
+        for (UserList list : UserList.values()) {
+            JsonArray ids = user.getAsJsonArray(list.getField());
+            writeIds(key(userId, list.getKeySuffix()), ids != null ? ids : new JsonArray());
+            if (counters) {
+                writeCount(countKey(userId, list), ids != null ? ids.size() : 0);
+            }
+        }
+    }
+
+    @Override
+    public void writeImages(String userId, byte[] pic, byte[] thumbnail) {
+        if (pic != null) {
+            transactionHelper.writeImage(userId, PIC, pic);
+        }
+        if (thumbnail != null) {
+            transactionHelper.writeImage(userId, TPIC, thumbnail);
+        }
+    }
+
+    /**
+     * Writes a whole ID list.
+     *
+     * @param key Key of the list.
+     * @param ids IDs in list order.
+     */
+    protected void writeIds(String key, JsonArray ids) {
+        transactionHelper.write(key, ids);
+    }
+
+    /**
+     * Writes the counter of a list.
+     *
+     * @param key   Key of the counter.
+     * @param count Size of the list.
+     */
+    protected void writeCount(String key, long count) {
+        transactionHelper.write(key, new JsonPrimitive(count));
+    }
+
+    /**
+     * Changes the counter of a list.
+     *
+     * @param key   Key of the counter.
+     * @param delta Change of the size of the list.
+     * @throws NotFoundException If the counter does not exist.
+     */
+    protected void addToCount(String key, long delta) throws NotFoundException {
+        long count = transactionHelper.read(key).getAsLong();
+        transactionHelper.write(key, new JsonPrimitive(count + delta));
+    }
+
+    @Override
+    public UserView readUser(String userId, boolean pic, UserList... lists) throws NotFoundException {
+        List<String> keys = new ArrayList<>(2 + lists.length);
+        addProfileKeys(keys, userId, pic ? PIC : null);
+        for (UserList list : lists) {
+            keys.add(key(userId, list.getKeySuffix()));
+        }
+
+        List<ErlangValue> values = transactionHelper.readValues(keys);
+        UserView user = new UserView(transactionHelper.toJson(values.get(0)).getAsJsonObject());
+        int next = 1;
+        if (pic) {
+            user.setPic(values.get(next++).binaryValue());
+        }
+        for (UserList list : lists) {
+            user.setIds(list, DocumentUserStore.toIdList(transactionHelper.toJson(values.get(next++))
+                    .getAsJsonArray()));
+        }
+        return user;
+    }
+
+    @Override
+    public UserView readCounts(String userId, boolean pic, UserList... lists) throws NotFoundException {
+        if (!counters) {
+            return readUser(userId, pic, lists);
+        }
+
+        List<String> keys = new ArrayList<>(2 + lists.length);
+        addProfileKeys(keys, userId, pic ? PIC : null);
+        for (UserList list : lists) {
+            keys.add(countKey(userId, list));
+        }
+
+        List<ErlangValue> values = transactionHelper.readValues(keys);
+        UserView user = new UserView(transactionHelper.toJson(values.get(0)).getAsJsonObject());
+        int next = 1;
+        if (pic) {
+            user.setPic(values.get(next++).binaryValue());
+        }
+        for (UserList list : lists) {
+            user.setCount(list, transactionHelper.toJson(values.get(next++)).getAsLong());
+        }
+        return user;
+    }
+
+    @Override
+    public long[] sumCounts(Collection<String> userIds, UserList... lists) throws NotFoundException {
+        List<String> keys = new ArrayList<>(userIds.size() * lists.length);
+        for (String userId : userIds) {
+            for (UserList list : lists) {
+                keys.add(counters ? countKey(userId, list) : key(userId, list.getKeySuffix()));
+            }
+        }
+
+        List<ErlangValue> values = transactionHelper.readValues(keys);
+        long[] totals = new long[lists.length];
+        for (int i = 0; i < values.size(); i++) {
+            JsonElement value = transactionHelper.toJson(values.get(i));
+            totals[i % lists.length] += counters ? value.getAsLong() : value.getAsJsonArray().size();
+        }
+        return totals;
+    }
+
+    @Override
+    public List<UserView> readProfiles(Collection<String> userIds, boolean thumbnails) throws NotFoundException {
+        int keysPerUser = thumbnails ? 2 : 1;
+        List<String> keys = new ArrayList<>(userIds.size() * keysPerUser);
+        for (String userId : userIds) {
+            addProfileKeys(keys, userId, thumbnails ? TPIC : null);
+        }
+
+        List<ErlangValue> values = transactionHelper.readValues(keys);
+        List<UserView> users = new ArrayList<>(userIds.size());
+        for (int i = 0; i < values.size(); i += keysPerUser) {
+            UserView user = new UserView(transactionHelper.toJson(values.get(i)).getAsJsonObject());
+            if (thumbnails) {
+                user.setThumbnail(values.get(i + 1).binaryValue());
+            }
+            users.add(user);
+        }
+        return users;
+    }
+
+    @Override
+    public void addId(String userId, UserList list, String id) throws NotFoundException {
+        String key = key(userId, list.getKeySuffix());
+        JsonArray ids = transactionHelper.read(key).getAsJsonArray();
+        ids.add(new JsonPrimitive(id));
+        transactionHelper.write(key, ids);
+        if (counters) {
+            addToCount(countKey(userId, list), 1);
+        }
+    }
+
+    @Override
+    public void removeId(String userId, UserList list, String id) throws NotFoundException {
+        String key = key(userId, list.getKeySuffix());
+        JsonArray ids = transactionHelper.read(key).getAsJsonArray();
+        if (ids.remove(new JsonPrimitive(id))) {
+            transactionHelper.write(key, ids);
+            if (counters) {
+                addToCount(countKey(userId, list), -1);
+            }
+        }
+    }
+
+    /**
+     * Returns whether list sizes are kept in counter keys.
+     *
+     * @return True if counters are kept.
+     */
+    protected boolean hasCounters() {
+        return counters;
+    }
+
+    private static void addProfileKeys(List<String> keys, String userId, String image) {
+        keys.add(key(userId, PROFILE));
+        if (image != null) {
+            keys.add(TransactionHelper.imageKey(userId, image));
+        }
+    }
+
+    /**
+     * Returns the key of a part of a user.
+     *
+     * @param userId User ID given by BG.
+     * @param part   profile or the key suffix of a list.
+     * @return The key.
+     */
+    protected static String key(String userId, String part) {
+        return String.format(USER_KEY_FORMAT, userId, part);
+    }
+
+    /**
+     * Returns the key of the counter of a list.
+     *
+     * @param userId User ID given by BG.
+     * @param list   The list.
+     * @return The key.
+     */
+    protected static String countKey(String userId, UserList list) {
+        return key(userId, list.getKeySuffix() + COUNT_SUFFIX);
+    }
+}
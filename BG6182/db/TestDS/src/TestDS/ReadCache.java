@@ -0,0 +1,242 @@
+package TestDS;
+
+import com.ericsson.otp.erlang.OtpErlangBinary;
+import com.ericsson.otp.erlang.OtpErlangList;
+import com.ericsson.otp.erlang.OtpErlangObject;
+import com.ericsson.otp.erlang.OtpErlangString;
+import de.zib.scalaris.ErlangValue;
+import edu.usc.bg.measurements.MyMeasurement;
+
+import java.text.DecimalFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bounded cache of values read from Scalaris, shared by every {@link TestDSClient} of the process. Entries are evicted
+ * in least recently used order once their total size exceeds the capacity, and expire after a fixed time so that
+ * changes made by other processes are seen eventually.
+ * <p>
+ * {@link TransactionHelper} invalidates a key whenever this process changes it, after the commit if the change was
+ * part of a transaction. A read which started before an invalidation of its key does not fill the cache, so a slow
+ * reader cannot put back a value which has just been replaced.
+ * <p>
+ * Hits, misses and the hit ratio are printed with BG's measurements.
+ */
+public class ReadCache implements TestDSClientConstants {
+    private static final String STATISTICS_NAME = "SCALARIS-CACHE";
+    private static final int GENERATION_STRIPES = 256;
+    private static final long ENTRY_OVERHEAD = 64;
+    private static ReadCache instance;
+
+    private final long capacity;
+    private final long ttlNanos;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final AtomicLongArray generations = new AtomicLongArray(GENERATION_STRIPES);
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private long size;
+
+    private static final class Entry {
+        private final ErlangValue value;
+        private final long size;
+        private final long expiresAt;
+
+        private Entry(ErlangValue value, long size, long expiresAt) {
+            this.value = value;
+            this.size = size;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    /**
+     * Creates an empty cache.
+     *
+     * @param capacity Maximum total size of the cached values in bytes.
+     * @param ttl      Time in milliseconds after which an entry expires.
+     */
+    public ReadCache(long capacity, long ttl) {
+        this.capacity = capacity;
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttl);
+    }
+
+    /**
+     * Returns the cache of this process, creating it on first use and adding its counters to BG's measurements.
+     *
+     * @param bgProperties Properties passed to BG with -p.
+     * @return The shared cache, or null if scalaris.cache.size is 0.
+     */
+    public static synchronized ReadCache getInstance(Properties bgProperties) {
+        if (instance == null) {
+            long capacity = Long.parseLong(bgProperties.getProperty(CACHE_SIZE_PROPERTY, CACHE_SIZE_PROPERTY_DEFAULT));
+            if (capacity <= 0) {
+                return null;
+            }
+            final ReadCache cache = new ReadCache(capacity,
+                    Long.parseLong(bgProperties.getProperty(CACHE_TTL_PROPERTY, CACHE_TTL_PROPERTY_DEFAULT)));
+            MyMeasurement.addDBStatistics(STATISTICS_NAME, cache::getStatistics);
+            instance = cache;
+        }
+        return instance;
+    }
+
+    /**
+     * Returns the cached value of a key.
+     *
+     * @param key Unique key.
+     * @return The value, or null if the key is not cached or its entry expired.
+     */
+    public ErlangValue get(String key) {
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            if (entry != null && entry.expiresAt - System.nanoTime() > 0) {
+                hits.incrementAndGet();
+                return entry.value;
+            }
+            if (entry != null) {
+                remove(key);
+            }
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * Returns the generation of a key. It has to be taken before the key is read from Scalaris and handed to
+     * {@link #put(String, ErlangValue, long)} with the value read.
+     *
+     * @param key Unique key.
+     * @return The current generation.
+     */
+    public long generation(String key) {
+        return generations.get(stripe(key));
+    }
+
+    /**
+     * Caches a value read from Scalaris unless the key was invalidated since its generation was taken. Values larger
+     * than the whole cache are not cached.
+     *
+     * @param key        Unique key.
+     * @param value      The value.
+     * @param generation Generation of the key taken before the read.
+     */
+    public void put(String key, ErlangValue value, long generation) {
+        long entrySize = sizeOf(value);
+        if (entrySize > capacity) {
+            return;
+        }
+        synchronized (entries) {
+            if (generations.get(stripe(key)) != generation) {
+                return;
+            }
+            remove(key);
+            entries.put(key, new Entry(value, entrySize, System.nanoTime() + ttlNanos));
+            size += entrySize;
+
+            Iterator<Map.Entry<String, Entry>> eldest = entries.entrySet().iterator();
+            while (size > capacity && eldest.hasNext()) {
+                size -= eldest.next().getValue().size;
+                eldest.remove();
+                evictions.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Drops a key and rejects values of it which were read before.
+     *
+     * @param key Unique key.
+     */
+    public void invalidate(String key) {
+        synchronized (entries) {
+            generations.incrementAndGet(stripe(key));
+            remove(key);
+        }
+    }
+
+    /**
+     * Returns the number of reads served from the cache so far.
+     *
+     * @return Hit count.
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Returns the number of reads which had to go to Scalaris so far.
+     *
+     * @return Miss count.
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Returns the share of reads served from the cache so far.
+     *
+     * @return Hit ratio between 0 and 1.
+     */
+    public double getHitRatio() {
+        long total = hits.get() + misses.get();
+        return total == 0 ? 0 : (double) hits.get() / total;
+    }
+
+    /**
+     * Returns the counters in the format of BG's measurements.
+     *
+     * @return One line of counters.
+     */
+    String getStatistics() {
+        long cachedBytes;
+        synchronized (entries) {
+            cachedBytes = size;
+        }
+        return "Hits=" + hits.get() + ", Misses=" + misses.get() + ", HitRatio(%)="
+                + new DecimalFormat("#.##").format(getHitRatio() * 100) + ", Evictions=" + evictions.get()
+                + ", CachedBytes=" + cachedBytes;
+    }
+
+    private void remove(String key) {
+        Entry entry = entries.remove(key);
+        if (entry != null) {
+            size -= entry.size;
+        }
+    }
+
+    private static int stripe(String key) {
+        return (key.hashCode() & Integer.MAX_VALUE) % GENERATION_STRIPES;
+    }
+
+    /**
+     * Estimates the memory taken by a value.
+     *
+     * @param value The value.
+     * @return Size in bytes.
+     */
+    private static long sizeOf(ErlangValue value) {
+        return ENTRY_OVERHEAD + sizeOf(value.value());
+    }
+
+    private static long sizeOf(OtpErlangObject object) {
+        if (object instanceof OtpErlangBinary) {
+            return ((OtpErlangBinary) object).size();
+        }
+        if (object instanceof OtpErlangString) {
+            return 2L * ((OtpErlangString) object).stringValue().length();
+        }
+        if (object instanceof OtpErlangList) {
+            long listSize = 0;
+            for (OtpErlangObject element : ((OtpErlangList) object).elements()) {
+                listSize += 16 + sizeOf(element);
+            }
+            return listSize;
+        }
+        return 16;
+    }
+}
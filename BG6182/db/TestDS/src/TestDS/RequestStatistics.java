@@ -0,0 +1,203 @@
+package TestDS;
+
+import edu.usc.bg.measurements.MyMeasurement;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts per BG action what {@link TransactionHelper} exchanges with Scalaris: request lists sent, keys read and
+ * written, bytes of the values in both directions, and the time spent waiting for Scalaris, encoding and decoding
+ * values, and waiting for a pooled connection. Sizes are those of the values, not of the Erlang protocol around them.
+ * <p>
+ * The counters are printed with BG's measurements as averages per action, so a slow action shows whether it made many
+ * round trips, moved large values or spent its time in the codec.
+ */
+public class RequestStatistics {
+    private static final String STATISTICS_NAME = "SCALARIS-REQUESTS";
+    private static RequestStatistics instance;
+
+    private final Map<String, Counters> counters = new ConcurrentHashMap<>();
+
+    private static final class Counters {
+        private final LongAdder actions = new LongAdder();
+        private final LongAdder roundTrips = new LongAdder();
+        private final LongAdder reads = new LongAdder();
+        private final LongAdder writes = new LongAdder();
+        private final LongAdder bytesSent = new LongAdder();
+        private final LongAdder bytesReceived = new LongAdder();
+        private final LongAdder networkNanos = new LongAdder();
+        private final LongAdder codecNanos = new LongAdder();
+        private final LongAdder poolWaitNanos = new LongAdder();
+    }
+
+    /**
+     * Returns the statistics of this process, creating them on first use and adding them to BG's measurements.
+     *
+     * @return The shared statistics.
+     */
+    public static synchronized RequestStatistics getInstance() {
+        if (instance == null) {
+            final RequestStatistics statistics = new RequestStatistics();
+            MyMeasurement.addDBStatistics(STATISTICS_NAME, statistics::getStatistics);
+            instance = statistics;
+        }
+        return instance;
+    }
+
+    /**
+     * Counts a started action.
+     *
+     * @param action Name of the BG action.
+     */
+    public void addAction(String action) {
+        counters(action).actions.increment();
+    }
+
+    /**
+     * Counts a request list sent to Scalaris, including one which failed and is sent again.
+     *
+     * @param action Name of the BG action.
+     * @param reads  Keys read by the request list.
+     * @param writes Keys written or changed by the request list.
+     * @param nanos  Time until the result arrived.
+     */
+    public void addRequest(String action, int reads, int writes, long nanos) {
+        Counters actionCounters = counters(action);
+        actionCounters.roundTrips.increment();
+        actionCounters.reads.add(reads);
+        actionCounters.writes.add(writes);
+        actionCounters.networkNanos.add(nanos);
+    }
+
+    /**
+     * Counts the size of values read.
+     *
+     * @param action Name of the BG action.
+     * @param bytes  Size of the values.
+     */
+    public void addBytesReceived(String action, long bytes) {
+        counters(action).bytesReceived.add(bytes);
+    }
+
+    /**
+     * Counts the size of a value written, when it is handed to Scalaris or buffered for the commit.
+     *
+     * @param action Name of the BG action.
+     * @param bytes  Size of the value.
+     */
+    public void addBytesSent(String action, long bytes) {
+        counters(action).bytesSent.add(bytes);
+    }
+
+    /**
+     * Counts time spent encoding or decoding a value.
+     *
+     * @param action Name of the BG action.
+     * @param nanos  Time spent.
+     */
+    public void addCodecTime(String action, long nanos) {
+        counters(action).codecNanos.add(nanos);
+    }
+
+    /**
+     * Counts time spent waiting for a pooled connection.
+     *
+     * @param action Name of the BG action.
+     * @param nanos  Time spent.
+     */
+    public void addPoolWait(String action, long nanos) {
+        counters(action).poolWaitNanos.add(nanos);
+    }
+
+    /**
+     * Returns the number of request lists sent by the given action so far.
+     *
+     * @param action Name of the BG action.
+     * @return Round trip count.
+     */
+    public long getRoundTrips(String action) {
+        Counters actionCounters = counters.get(action);
+        return actionCounters != null ? actionCounters.roundTrips.sum() : 0;
+    }
+
+    /**
+     * Returns the number of keys read by the given action so far.
+     *
+     * @param action Name of the BG action.
+     * @return Read count.
+     */
+    public long getReads(String action) {
+        Counters actionCounters = counters.get(action);
+        return actionCounters != null ? actionCounters.reads.sum() : 0;
+    }
+
+    /**
+     * Returns the number of keys written or changed by the given action so far.
+     *
+     * @param action Name of the BG action.
+     * @return Write count.
+     */
+    public long getWrites(String action) {
+        Counters actionCounters = counters.get(action);
+        return actionCounters != null ? actionCounters.writes.sum() : 0;
+    }
+
+    /**
+     * Returns the size of the values written by the given action so far.
+     *
+     * @param action Name of the BG action.
+     * @return Bytes sent.
+     */
+    public long getBytesSent(String action) {
+        Counters actionCounters = counters.get(action);
+        return actionCounters != null ? actionCounters.bytesSent.sum() : 0;
+    }
+
+    /**
+     * Returns the size of the values read by the given action so far.
+     *
+     * @param action Name of the BG action.
+     * @return Bytes received.
+     */
+    public long getBytesReceived(String action) {
+        Counters actionCounters = counters.get(action);
+        return actionCounters != null ? actionCounters.bytesReceived.sum() : 0;
+    }
+
+    /**
+     * Returns the counters of every action, averaged per action, in the format of BG's measurements.
+     *
+     * @return One line of counters.
+     */
+    String getStatistics() {
+        StringBuilder statistics = new StringBuilder();
+        for (Map.Entry<String, Counters> entry : new ConcurrentSkipListMap<>(counters).entrySet()) {
+            Counters actionCounters = entry.getValue();
+            double actions = Math.max(actionCounters.actions.sum(), 1);
+            if (statistics.length() > 0) {
+                statistics.append(", ");
+            }
+            statistics.append(String.format("%s(Actions=%d, RoundTrips=%.2f, Reads=%.2f, Writes=%.2f, "
+                            + "BytesSent=%.0f, BytesReceived=%.0f, NetworkUs=%.1f, CodecUs=%.1f, PoolWaitUs=%.1f)",
+                    entry.getKey(), actionCounters.actions.sum(), actionCounters.roundTrips.sum() / actions,
+                    actionCounters.reads.sum() / actions, actionCounters.writes.sum() / actions,
+                    actionCounters.bytesSent.sum() / actions, actionCounters.bytesReceived.sum() / actions,
+                    toMicros(actionCounters.networkNanos) / actions, toMicros(actionCounters.codecNanos) / actions,
+                    toMicros(actionCounters.poolWaitNanos) / actions));
+        }
+        return statistics.toString();
+    }
+
+    private static double toMicros(LongAdder nanos) {
+        return nanos.sum() / (double) TimeUnit.MICROSECONDS.toNanos(1);
+    }
+
+    private Counters counters(String action) {
+        Counters actionCounters = counters.get(action);
+        return actionCounters != null ? actionCounters : counters.computeIfAbsent(action, name -> new Counters());
+    }
+}
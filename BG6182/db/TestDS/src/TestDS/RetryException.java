@@ -0,0 +1,48 @@
+package TestDS;
+
+/**
+ * Thrown when a BG action gives up retrying a failed Scalaris request or an aborted transaction. The error code is
+ * returned to BG, which counts it per action next to its latencies.
+ */
+public class RetryException extends RuntimeException {
+    private static final long serialVersionUID = -385450225963787999L;
+
+    /**
+     * The request or transaction still failed after the last attempt.
+     */
+    public static final int RETRIES_EXHAUSTED = -2;
+
+    /**
+     * The next attempt would have started after the deadline of the action.
+     */
+    public static final int DEADLINE_EXCEEDED = -3;
+
+    /**
+     * The reply to a commit was lost, so the commit may or may not have been applied. The action is not run again, as
+     * that would apply its list and number operations twice.
+     */
+    public static final int COMMIT_UNKNOWN = -4;
+
+    private final int errorCode;
+
+    /**
+     * Creates an exception.
+     *
+     * @param errorCode {@link #RETRIES_EXHAUSTED}, {@link #DEADLINE_EXCEEDED} or {@link #COMMIT_UNKNOWN}.
+     * @param message   Description of the failure.
+     * @param cause     Failure of the last attempt.
+     */
+    public RetryException(int errorCode, String message, Throwable cause) {
+        super(message, cause);
+        this.errorCode = errorCode;
+    }
+
+    /**
+     * Returns the error code to return to BG.
+     *
+     * @return {@link #RETRIES_EXHAUSTED}, {@link #DEADLINE_EXCEEDED} or {@link #COMMIT_UNKNOWN}.
+     */
+    public int getErrorCode() {
+        return errorCode;
+    }
+}
@@ -0,0 +1,210 @@
+package TestDS;
+
+import de.zib.scalaris.AbortException;
+import edu.usc.bg.measurements.MyMeasurement;
+
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Decides how long {@link TransactionHelper} waits before it retries a failed Scalaris request or an aborted
+ * transaction, and when it gives up. The backoff doubles with every attempt up to a maximum and a random half of it is
+ * jitter, so threads which failed together do not retry together. An action gives up after a number of attempts or
+ * once the next attempt would start after its deadline, and BG sees the error code of the {@link RetryException}.
+ * <p>
+ * Retries, aborts and failures are counted per BG action and printed with BG's measurements.
+ */
+public class RetryPolicy implements TestDSClientConstants {
+    /**
+     * Action name of requests made outside a BG action, such as by {@link LayoutMigration}. Their deadline counts
+     * from the first attempt of each request.
+     */
+    static final String NO_ACTION = "OTHER";
+    private static final String STATISTICS_NAME = "SCALARIS-RETRIES";
+    private static RetryPolicy instance;
+
+    private final int maxAttempts;
+    private final long backoff;
+    private final long maxBackoff;
+    private final long deadlineNanos;
+    private final Map<String, Counters> counters = new ConcurrentHashMap<>();
+
+    private static final class Counters {
+        private final AtomicLong retries = new AtomicLong();
+        private final AtomicLong aborts = new AtomicLong();
+        private final AtomicLong failures = new AtomicLong();
+    }
+
+    /**
+     * Creates a policy with the default settings.
+     */
+    public RetryPolicy() {
+        this(Integer.parseInt(RETRY_ATTEMPTS_PROPERTY_DEFAULT), Long.parseLong(RETRY_BACKOFF_PROPERTY_DEFAULT),
+                Long.parseLong(RETRY_MAX_BACKOFF_PROPERTY_DEFAULT), Long.parseLong(RETRY_DEADLINE_PROPERTY_DEFAULT));
+    }
+
+    /**
+     * Creates a policy.
+     *
+     * @param maxAttempts Number of attempts before giving up, at least 1.
+     * @param backoff     Backoff in milliseconds before the first retry.
+     * @param maxBackoff  Upper bound in milliseconds of the backoff.
+     * @param deadline    Time in milliseconds an action may spend retrying, 0 for no deadline.
+     */
+    public RetryPolicy(int maxAttempts, long backoff, long maxBackoff, long deadline) {
+        if (maxAttempts < 1) {
+            throw new IllegalArgumentException(RETRY_ATTEMPTS_PROPERTY + " must be at least 1");
+        }
+        this.maxAttempts = maxAttempts;
+        this.backoff = Math.max(backoff, 1);
+        this.maxBackoff = Math.max(maxBackoff, this.backoff);
+        this.deadlineNanos = TimeUnit.MILLISECONDS.toNanos(deadline);
+    }
+
+    /**
+     * Returns the policy of this process, creating it on first use and adding its counters to BG's measurements.
+     *
+     * @param bgProperties Properties passed to BG with -p.
+     * @return The shared policy.
+     */
+    public static synchronized RetryPolicy getInstance(Properties bgProperties) {
+        if (instance == null) {
+            final RetryPolicy policy = new RetryPolicy(
+                    Integer.parseInt(bgProperties.getProperty(RETRY_ATTEMPTS_PROPERTY,
+                            RETRY_ATTEMPTS_PROPERTY_DEFAULT)),
+                    Long.parseLong(bgProperties.getProperty(RETRY_BACKOFF_PROPERTY, RETRY_BACKOFF_PROPERTY_DEFAULT)),
+                    Long.parseLong(bgProperties.getProperty(RETRY_MAX_BACKOFF_PROPERTY,
+                            RETRY_MAX_BACKOFF_PROPERTY_DEFAULT)),
+                    Long.parseLong(bgProperties.getProperty(RETRY_DEADLINE_PROPERTY,
+                            RETRY_DEADLINE_PROPERTY_DEFAULT)));
+            MyMeasurement.addDBStatistics(STATISTICS_NAME, policy::getStatistics);
+            instance = policy;
+        }
+        return instance;
+    }
+
+    /**
+     * Waits before the next attempt, or gives up if the policy allows none.
+     *
+     * @param action     Name of the BG action.
+     * @param startNanos {@link System#nanoTime()} when the action started.
+     * @param attempt    Number of the attempt which failed, starting at 1.
+     * @param cause      Failure of that attempt.
+     * @throws RetryException If the attempt was the last one, the deadline would pass before the next attempt or the
+     *                        thread was interrupted.
+     */
+    public void await(String action, long startNanos, int attempt, Exception cause) {
+        Counters actionCounters = counters(action);
+        if (cause instanceof AbortException) {
+            actionCounters.aborts.incrementAndGet();
+        }
+
+        long delay = backoff(attempt);
+        if (attempt >= maxAttempts) {
+            actionCounters.failures.incrementAndGet();
+            throw new RetryException(RetryException.RETRIES_EXHAUSTED,
+                    action + " failed after " + attempt + " attempts", cause);
+        }
+        long elapsed = System.nanoTime() - startNanos + TimeUnit.MILLISECONDS.toNanos(delay);
+        if (deadlineNanos > 0 && elapsed > deadlineNanos) {
+            actionCounters.failures.incrementAndGet();
+            throw new RetryException(RetryException.DEADLINE_EXCEEDED,
+                    action + " exceeded its deadline after " + attempt + " attempts", cause);
+        }
+
+        actionCounters.retries.incrementAndGet();
+        try {
+            Thread.sleep(delay);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            actionCounters.failures.incrementAndGet();
+            throw new RetryException(RetryException.RETRIES_EXHAUSTED, action + " was interrupted while retrying", e);
+        }
+    }
+
+    /**
+     * Gives up an action without another attempt, e.g. because its last attempt may have taken effect.
+     *
+     * @param action    Name of the BG action.
+     * @param errorCode Error code to return to BG.
+     * @param message   Description of the failure.
+     * @param cause     Failure of the last attempt.
+     * @return The exception to throw.
+     */
+    public RetryException giveUp(String action, int errorCode, String message, Exception cause) {
+        counters(action).failures.incrementAndGet();
+        return new RetryException(errorCode, message, cause);
+    }
+
+    /**
+     * Returns the backoff after the given attempt: half of it fixed, half of it random.
+     *
+     * @param attempt Number of the attempt which failed, starting at 1.
+     * @return Backoff in milliseconds, between half of and the whole of the doubled backoff capped at the maximum.
+     */
+    long backoff(int attempt) {
+        long cap = Math.min(maxBackoff, backoff << Math.min(attempt - 1, 30));
+        long fixed = (cap + 1) / 2;
+        return fixed + ThreadLocalRandom.current().nextLong(cap - fixed + 1);
+    }
+
+    /**
+     * Returns the number of retries of the given action so far.
+     *
+     * @param action Name of the BG action.
+     * @return Retry count.
+     */
+    public long getRetries(String action) {
+        Counters actionCounters = counters.get(action);
+        return actionCounters != null ? actionCounters.retries.get() : 0;
+    }
+
+    /**
+     * Returns the number of aborted transactions and requests of the given action so far.
+     *
+     * @param action Name of the BG action.
+     * @return Abort count.
+     */
+    public long getAborts(String action) {
+        Counters actionCounters = counters.get(action);
+        return actionCounters != null ? actionCounters.aborts.get() : 0;
+    }
+
+    /**
+     * Returns the number of times the given action gave up so far.
+     *
+     * @param action Name of the BG action.
+     * @return Failure count.
+     */
+    public long getFailures(String action) {
+        Counters actionCounters = counters.get(action);
+        return actionCounters != null ? actionCounters.failures.get() : 0;
+    }
+
+    /**
+     * Returns the counters of every action which retried in the format of BG's measurements.
+     *
+     * @return One line of counters.
+     */
+    String getStatistics() {
+        StringBuilder statistics = new StringBuilder();
+        for (Map.Entry<String, Counters> entry : new ConcurrentSkipListMap<>(counters).entrySet()) {
+            if (statistics.length() > 0) {
+                statistics.append(", ");
+            }
+            statistics.append(entry.getKey()).append("(Retries=").append(entry.getValue().retries.get())
+                    .append(", Aborts=").append(entry.getValue().aborts.get())
+                    .append(", Failures=").append(entry.getValue().failures.get()).append(')');
+        }
+        return statistics.toString();
+    }
+
+    private Counters counters(String action) {
+        return counters.computeIfAbsent(action, name -> new Counters());
+    }
+}
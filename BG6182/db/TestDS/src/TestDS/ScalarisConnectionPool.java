@@ -0,0 +1,377 @@
+package TestDS;
+
+import com.ericsson.otp.erlang.OtpErlangObject;
+import de.zib.scalaris.Connection;
+import de.zib.scalaris.ConnectionException;
+import de.zib.scalaris.ConnectionFactory;
+import de.zib.scalaris.ConnectionPool;
+import de.zib.scalaris.DefaultConnectionPolicy;
+import de.zib.scalaris.PeerNode;
+import de.zib.scalaris.RoundRobinConnectionPolicy;
+import de.zib.tools.PropertyLoader;
+
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fixed-size pool of Scalaris connections shared by every {@link TestDSClient} of the process. All connections are
+ * opened when the pool is created so that no BG thread pays for a connection handshake while it is being measured.
+ * <p>
+ * Threads waiting for a connection are served in arrival order and give up after the configured timeout. A background
+ * thread periodically pings idle connections, closes the ones whose node went away and opens replacements.
+ * <p>
+ * When scalaris.node lists several nodes, connections are spread over them by the configured node policy. A
+ * connection whose node stops answering fails over to another node. Failed nodes are probed by the background thread
+ * and, once they answer again, idle connections are moved back until the ring is balanced.
+ * <p>
+ * Asynchronous reads run on {@link #getAsyncExecutor()}, which has one thread per connection. The Erlang connection
+ * carries one request at a time, so this is as many requests as the pool can have in flight.
+ */
+public class ScalarisConnectionPool extends ConnectionPool implements TestDSClientConstants {
+    private static final String SCALARIS_PROPERTIES = "scalaris.properties";
+    private static final String SCALARIS_PREFIX = "scalaris.";
+    private static final String POLICY_RANDOM = "random";
+    private static final String POLICY_ROUND_ROBIN = "roundrobin";
+    private static final String POLICY_LEAST_OUTSTANDING = "leastoutstanding";
+    private static final OtpErlangObject[] NO_ARGS = new OtpErlangObject[0];
+    private static ScalarisConnectionPool instance;
+
+    private final ConnectionFactory factory;
+    private final DefaultConnectionPolicy policy;
+    private final BlockingQueue<Connection> idle;
+    private final Set<Connection> connections = ConcurrentHashMap.newKeySet();
+    private final Set<Connection> inUse = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger open = new AtomicInteger();
+    private final int size;
+    private final long timeout;
+    private final ScheduledExecutorService healthCheck;
+    private ExecutorService asyncExecutor;
+
+    /**
+     * Creates a pool and opens its connections.
+     *
+     * @param factory       Factory used to open connections.
+     * @param nodePolicy    How connections are spread over the nodes: random, roundrobin or leastoutstanding.
+     * @param size          Number of connections kept open.
+     * @param timeout       Time in milliseconds {@link #getConnection()} waits for a free connection.
+     * @param checkInterval Time in milliseconds between two health checks, 0 disables them.
+     */
+    public ScalarisConnectionPool(ConnectionFactory factory, String nodePolicy, int size, long timeout,
+                                  long checkInterval) {
+        super(factory, size);
+        this.factory = factory;
+        this.policy = createPolicy(nodePolicy, factory.getNodes());
+        this.size = size;
+        this.timeout = timeout;
+        this.idle = new ArrayBlockingQueue<>(size, true);
+        for (int i = 0; i < size; i++) {
+            openConnection();
+        }
+        if (open.get() < size) {
+            System.err.println("Scalaris pool opened " + open.get() + " of " + size + " connections");
+        }
+
+        if (checkInterval > 0) {
+            healthCheck = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "scalaris-pool-health");
+                thread.setDaemon(true);
+                return thread;
+            });
+            healthCheck.scheduleWithFixedDelay(this::checkConnections, checkInterval, checkInterval,
+                    TimeUnit.MILLISECONDS);
+        } else {
+            healthCheck = null;
+        }
+    }
+
+    /**
+     * Returns the pool of this process, creating it on first use. The pool is configured from scalaris.properties;
+     * properties starting with "scalaris." in the given BG properties take precedence over the file.
+     *
+     * @param bgProperties Properties passed to BG with -p.
+     * @return The shared pool.
+     */
+    public static synchronized ScalarisConnectionPool getInstance(Properties bgProperties) {
+        if (instance == null) {
+            Properties properties = new Properties();
+            PropertyLoader.loadProperties(properties, SCALARIS_PROPERTIES);
+            for (String name : bgProperties.stringPropertyNames()) {
+                if (name.startsWith(SCALARIS_PREFIX)) {
+                    properties.setProperty(name, bgProperties.getProperty(name));
+                }
+            }
+
+            final ScalarisConnectionPool pool = new ScalarisConnectionPool(new ConnectionFactory(properties),
+                    properties.getProperty(NODE_POLICY_PROPERTY, NODE_POLICY_PROPERTY_DEFAULT),
+                    Integer.parseInt(properties.getProperty(POOL_SIZE_PROPERTY, POOL_SIZE_PROPERTY_DEFAULT)),
+                    Long.parseLong(properties.getProperty(POOL_TIMEOUT_PROPERTY, POOL_TIMEOUT_PROPERTY_DEFAULT)),
+                    Long.parseLong(properties.getProperty(POOL_CHECK_INTERVAL_PROPERTY,
+                            POOL_CHECK_INTERVAL_PROPERTY_DEFAULT)));
+            Runtime.getRuntime().addShutdownHook(new Thread(pool::closeAll));
+            instance = pool;
+        }
+        return instance;
+    }
+
+    /**
+     * Returns a free connection, waiting up to the configured timeout.
+     *
+     * @return A connection which must be handed back with {@link #releaseConnection(Connection)}.
+     * @throws ConnectionException If no connection became free in time.
+     */
+    @Override
+    public Connection getConnection() throws ConnectionException {
+        Connection connection = getConnection(timeout);
+        if (connection == null) {
+            throw new ConnectionException("no Scalaris connection available within " + timeout + "ms");
+        }
+        return connection;
+    }
+
+    /**
+     * Returns a free connection, waiting up to the given timeout.
+     *
+     * @param timeout Time to wait in milliseconds.
+     * @return A connection or null if none became free in time.
+     */
+    @Override
+    public Connection getConnection(long timeout) {
+        /** A node may have been down while the pool was filled. Open the missing connection before queueing up. */
+        if (idle.isEmpty() && open.get() < size) {
+            openConnection();
+        }
+        /** Only the fair queue hands out connections, so a thread which just arrived cannot overtake waiting ones. */
+        Connection connection = null;
+        try {
+            connection = idle.poll(timeout, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (connection != null) {
+            inUse.add(connection);
+        }
+        return connection;
+    }
+
+    /**
+     * Hands a connection back to the pool.
+     *
+     * @param connection A connection taken from this pool.
+     */
+    @Override
+    public void releaseConnection(Connection connection) {
+        inUse.remove(connection);
+        if (!idle.offer(connection)) {
+            discard(connection);
+        }
+    }
+
+    /**
+     * Returns the executor for asynchronous reads, creating it on first use. Its threads take connections from this
+     * pool like any BG thread.
+     *
+     * @return An executor with one daemon thread per connection.
+     */
+    public synchronized ExecutorService getAsyncExecutor() {
+        if (asyncExecutor == null) {
+            AtomicInteger threads = new AtomicInteger();
+            asyncExecutor = Executors.newFixedThreadPool(size, runnable -> {
+                Thread thread = new Thread(runnable, "scalaris-async-" + threads.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return asyncExecutor;
+    }
+
+    /**
+     * Stops the health check and the asynchronous reads and closes all idle connections.
+     */
+    @Override
+    public void closeAll() {
+        if (healthCheck != null) {
+            healthCheck.shutdownNow();
+        }
+        synchronized (this) {
+            if (asyncExecutor != null) {
+                asyncExecutor.shutdownNow();
+            }
+        }
+        Connection connection;
+        while ((connection = idle.poll()) != null) {
+            discard(connection);
+        }
+    }
+
+    /**
+     * Returns the number of connections currently open, including those handed out.
+     *
+     * @return Open connection count.
+     */
+    public int getOpenConnections() {
+        return open.get();
+    }
+
+    /**
+     * Returns the number of open connections to the given node.
+     *
+     * @param node A node of the ring.
+     * @return Connection count.
+     */
+    public int getConnections(PeerNode node) {
+        return count(connections, node);
+    }
+
+    /**
+     * Returns the node policy, which also tracks the nodes currently considered failed.
+     *
+     * @return The node policy.
+     */
+    public DefaultConnectionPolicy getNodePolicy() {
+        return policy;
+    }
+
+    private DefaultConnectionPolicy createPolicy(String name, List<PeerNode> nodes) {
+        switch (name) {
+            case POLICY_RANDOM:
+                return new DefaultConnectionPolicy(nodes);
+            case POLICY_ROUND_ROBIN:
+                return new RoundRobinConnectionPolicy(nodes);
+            case POLICY_LEAST_OUTSTANDING:
+                /** Requests in flight weigh more than any number of idle connections. */
+                return new LeastOutstandingConnectionPolicy(nodes,
+                        node -> count(inUse, node) * (size + 1) + count(connections, node));
+            default:
+                throw new IllegalArgumentException("Unknown " + NODE_POLICY_PROPERTY + ": " + name);
+        }
+    }
+
+    private static int count(Set<Connection> connections, PeerNode node) {
+        int count = 0;
+        for (Connection connection : connections) {
+            if (connection.getRemote() == node) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Opens a connection and adds it to the idle queue unless the pool is already full.
+     *
+     * @return true if a connection was added.
+     */
+    private boolean openConnection() {
+        if (open.incrementAndGet() > size) {
+            open.decrementAndGet();
+            return false;
+        }
+        try {
+            Connection connection = factory.createConnection(policy);
+            connections.add(connection);
+            idle.add(connection);
+            return true;
+        } catch (ConnectionException e) {
+            open.decrementAndGet();
+            return false;
+        }
+    }
+
+    private void discard(Connection connection) {
+        connections.remove(connection);
+        connection.close();
+        open.decrementAndGet();
+    }
+
+    /**
+     * Pings every connection that is idle right now, evicts the dead ones, refills the pool and moves connections
+     * back to nodes which have recovered.
+     */
+    void checkConnections() {
+        for (int i = idle.size(); i > 0; i--) {
+            Connection connection = idle.poll();
+            if (connection == null) {
+                break;
+            }
+            try {
+                connection.doRPC("erlang", "node", NO_ARGS);
+                releaseConnection(connection);
+            } catch (ConnectionException e) {
+                policy.nodeFailed(connection.getRemote());
+                discard(connection);
+            }
+        }
+
+        for (PeerNode node : policy.getBadNodes()) {
+            probe(node);
+        }
+
+        for (int missing = size - open.get(); missing > 0; missing--) {
+            if (!openConnection()) {
+                break;
+            }
+        }
+
+        rebalance();
+    }
+
+    /**
+     * Puts a failed node back into rotation if it accepts connections again. The probe uses its own PeerNode so that
+     * the failure count of the shared one is only reset through the policy.
+     *
+     * @param node A node which has failed before.
+     */
+    private void probe(PeerNode node) {
+        try {
+            factory.createConnection(new DefaultConnectionPolicy(new PeerNode(node.getNode().node()))).close();
+            policy.nodeFailReset(node);
+        } catch (ConnectionException ignored) {
+        }
+    }
+
+    /**
+     * Replaces idle connections of the most used node until no node has two connections more than another one.
+     */
+    private void rebalance() {
+        for (int moves = size; moves > 0; moves--) {
+            PeerNode busiest = null;
+            PeerNode quietest = null;
+            for (PeerNode node : policy.getGoodNodes()) {
+                int count = count(connections, node);
+                if (busiest == null || count > count(connections, busiest)) {
+                    busiest = node;
+                }
+                if (quietest == null || count < count(connections, quietest)) {
+                    quietest = node;
+                }
+            }
+            if (busiest == null || count(connections, busiest) - count(connections, quietest) < 2) {
+                return;
+            }
+
+            Connection moved = null;
+            for (Connection connection : idle) {
+                if (connection.getRemote() == busiest && idle.remove(connection)) {
+                    moved = connection;
+                    break;
+                }
+            }
+            if (moved == null) {
+                return;
+            }
+            discard(moved);
+            if (!openConnection()) {
+                return;
+            }
+        }
+    }
+}
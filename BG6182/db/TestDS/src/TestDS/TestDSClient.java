@@ -1,6 +1,5 @@
 package TestDS;
 
-import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonPrimitive;
@@ -9,9 +8,17 @@ import edu.usc.bg.base.*;
 
 import java.util.*;
 
-public class TestDSClient extends DB {
+/**
+ * BG binding for Scalaris. Actions return 0 on success and -1 if a user or resource does not exist. A failed request
+ * or aborted transaction is retried as the {@link RetryPolicy} says, and once it gives up the action returns
+ * {@link RetryException#RETRIES_EXHAUSTED} or {@link RetryException#DEADLINE_EXCEEDED}. A commit whose reply was lost
+ * is not retried, as it may have been applied; the action returns {@link RetryException#COMMIT_UNKNOWN}.
+ */
+public class TestDSClient extends DB implements TestDSClientConstants {
     private TransactionHelper transactionHelper;
-    private ConnectionPool connectionPool;
+    private UserStore userStore;
+    private BulkLoader bulkLoader;
+    private int topK = Integer.parseInt(TOP_K_PROPERTY_DEFAULT);
 
     private static final String PENDING_FRIENDS = "pendingFriends";
     private static final String CONFIRMED_FRIENDS = "confirmedFriends";
@@ -29,7 +36,142 @@ public class TestDSClient extends DB {
     private static final String CREATED_RESOURCES = "createdResources";
     private static final String PIC = "pic";
     private static final String TPIC = "tpic";
-    private static final int NUM_CONN_POOL = 0;
+    private static final int STATS_BATCH_SIZE = 4096;
+
+    /**
+     * Names of the actions as in BG's measurements, under which retries are counted.
+     */
+    private static final String INSERT_ACTION = "INSERT";
+    private static final String PROFILE_ACTION = "PROFILE";
+    private static final String FRIENDS_ACTION = "FRIENDS";
+    private static final String PENDING_ACTION = "PENDING";
+    private static final String ACCEPT_ACTION = "ACCEPT";
+    private static final String REJECT_ACTION = "REJECT";
+    private static final String INV_ACTION = "INV";
+    private static final String GETTOPRES_ACTION = "GETTOPRES";
+    private static final String GETCREATEDRES_ACTION = "GETCREATEDRES";
+    private static final String GETRESCOMMENT_ACTION = "GETRESCOMMENT";
+    private static final String POSTCOMMENT_ACTION = "POSTCOMMENT";
+    private static final String DELCOMMENT_ACTION = "DELCOMMENT";
+    private static final String UNFRIEND_ACTION = "UNFRIEND";
+    private static final String CREATEFRIENDSHIP_ACTION = "CREATEFRIENDSHIP";
+    private static final String QUERYPENDING_ACTION = "QUERYPENDING";
+    private static final String QUERYCONFIRMED_ACTION = "QUERYCONFIRMED";
+
+    /**
+     * Creates an instance which is initialized by {@link #init()}. BG loads the binding through this constructor.
+     */
+    public TestDSClient() {
+    }
+
+    /**
+     * Creates an instance on top of the given helper without opening a connection pool. Users are stored in the
+     * default layout.
+     *
+     * @param transactionHelper A TransactionHelper instance.
+     */
+    TestDSClient(TransactionHelper transactionHelper) {
+        this(transactionHelper, LAYOUT_PROPERTY_DEFAULT);
+    }
+
+    /**
+     * Creates an instance on top of the given helper without opening a connection pool.
+     *
+     * @param transactionHelper A TransactionHelper instance.
+     * @param layout            Key layout of users, see {@link #LAYOUT_PROPERTY}.
+     */
+    TestDSClient(TransactionHelper transactionHelper, String layout) {
+        this(transactionHelper, layout, Boolean.parseBoolean(COUNTERS_PROPERTY_DEFAULT));
+    }
+
+    /**
+     * Creates an instance on top of the given helper without opening a connection pool.
+     *
+     * @param transactionHelper A TransactionHelper instance.
+     * @param layout            Key layout of users, see {@link #LAYOUT_PROPERTY}.
+     * @param counters          Whether list sizes are kept in counters, see {@link #COUNTERS_PROPERTY}.
+     */
+    TestDSClient(TransactionHelper transactionHelper, String layout, boolean counters) {
+        this(transactionHelper, layout, counters, null);
+    }
+
+    /**
+     * Creates an instance on top of the given helper without opening a connection pool.
+     *
+     * @param transactionHelper A TransactionHelper instance.
+     * @param layout            Key layout of users, see {@link #LAYOUT_PROPERTY}.
+     * @param counters          Whether list sizes are kept in counters, see {@link #COUNTERS_PROPERTY}.
+     * @param bulkLoader        Loader of the load phase until {@link #cleanup(boolean)}, or null.
+     */
+    TestDSClient(TransactionHelper transactionHelper, String layout, boolean counters, BulkLoader bulkLoader) {
+        this.transactionHelper = transactionHelper;
+        this.userStore = createUserStore(layout, counters, transactionHelper);
+        this.bulkLoader = bulkLoader;
+        if (bulkLoader != null) {
+            bulkLoader.open();
+        }
+    }
+
+    /**
+     * Returns the user store for the given key layout.
+     *
+     * @param layout            Key layout of users, see {@link #LAYOUT_PROPERTY}.
+     * @param counters          Whether list sizes are kept in counters, see {@link #COUNTERS_PROPERTY}.
+     * @param transactionHelper A TransactionHelper instance.
+     * @return A UserStore instance.
+     */
+    static UserStore createUserStore(String layout, boolean counters, TransactionHelper transactionHelper) {
+        switch (layout) {
+            case LAYOUT_DOCUMENT:
+                if (counters) {
+                    throw new IllegalArgumentException(COUNTERS_PROPERTY + " needs the " + LAYOUT_NORMALIZED + " or "
+                            + LAYOUT_NATIVE + " layout");
+                }
+                return new DocumentUserStore(transactionHelper);
+            case LAYOUT_NORMALIZED:
+                return new NormalizedUserStore(transactionHelper, counters);
+            case LAYOUT_NATIVE:
+                return new NativeListUserStore(transactionHelper, counters);
+            default:
+                throw new IllegalArgumentException("Unknown " + LAYOUT_PROPERTY + ": " + layout);
+        }
+    }
+
+    /**
+     * Returns the codec with the given name.
+     *
+     * @param codec Encoding of the values, see {@link #CODEC_PROPERTY}.
+     * @return A ValueCodec instance.
+     */
+    static ValueCodec createCodec(String codec) {
+        switch (codec) {
+            case CODEC_JSON:
+                return new JsonCodec();
+            case CODEC_BINARY:
+                return new BinaryCodec();
+            default:
+                throw new IllegalArgumentException("Unknown " + CODEC_PROPERTY + ": " + codec);
+        }
+    }
+
+    /**
+     * Returns the read consistency with the given name.
+     *
+     * @param readConsistency How read-only actions read, see {@link #READ_CONSISTENCY_PROPERTY}.
+     * @return A ReadConsistency value.
+     */
+    static TransactionHelper.ReadConsistency createReadConsistency(String readConsistency) {
+        switch (readConsistency) {
+            case READ_SERIALIZABLE:
+                return TransactionHelper.ReadConsistency.SERIALIZABLE;
+            case READ_QUORUM:
+                return TransactionHelper.ReadConsistency.QUORUM;
+            case READ_CACHED:
+                return TransactionHelper.ReadConsistency.CACHED;
+            default:
+                throw new IllegalArgumentException("Unknown " + READ_CONSISTENCY_PROPERTY + ": " + readConsistency);
+        }
+    }
 
     /**
      * Initialize any state for this DB. Called once per DB instance; there is one DB instance per client thread. This
@@ -40,8 +182,24 @@ public class TestDSClient extends DB {
      */
     @Override
     public synchronized boolean init() throws DBException {
-        connectionPool = new ConnectionPool(new ConnectionFactory(), NUM_CONN_POOL);
-        transactionHelper = new TransactionHelper(connectionPool);
+        boolean transactional = Boolean.parseBoolean(getProperties().getProperty(TRANSACTIONS_PROPERTY,
+                TRANSACTIONS_PROPERTY_DEFAULT));
+        ScalarisConnectionPool connectionPool = ScalarisConnectionPool.getInstance(getProperties());
+        ReadCache cache = ReadCache.getInstance(getProperties());
+        transactionHelper = new TransactionHelper(connectionPool, transactional,
+                createCodec(getProperties().getProperty(CODEC_PROPERTY, CODEC_PROPERTY_DEFAULT)), cache,
+                connectionPool.getAsyncExecutor(), RetryPolicy.getInstance(getProperties()),
+                createReadConsistency(getProperties().getProperty(READ_CONSISTENCY_PROPERTY,
+                        cache != null ? READ_CACHED : READ_QUORUM)), RequestStatistics.getInstance());
+        userStore = createUserStore(getProperties().getProperty(LAYOUT_PROPERTY, LAYOUT_PROPERTY_DEFAULT),
+                Boolean.parseBoolean(getProperties().getProperty(COUNTERS_PROPERTY, COUNTERS_PROPERTY_DEFAULT)),
+                transactionHelper);
+        topK = Integer.parseInt(getProperties().getProperty(TOP_K_PROPERTY, TOP_K_PROPERTY_DEFAULT));
+        bulkLoader = BulkLoader.getInstance(getProperties(), transactionHelper, userStore,
+                connectionPool.getAsyncExecutor());
+        if (bulkLoader != null) {
+            bulkLoader.open();
+        }
         return super.init();
     }
 
@@ -58,7 +216,15 @@ public class TestDSClient extends DB {
      */
     @Override
     public synchronized void cleanup(boolean warmup) throws DBException {
-        connectionPool.closeAll();
+        /** The connection pool is shared by all threads and lives until the process exits. */
+        if (bulkLoader != null) {
+            try {
+                bulkLoader.close();
+            } catch (RetryException e) {
+                throw new DBException("Bulk load failed", e);
+            }
+            bulkLoader = null;
+        }
         super.cleanup(warmup);
     }
 
@@ -81,81 +247,65 @@ public class TestDSClient extends DB {
      * responsible for inserting the PK and the other attributes in the appropriate order.
      */
     @Override
-    public synchronized int insertEntity(String entitySet, String entityPK, HashMap<String, ByteIterator> values,
-                                         boolean insertImage) {
+    public int insertEntity(String entitySet, String entityPK, HashMap<String, ByteIterator> values,
+                            boolean insertImage) {
+        transactionHelper.startAction(INSERT_ACTION);
         /**
-         * Insert Users and Resources data using JSON-like data model.
+         * Insert Users and Resources data using JSON-like data model. Images are kept apart as binaries.
          */
         JsonObject jsonObject = new JsonObject();
+        byte[] pic = null;
+        byte[] thumbnail = null;
         for (Map.Entry<String, ByteIterator> entry : values.entrySet()) {
-            if (!entry.getKey().equals(PIC) && !entry.getKey().equals(TPIC)) {
+            if (entry.getKey().equals(PIC)) {
+                pic = insertImage ? entry.getValue().toArray() : null;
+            } else if (entry.getKey().equals(TPIC)) {
+                thumbnail = insertImage ? entry.getValue().toArray() : null;
+            } else {
                 jsonObject.add(entry.getKey(), new JsonPrimitive(entry.getValue().toString()));
-            } else if (insertImage) {
-                byte[] byteImage = entry.getValue().toArray();
-                jsonObject.add(entry.getKey(), ImageUtils.toJsonPrimitive(byteImage));
             }
         }
 
 
-        if (USERS.equals(entitySet)) {
-            transactionHelper.writeUser(entityPK, jsonObject);
-        }
-
-        /**
-         * Update Users data after inserting Resources.
-         */
-        else if (RESOURCES.equals(entitySet)) {
-            try {
-                transactionHelper.writeResource(entityPK, jsonObject);
-
-                ByteIterator wallUserId = values.get(WALL_USER_ID);
-                JsonObject wallUserObject = transactionHelper.readUser(wallUserId.toString());
-
-                JsonArray resourceArray;
-                if (wallUserObject.has(RESOURCES)) {
-                    resourceArray = wallUserObject.getAsJsonArray(RESOURCES);
-                } else {
-                    resourceArray = new JsonArray();
+        try {
+            if (bulkLoader != null) {
+                if (USERS.equals(entitySet)) {
+                    bulkLoader.addUser(entityPK, jsonObject, pic, thumbnail);
+                } else if (RESOURCES.equals(entitySet)) {
+                    bulkLoader.addResource(entityPK, jsonObject, jsonObject.get(WALL_USER_ID).getAsString(),
+                            jsonObject.get(CREATOR_ID).getAsString());
                 }
-
-                resourceArray.add(new JsonPrimitive(entityPK));
-                wallUserObject.add(RESOURCES, resourceArray);
-                transactionHelper.writeUser(wallUserId.toString(), wallUserObject);
-
-                /**
-                 * Update createdResource of User data.
-                 */
-                ByteIterator creatorId = values.get(CREATOR_ID);
-
-                if (wallUserId.equals(creatorId)) {
-                    JsonArray createdResourceArray;
-                    if (wallUserObject.has(CREATED_RESOURCES)) {
-                        createdResourceArray = wallUserObject.getAsJsonArray(CREATED_RESOURCES);
-                    } else {
-                        createdResourceArray = new JsonArray();
-                    }
-
-                    createdResourceArray.add(new JsonPrimitive(entityPK));
-                    wallUserObject.add(CREATED_RESOURCES, createdResourceArray);
-                    transactionHelper.writeUser(wallUserId.toString(), wallUserObject);
-                } else {
-                    JsonObject creatorObject = transactionHelper.readUser(creatorId.toString());
-                    JsonArray createdResourceArray;
-
-                    if (creatorObject.has(CREATED_RESOURCES)) {
-                        createdResourceArray = creatorObject.getAsJsonArray(CREATED_RESOURCES);
-                    } else {
-                        createdResourceArray = new JsonArray();
+            } else if (USERS.equals(entitySet)) {
+                final byte[] userPic = pic;
+                final byte[] userThumbnail = thumbnail;
+                transactionHelper.runInTransaction(() -> {
+                    userStore.writeUser(entityPK, jsonObject);
+                    transactionHelper.writeRecentResources(entityPK, Collections.<JsonObject>emptyList());
+                    if (userPic != null || userThumbnail != null) {
+                        userStore.writeImages(entityPK, userPic, userThumbnail);
                     }
+                    return null;
+                });
+            }
 
-                    createdResourceArray.add(new JsonPrimitive(entityPK));
-                    creatorObject.add(CREATED_RESOURCES, createdResourceArray);
-                    transactionHelper.writeUser(creatorId.toString(), creatorObject);
-                }
-            } catch (NotFoundException e) {
-                e.printStackTrace();
-                return -1;
+            /**
+             * Add the resource to the wall of its user, in front of the newest ones, and to the created resources of
+             * its creator.
+             */
+            else if (RESOURCES.equals(entitySet)) {
+                transactionHelper.runInTransaction(() -> {
+                    transactionHelper.writeResource(entityPK, jsonObject);
+                    userStore.addId(jsonObject.get(WALL_USER_ID).getAsString(), UserList.WALL, entityPK);
+                    transactionHelper.addRecentResource(jsonObject.get(WALL_USER_ID).getAsString(), jsonObject, topK);
+                    userStore.addId(jsonObject.get(CREATOR_ID).getAsString(), UserList.CREATED, entityPK);
+                    return null;
+                });
             }
+        } catch (RetryException e) {
+            return e.getErrorCode();
+        } catch (NotFoundException | AbortException e) {
+            e.printStackTrace();
+            return -1;
         }
         return 0;
     }
@@ -191,60 +341,58 @@ public class TestDSClient extends DB {
      * If images exist for users, they should be converted to bytearrays and added to the result hashmap.
      */
     @Override
-    public synchronized int viewProfile(int requesterID, int profileOwnerID, HashMap<String, ByteIterator> result,
-                                        boolean insertImage, boolean testMode) {
+    public int viewProfile(int requesterID, int profileOwnerID, HashMap<String, ByteIterator> result,
+                           boolean insertImage, boolean testMode) {
+        transactionHelper.startAction(PROFILE_ACTION);
 
-        JsonObject jsonObject;
+        UserView user;
         try {
-            jsonObject = transactionHelper.readUser(String.valueOf(profileOwnerID));
-        } catch (NotFoundException e) {
+            user = transactionHelper.runReadOnly(() -> {
+                if (requesterID == profileOwnerID) {
+                    return userStore.readCounts(String.valueOf(profileOwnerID), insertImage, UserList.FRIENDS,
+                            UserList.WALL, UserList.PENDING);
+                }
+                return userStore.readCounts(String.valueOf(profileOwnerID), insertImage, UserList.FRIENDS,
+                        UserList.WALL);
+            });
+        } catch (RetryException e) {
+            return e.getErrorCode();
+        } catch (NotFoundException | AbortException e) {
             e.printStackTrace();
             return -1;
         }
 
-
         /**
          * Dump data to result.
          */
-        for (Map.Entry<String, JsonElement> entry : jsonObject.entrySet()) {
+        for (Map.Entry<String, JsonElement> entry : user.getProfile().entrySet()) {
             if (!entry.getKey().equals(PENDING_FRIENDS) && !entry.getKey().equals(CONFIRMED_FRIENDS) && !entry.getKey
                     ().equals(RESOURCES) && !entry.getKey().equals(CREATED_RESOURCES) && !entry.getKey().equals(PIC)
                     && !entry.getKey().equals(TPIC)) {
                 result.put(entry.getKey(), new StringByteIterator(entry.getValue().getAsString()));
-            } else if (insertImage && (entry.getKey().equals(PIC) || entry.getKey().equals(TPIC))) {
-                result.put(entry.getKey(), ImageUtils.toObejctByteIterator(entry.getValue()));
             }
         }
+        if (user.getPic() != null) {
+            result.put(PIC, new ObjectByteIterator(user.getPic()));
+        }
 
         /**
          * Count friends.
          */
-        int friendCount = 0;
-        if (jsonObject.has(CONFIRMED_FRIENDS)) {
-            JsonArray jsonArray = jsonObject.getAsJsonArray(CONFIRMED_FRIENDS);
-            friendCount = jsonArray.size();
-        }
+        long friendCount = user.getCount(UserList.FRIENDS);
         result.put(FRIEND_COUNT, new ObjectByteIterator(String.valueOf(friendCount).getBytes()));
 
         /**
          * Count resources.
          */
-        int resourceCount = 0;
-        if (jsonObject.has(RESOURCES)) {
-            JsonArray jsonArray = jsonObject.getAsJsonArray(RESOURCES);
-            resourceCount = jsonArray.size();
-        }
+        long resourceCount = user.getCount(UserList.WALL);
         result.put(RESOURCE_COUNT, new ObjectByteIterator(String.valueOf(resourceCount).getBytes()));
 
         /**
          * Pending friendships.
          */
         if (requesterID == profileOwnerID) {
-            int pendingCount = 0;
-            if (jsonObject.has(PENDING_FRIENDS)) {
-                JsonArray jsonArray = jsonObject.getAsJsonArray(PENDING_FRIENDS);
-                pendingCount = jsonArray.size();
-            }
+            long pendingCount = user.getCount(UserList.PENDING);
             result.put(PENDING_COUNT, new ObjectByteIterator(String.valueOf(pendingCount).getBytes()));
         }
 
@@ -275,52 +423,42 @@ public class TestDSClient extends DB {
      * key.
      */
     @Override
-    public synchronized int listFriends(int requesterID, int profileOwnerID, Set<String> fields,
-                                        Vector<HashMap<String, ByteIterator>> result, boolean insertImage, boolean
-                                                    testMode) {
+    public int listFriends(int requesterID, int profileOwnerID, Set<String> fields,
+                           Vector<HashMap<String, ByteIterator>> result, boolean insertImage, boolean
+                                       testMode) {
+        transactionHelper.startAction(FRIENDS_ACTION);
         try {
-            transactionHelper.beginTransaction();
-            JsonObject ownerObject = transactionHelper.readUser(String.valueOf(profileOwnerID));
-
-            List<JsonObject> friendList = new ArrayList<>();
-            if (ownerObject.has(CONFIRMED_FRIENDS)) {
-                JsonArray friendArray = ownerObject.getAsJsonArray(CONFIRMED_FRIENDS);
+            List<UserView> friendList = transactionHelper.runReadOnly(() -> {
+                UserView owner = userStore.readUser(String.valueOf(profileOwnerID), false, UserList.FRIENDS);
 
                 /**
                  * Read all the friends.
                  */
-                for (JsonElement element : friendArray) {
-                    JsonObject friendObject = transactionHelper.readUser(element.getAsString());
-                    friendList.add(friendObject);
-                }
-            }
-            transactionHelper.endTransaction();
+                return userStore.readProfiles(owner.getIds(UserList.FRIENDS), insertImage);
+            });
 
-            for (JsonObject friendObject : friendList) {
+            for (UserView friend : friendList) {
                 HashMap<String, ByteIterator> hashMap = new HashMap<>();
 
                 if (fields == null) {
-                    for (Map.Entry<String, JsonElement> entry : friendObject.entrySet()) {
-                        if (insertImage && (entry.getKey().equals(PIC) || entry.getKey().equals(TPIC))) {
-                            hashMap.put(entry.getKey(), ImageUtils.toObejctByteIterator(entry.getValue()));
-                        } else if (!entry.getValue().isJsonArray()) {
-                            hashMap.put(entry.getKey(), new StringByteIterator(entry.getValue().getAsString()));
-                        }
-                    }
+                    putProfile(hashMap, friend);
                 } else {
                     for (String field : fields) {
-                        if (insertImage && (field.equals(PIC) || field.equals(TPIC))) {
-                            hashMap.put(field, ImageUtils.toObejctByteIterator(friendObject.get(field)));
+                        if (field.equals(PIC) || field.equals(TPIC)) {
+                            if (friend.getThumbnail() != null) {
+                                hashMap.put(field, new ObjectByteIterator(friend.getThumbnail()));
+                            }
                         } else {
-                            hashMap.put(field, new StringByteIterator(friendObject.get(field).getAsString()));
+                            hashMap.put(field, new StringByteIterator(friend.getProfile().get(field).getAsString()));
                         }
                     }
                 }
                 result.add(hashMap);
             }
-        } catch (NotFoundException e) {
+        } catch (RetryException e) {
+            return e.getErrorCode();
+        } catch (NotFoundException | AbortException e) {
             e.printStackTrace();
-            transactionHelper.endTransaction();
             return -1;
         }
         return 0;
@@ -347,38 +485,47 @@ public class TestDSClient extends DB {
      * into the result hashmap.
      */
     @Override
-    public synchronized int viewFriendReq(int profileOwnerID, Vector<HashMap<String, ByteIterator>> results, boolean
+    public int viewFriendReq(int profileOwnerID, Vector<HashMap<String, ByteIterator>> results, boolean
             insertImage, boolean testMode) {
+        transactionHelper.startAction(PENDING_ACTION);
         try {
-            JsonObject jsonObject = transactionHelper.readUser(String.valueOf(profileOwnerID));
-            if (jsonObject.has(PENDING_FRIENDS)) {
-                JsonArray friendArray = jsonObject.get(PENDING_FRIENDS).getAsJsonArray();
-
-                List<JsonObject> requesterList = new ArrayList<>();
-                for (JsonElement element : friendArray) {
-                    JsonObject requesterObject = transactionHelper.readUser(element.getAsString());
-                    requesterList.add(requesterObject);
-                }
+            List<UserView> requesterList = transactionHelper.runReadOnly(() -> {
+                UserView user = userStore.readUser(String.valueOf(profileOwnerID), false, UserList.PENDING);
+                return userStore.readProfiles(user.getIds(UserList.PENDING), insertImage);
+            });
 
-                for (JsonObject requesterObject : requesterList) {
-                    HashMap<String, ByteIterator> hashMap = new HashMap<>();
-                    for (Map.Entry<String, JsonElement> entry : requesterObject.entrySet()) {
-                        if (insertImage && (entry.getKey().equals(PIC) || entry.getKey().equals(TPIC))) {
-                            hashMap.put(entry.getKey(), ImageUtils.toObejctByteIterator(entry.getValue()));
-                        } else if (!entry.getValue().isJsonArray()) {
-                            hashMap.put(entry.getKey(), new StringByteIterator(entry.getValue().getAsString()));
-                        }
-                    }
-                    results.add(hashMap);
-                }
+            for (UserView requester : requesterList) {
+                HashMap<String, ByteIterator> hashMap = new HashMap<>();
+                putProfile(hashMap, requester);
+                results.add(hashMap);
             }
-        } catch (NotFoundException e) {
+        } catch (RetryException e) {
+            return e.getErrorCode();
+        } catch (NotFoundException | AbortException e) {
             e.printStackTrace();
             return -1;
         }
         return 0;
     }
 
+    /**
+     * Puts the profile attributes of a friend or requester and, if it was read, the thumbnail into a result hashmap.
+     * Images of users loaded before they had their own keys are skipped along with the ID lists.
+     *
+     * @param hashMap The result hashmap.
+     * @param user    The user.
+     */
+    private static void putProfile(HashMap<String, ByteIterator> hashMap, UserView user) {
+        for (Map.Entry<String, JsonElement> entry : user.getProfile().entrySet()) {
+            if (!entry.getKey().equals(PIC) && !entry.getKey().equals(TPIC) && !entry.getValue().isJsonArray()) {
+                hashMap.put(entry.getKey(), new StringByteIterator(entry.getValue().getAsString()));
+            }
+        }
+        if (user.getThumbnail() != null) {
+            hashMap.put(TPIC, new ObjectByteIterator(user.getThumbnail()));
+        }
+    }
+
     /**
      * This function is called in the benchmarking phase which is executed with the -t argument.
      * <p>
@@ -394,55 +541,24 @@ public class TestDSClient extends DB {
      * should be friends with A.
      */
     @Override
-    public synchronized int acceptFriend(int inviterID, int inviteeID) {
+    public int acceptFriend(int inviterID, int inviteeID) {
+        transactionHelper.startAction(ACCEPT_ACTION);
         try {
-            transactionHelper.beginTransaction();
-            JsonObject inviterObject = transactionHelper.readUser(String.valueOf(inviterID));
-            JsonObject inviteeObject = transactionHelper.readUser(String.valueOf(inviteeID));
-
-            /**
-             * Inviter - Add invitee on friend list.
-             */
-            JsonArray confirmedFriends1;
-            if (inviterObject.has(CONFIRMED_FRIENDS)) {
-                confirmedFriends1 = inviterObject.getAsJsonArray(CONFIRMED_FRIENDS);
-            } else {
-                confirmedFriends1 = new JsonArray();
-                inviterObject.add(CONFIRMED_FRIENDS, confirmedFriends1);
-            }
-
-            confirmedFriends1.add(new JsonPrimitive(String.valueOf(inviteeID)));
-            transactionHelper.writeUser(String.valueOf(inviterID), inviterObject);
-
-            /**
-             * Invitee - Add inviter on friend list.
-             */
-            JsonArray confirmedFriends2;
-            if (inviteeObject.has(CONFIRMED_FRIENDS)) {
-                confirmedFriends2 = inviteeObject.getAsJsonArray(CONFIRMED_FRIENDS);
-            } else {
-                confirmedFriends2 = new JsonArray();
-                inviteeObject.add(CONFIRMED_FRIENDS, confirmedFriends2);
-            }
-
-            confirmedFriends2.add(new JsonPrimitive(String.valueOf(inviterID)));
-            inviteeObject.add(CONFIRMED_FRIENDS, confirmedFriends2);
-
-            /**
-             * Invitee - Remove from pending friends.
-             */
-            JsonArray pendingFriends;
-            if (inviteeObject.has(PENDING_FRIENDS)) {
-                pendingFriends = inviteeObject.getAsJsonArray(PENDING_FRIENDS);
-                pendingFriends.remove(new JsonPrimitive(String.valueOf(inviterID)));
-                transactionHelper.writeUser(String.valueOf(inviteeID), inviteeObject);
-            }
-        } catch (NotFoundException e) {
+            transactionHelper.runInTransaction(() -> {
+                /**
+                 * Add each other on the friend lists and remove the request from the invitee's pending list.
+                 */
+                userStore.addId(String.valueOf(inviterID), UserList.FRIENDS, String.valueOf(inviteeID));
+                userStore.addId(String.valueOf(inviteeID), UserList.FRIENDS, String.valueOf(inviterID));
+                userStore.removeId(String.valueOf(inviteeID), UserList.PENDING, String.valueOf(inviterID));
+                return null;
+            });
+        } catch (RetryException e) {
+            return e.getErrorCode();
+        } catch (NotFoundException | AbortException e) {
             e.printStackTrace();
-            transactionHelper.endTransaction();
             return -1;
         }
-        transactionHelper.endTransaction();
         return 0;
     }
 
@@ -460,23 +576,19 @@ public class TestDSClient extends DB {
      * any friendship relationship between the inviterID and the inviteeID.
      */
     @Override
-    public synchronized int rejectFriend(int inviterID, int inviteeID) {
+    public int rejectFriend(int inviterID, int inviteeID) {
+        transactionHelper.startAction(REJECT_ACTION);
         try {
-            transactionHelper.beginTransaction();
-            JsonObject inviteeObject = transactionHelper.readUser(String.valueOf(inviteeID));
-
-            JsonArray pendingFriends;
-            if (inviteeObject.has(PENDING_FRIENDS)) {
-                pendingFriends = inviteeObject.getAsJsonArray(PENDING_FRIENDS);
-                pendingFriends.remove(new JsonPrimitive(String.valueOf(inviterID)));
-                transactionHelper.writeUser(String.valueOf(inviteeID), inviteeObject);
-            }
-        } catch (NotFoundException e) {
+            transactionHelper.runInTransaction(() -> {
+                userStore.removeId(String.valueOf(inviteeID), UserList.PENDING, String.valueOf(inviterID));
+                return null;
+            });
+        } catch (RetryException e) {
+            return e.getErrorCode();
+        } catch (NotFoundException | AbortException e) {
             e.printStackTrace();
-            transactionHelper.endTransaction();
             return -1;
         }
-        transactionHelper.endTransaction();
         return 0;
     }
 
@@ -495,27 +607,23 @@ public class TestDSClient extends DB {
      * to the inviteeID.
      */
     @Override
-    public synchronized int inviteFriend(int inviterID, int inviteeID) {
+    public int inviteFriend(int inviterID, int inviteeID) {
+        transactionHelper.startAction(INV_ACTION);
+        if (bulkLoader != null) {
+            bulkLoader.addId(String.valueOf(inviteeID), UserList.PENDING, String.valueOf(inviterID));
+            return 0;
+        }
         try {
-            transactionHelper.beginTransaction();
-            JsonObject inviteeObject = transactionHelper.readUser(String.valueOf(inviteeID));
-
-            JsonArray pendingFriends;
-            if (inviteeObject.has(PENDING_FRIENDS)) {
-                pendingFriends = inviteeObject.getAsJsonArray(PENDING_FRIENDS);
-            } else {
-                pendingFriends = new JsonArray();
-                inviteeObject.add(PENDING_FRIENDS, pendingFriends);
-            }
-
-            pendingFriends.add(new JsonPrimitive(String.valueOf(inviterID)));
-            transactionHelper.writeUser(String.valueOf(inviteeID), inviteeObject);
-        } catch (NotFoundException e) {
+            transactionHelper.runInTransaction(() -> {
+                userStore.addId(String.valueOf(inviteeID), UserList.PENDING, String.valueOf(inviterID));
+                return null;
+            });
+        } catch (RetryException e) {
+            return e.getErrorCode();
+        } catch (NotFoundException | AbortException e) {
             e.printStackTrace();
-            transactionHelper.endTransaction();
             return -1;
         }
-        transactionHelper.endTransaction();
         return 0;
     }
 
@@ -536,21 +644,11 @@ public class TestDSClient extends DB {
      * codes.
      */
     @Override
-    public synchronized int viewTopKResources(int requesterID, int profileOwnerID, int k, Vector<HashMap<String,
+    public int viewTopKResources(int requesterID, int profileOwnerID, int k, Vector<HashMap<String,
             ByteIterator>> result) {
+        transactionHelper.startAction(GETTOPRES_ACTION);
         try {
-            transactionHelper.beginTransaction();
-            JsonObject userObject = transactionHelper.readUser(String.valueOf(profileOwnerID));
-
-            List<JsonObject> resourceList = new ArrayList<>();
-            if (userObject.has(RESOURCES)) {
-                JsonArray resourceArray = userObject.getAsJsonArray(RESOURCES);
-                for (int i = 0; i < resourceArray.size() && i < k; i++) {
-                    JsonObject resourceObject = transactionHelper.readResource(resourceArray.get(i).getAsString());
-                    resourceList.add(resourceObject);
-                }
-            }
-            transactionHelper.endTransaction();
+            List<JsonObject> resourceList = readNewestResources(String.valueOf(profileOwnerID), k);
 
             for (JsonObject resourceObject : resourceList) {
                 HashMap<String, ByteIterator> values = new HashMap<>();
@@ -561,14 +659,49 @@ public class TestDSClient extends DB {
                 }
                 result.add(values);
             }
-        } catch (NotFoundException e) {
+        } catch (RetryException e) {
+            return e.getErrorCode();
+        } catch (NotFoundException | AbortException e) {
             e.printStackTrace();
-            transactionHelper.endTransaction();
             return -1;
         }
         return 0;
     }
 
+    /**
+     * Returns the newest resources on a user's wall, newest first. Up to {@link #TOP_K_PROPERTY} resources are read
+     * from the single key kept on insert. For a larger k, a user loaded without that key, or a key holding fewer than k
+     * resources because it was loaded with a smaller {@link #TOP_K_PROPERTY} or the wall is short, the wall list is read
+     * and its last k resources.
+     *
+     * @param userId User ID given by BG.
+     * @param k      The number of resources requested.
+     * @return JsonObject instances.
+     * @throws NotFoundException If the user does not exist.
+     * @throws AbortException    Declared for subclasses.
+     */
+    private List<JsonObject> readNewestResources(String userId, int k) throws NotFoundException, AbortException {
+        if (k <= topK) {
+            try {
+                List<JsonObject> recent = transactionHelper.runReadOnly(
+                        () -> transactionHelper.readRecentResources(userId));
+                if (recent.size() >= k) {
+                    return recent.subList(0, k);
+                }
+            } catch (NotFoundException e) {
+                /** Read the wall list below, which fails as well if the user does not exist. */
+            }
+        }
+
+        return transactionHelper.runReadOnly(() -> {
+            List<String> resourceIds = userStore.readUser(userId, false, UserList.WALL).getIds(UserList.WALL);
+            List<String> newestIds = new ArrayList<>(resourceIds.subList(Math.max(resourceIds.size() - k, 0),
+                    resourceIds.size()));
+            Collections.reverse(newestIds);
+            return transactionHelper.readResources(newestIds);
+        });
+    }
+
     /**
      * This function is called in the benchmarking phase which is executed with the -t argument.
      * <p>
@@ -585,21 +718,14 @@ public class TestDSClient extends DB {
      * codes.
      */
     @Override
-    public synchronized int getCreatedResources(int creatorID, Vector<HashMap<String, ByteIterator>> result) {
+    public int getCreatedResources(int creatorID, Vector<HashMap<String, ByteIterator>> result) {
+        transactionHelper.startAction(GETCREATEDRES_ACTION);
         try {
-            transactionHelper.beginTransaction();
-            JsonObject creatorObject = transactionHelper.readUser(String.valueOf(creatorID));
+            List<JsonObject> resourceList = transactionHelper.runReadOnly(() -> {
+                UserView creator = userStore.readUser(String.valueOf(creatorID), false, UserList.CREATED);
 
-            List<JsonObject> resourceList = new ArrayList<>();
-            if (creatorObject.has(CREATED_RESOURCES)) {
-                JsonArray resourceArray = creatorObject.getAsJsonArray(CREATED_RESOURCES);
-
-                for (JsonElement element : resourceArray) {
-                    JsonObject resourceObject = transactionHelper.readResource(element.getAsString());
-                    resourceList.add(resourceObject);
-                }
-            }
-            transactionHelper.endTransaction();
+                return transactionHelper.readResources(creator.getIds(UserList.CREATED));
+            });
 
             for (JsonObject resourceObject : resourceList) {
                 HashMap<String, ByteIterator> hashMap = new HashMap<>();
@@ -608,9 +734,10 @@ public class TestDSClient extends DB {
                 }
                 result.add(hashMap);
             }
-        } catch (NotFoundException e) {
+        } catch (RetryException e) {
+            return e.getErrorCode();
+        } catch (NotFoundException | AbortException e) {
             e.printStackTrace();
-            transactionHelper.endTransaction();
             return -1;
         }
         return 0;
@@ -634,14 +761,14 @@ public class TestDSClient extends DB {
      * resource and their details. This information should be put into the results Vector.
      */
     @Override
-    public synchronized int viewCommentOnResource(int requesterID, int profileOwnerID, int resourceID,
-                                                  Vector<HashMap<String, ByteIterator>> result) {
+    public int viewCommentOnResource(int requesterID, int profileOwnerID, int resourceID,
+                                     Vector<HashMap<String, ByteIterator>> result) {
+        transactionHelper.startAction(GETRESCOMMENT_ACTION);
         try {
-            JsonObject manipulationsObject = transactionHelper.readManipulations(String.valueOf(resourceID));
-
-            for (Map.Entry<String, JsonElement> manipulationEntry : manipulationsObject.entrySet()) {
-                JsonObject manipulationObject = manipulationEntry.getValue().getAsJsonObject();
+            List<JsonObject> manipulations = transactionHelper.runReadOnly(
+                    () -> transactionHelper.readManipulations(String.valueOf(resourceID)));
 
+            for (JsonObject manipulationObject : manipulations) {
                 HashMap<String, ByteIterator> hashMap = new HashMap<>();
                 for (Map.Entry<String, JsonElement> attrEntry : manipulationObject.entrySet()) {
                     hashMap.put(attrEntry.getKey(), new StringByteIterator(attrEntry.getValue().getAsString()));
@@ -649,7 +776,9 @@ public class TestDSClient extends DB {
 
                 result.add(hashMap);
             }
-        } catch (NotFoundException e) {
+        } catch (RetryException e) {
+            return e.getErrorCode();
+        } catch (NotFoundException | AbortException e) {
             e.printStackTrace();
         }
         return 0;
@@ -671,8 +800,9 @@ public class TestDSClient extends DB {
      * created by profileOwnerID.
      */
     @Override
-    public synchronized int postCommentOnResource(int commentCreatorID, int resourceCreatorID, int resourceID,
-                                                  HashMap<String, ByteIterator> values) {
+    public int postCommentOnResource(int commentCreatorID, int resourceCreatorID, int resourceID,
+                                     HashMap<String, ByteIterator> values) {
+        transactionHelper.startAction(POSTCOMMENT_ACTION);
         JsonObject manipulationObject = new JsonObject();
         String manipulationId = "";
 
@@ -683,9 +813,15 @@ public class TestDSClient extends DB {
             manipulationObject.add(entry.getKey(), new JsonPrimitive(entry.getValue().toString()));
         }
 
+        final String mid = manipulationId;
         try {
-            transactionHelper.writeManipulation(String.valueOf(resourceID), manipulationId, manipulationObject);
-        } catch (NotFoundException e) {
+            transactionHelper.runInTransaction(() -> {
+                transactionHelper.writeManipulation(String.valueOf(resourceID), mid, manipulationObject);
+                return null;
+            });
+        } catch (RetryException e) {
+            return e.getErrorCode();
+        } catch (NotFoundException | AbortException e) {
             e.printStackTrace();
             return -1;
         }
@@ -704,10 +840,16 @@ public class TestDSClient extends DB {
      * identified with resourceID and created by the resourceCreatorID.
      */
     @Override
-    public synchronized int delCommentOnResource(int resourceCreatorID, int resourceID, int manipulationID) {
+    public int delCommentOnResource(int resourceCreatorID, int resourceID, int manipulationID) {
+        transactionHelper.startAction(DELCOMMENT_ACTION);
         try {
-            transactionHelper.deleteManipulation(String.valueOf(resourceID), String.valueOf(manipulationID));
-        } catch (NotFoundException e) {
+            transactionHelper.runInTransaction(() -> {
+                transactionHelper.deleteManipulation(String.valueOf(resourceID), String.valueOf(manipulationID));
+                return null;
+            });
+        } catch (RetryException e) {
+            return e.getErrorCode();
+        } catch (NotFoundException | AbortException e) {
             e.printStackTrace();
             return -1;
         }
@@ -729,31 +871,22 @@ public class TestDSClient extends DB {
      * relationship is symmetric so if A is not friends with B, B also will not be friends with A.
      */
     @Override
-    public synchronized int thawFriendship(int friendid1, int friendid2) {
+    public int thawFriendship(int friendid1, int friendid2) {
+        transactionHelper.startAction(UNFRIEND_ACTION);
+        final String strFriendId1 = String.valueOf(friendid1);
+        final String strFriendId2 = String.valueOf(friendid2);
         try {
-            transactionHelper.beginTransaction();
-            final String strFriendId1 = String.valueOf(friendid1);
-            final String strFriendId2 = String.valueOf(friendid2);
-
-            JsonObject friendObject1 = transactionHelper.readUser(strFriendId1);
-            JsonObject friendObject2 = transactionHelper.readUser(strFriendId2);
-
-            if (friendObject1.has(CONFIRMED_FRIENDS) && friendObject2.has(CONFIRMED_FRIENDS)) {
-                JsonArray friendArray1 = friendObject1.getAsJsonArray(CONFIRMED_FRIENDS);
-                JsonArray friendArray2 = friendObject2.getAsJsonArray(CONFIRMED_FRIENDS);
-
-                friendArray1.remove(new JsonPrimitive(strFriendId2));
-                friendArray2.remove(new JsonPrimitive(strFriendId1));
-
-                transactionHelper.writeUser(strFriendId1, friendObject1);
-                transactionHelper.writeUser(strFriendId2, friendObject2);
-            }
-        } catch (NotFoundException e) {
+            transactionHelper.runInTransaction(() -> {
+                userStore.removeId(strFriendId1, UserList.FRIENDS, strFriendId2);
+                userStore.removeId(strFriendId2, UserList.FRIENDS, strFriendId1);
+                return null;
+            });
+        } catch (RetryException e) {
+            return e.getErrorCode();
+        } catch (NotFoundException | AbortException e) {
             e.printStackTrace();
-            transactionHelper.endTransaction();
             return -1;
         }
-        transactionHelper.endTransaction();
         return 0;
     }
 
@@ -770,46 +903,75 @@ public class TestDSClient extends DB {
      * codes.
      */
     @Override
-    public synchronized HashMap<String, String> getInitialStats() {
-        int userCount = 0;
-        while (true) {
-            try {
-                transactionHelper.readUser(String.valueOf(userCount));
-                userCount++;
-            } catch (NotFoundException e) {
-                break;
-            }
-        }
+    public HashMap<String, String> getInitialStats() {
+        /**
+         * BG numbers users from 0, so the first missing ID is found with O(log n) single reads. The lists of all users
+         * are then counted in large batches, whose request lists are sent concurrently.
+         */
         HashMap<String, String> hashMap = new HashMap<>();
-        hashMap.put(USER_COUNT, String.valueOf(userCount));
-
         try {
-            JsonObject userObject = transactionHelper.readUser("0");
-
-            int resourceCount = 0;
-            int friendCount = 0;
-            int pendingCount = 0;
-
-            if (userObject.has(RESOURCES)) {
-                resourceCount += userObject.getAsJsonArray(RESOURCES).size();
-            }
-            if (userObject.has(CONFIRMED_FRIENDS)) {
-                friendCount += userObject.getAsJsonArray(CONFIRMED_FRIENDS).size();
-            }
-            if (userObject.has(PENDING_FRIENDS)) {
-                pendingCount += userObject.getAsJsonArray(PENDING_FRIENDS).size();
+            long userCount = countUsers();
+            long resourceCount = 0;
+            long friendCount = 0;
+            long pendingCount = 0;
+            for (long from = 0; from < userCount; from += STATS_BATCH_SIZE) {
+                List<String> userIds = new ArrayList<>(STATS_BATCH_SIZE);
+                for (long userId = from; userId < Math.min(from + STATS_BATCH_SIZE, userCount); userId++) {
+                    userIds.add(String.valueOf(userId));
+                }
+                long[] counts = userStore.sumCounts(userIds, UserList.WALL, UserList.FRIENDS, UserList.PENDING);
+                resourceCount += counts[0];
+                friendCount += counts[1];
+                pendingCount += counts[2];
             }
 
-            hashMap.put(RESOURCES_PER_USER, String.valueOf(resourceCount));
-            hashMap.put(AVG_FRIENDS_PER_USER, String.valueOf(friendCount));
-            hashMap.put(AVG_PENDING_PER_USER, String.valueOf(pendingCount));
-        } catch (NotFoundException e) {
+            hashMap.put(USER_COUNT, String.valueOf(userCount));
+            hashMap.put(RESOURCES_PER_USER, String.valueOf(userCount > 0 ? resourceCount / userCount : 0));
+            hashMap.put(AVG_FRIENDS_PER_USER, String.valueOf(userCount > 0 ? friendCount / userCount : 0));
+            hashMap.put(AVG_PENDING_PER_USER, String.valueOf(userCount > 0 ? pendingCount / userCount : 0));
+        } catch (NotFoundException | RetryException e) {
             e.printStackTrace();
             return null;
         }
         return hashMap;
     }
 
+    /**
+     * Returns the number of users by searching for the first missing user ID, doubling the ID until one is missing and
+     * then bisecting.
+     *
+     * @return Number of users.
+     */
+    private long countUsers() {
+        if (!userExists(0)) {
+            return 0;
+        }
+        long present = 0;
+        long missing = 1;
+        while (userExists(missing)) {
+            present = missing;
+            missing *= 2;
+        }
+        while (missing - present > 1) {
+            long middle = (present + missing) >>> 1;
+            if (userExists(middle)) {
+                present = middle;
+            } else {
+                missing = middle;
+            }
+        }
+        return present + 1;
+    }
+
+    private boolean userExists(long userId) {
+        try {
+            userStore.readUser(String.valueOf(userId), false);
+            return true;
+        } catch (NotFoundException e) {
+            return false;
+        }
+    }
+
     /**
      * This function is called in the load phase which is executed using the -load or -loadindex argument Creates a
      * confirmed friendship between friendid1 and friendid2.
@@ -823,30 +985,24 @@ public class TestDSClient extends DB {
      * friendship relationship is symmetric, so if A is friends with B, B is also friends with A.
      */
     @Override
-    public synchronized int CreateFriendship(int friendid1, int friendid2) {
+    public int CreateFriendship(int friendid1, int friendid2) {
+        transactionHelper.startAction(CREATEFRIENDSHIP_ACTION);
+        final String strFriendId1 = String.valueOf(friendid1);
+        final String strFriendId2 = String.valueOf(friendid2);
+        if (bulkLoader != null) {
+            bulkLoader.addId(strFriendId1, UserList.FRIENDS, strFriendId2);
+            bulkLoader.addId(strFriendId2, UserList.FRIENDS, strFriendId1);
+            return 0;
+        }
         try {
-            final String strFriendId1 = String.valueOf(friendid1);
-            final String strFriendId2 = String.valueOf(friendid2);
-
-            JsonObject friendObject1 = transactionHelper.readUser(strFriendId1);
-            JsonObject friendObject2 = transactionHelper.readUser(strFriendId2);
-
-            if (!friendObject1.has(CONFIRMED_FRIENDS)) {
-                friendObject1.add(CONFIRMED_FRIENDS, new JsonArray());
-            }
-            if (!friendObject2.has(CONFIRMED_FRIENDS)) {
-                friendObject2.add(CONFIRMED_FRIENDS, new JsonArray());
-            }
-
-            JsonArray friendArray1 = friendObject1.getAsJsonArray(CONFIRMED_FRIENDS);
-            JsonArray friendArray2 = friendObject2.getAsJsonArray(CONFIRMED_FRIENDS);
-
-            friendArray1.add(new JsonPrimitive(strFriendId2));
-            friendArray2.add(new JsonPrimitive(strFriendId1));
-
-            transactionHelper.writeUser(strFriendId1, friendObject1);
-            transactionHelper.writeUser(strFriendId2, friendObject2);
-        } catch (NotFoundException e) {
+            transactionHelper.runInTransaction(() -> {
+                userStore.addId(strFriendId1, UserList.FRIENDS, strFriendId2);
+                userStore.addId(strFriendId2, UserList.FRIENDS, strFriendId1);
+                return null;
+            });
+        } catch (RetryException e) {
+            return e.getErrorCode();
+        } catch (NotFoundException | AbortException e) {
             e.printStackTrace();
             return -1;
         }
@@ -867,7 +1023,7 @@ public class TestDSClient extends DB {
      *              3) manipulations (mid, creatorid, rid, modifierid, timestamp, type, content)
      */
     @Override
-    public synchronized void createSchema(Properties props) {
+    public void createSchema(Properties props) {
     }
 
     /**
@@ -881,17 +1037,17 @@ public class TestDSClient extends DB {
      * codes.
      */
     @Override
-    public synchronized int queryPendingFriendshipIds(int memberID, Vector<Integer> pendingIds) {
+    public int queryPendingFriendshipIds(int memberID, Vector<Integer> pendingIds) {
+        transactionHelper.startAction(QUERYPENDING_ACTION);
         try {
-            JsonObject jsonObject = transactionHelper.readUser(String.valueOf(memberID));
-            if (jsonObject.has(PENDING_FRIENDS)) {
-                JsonArray jsonArray = jsonObject.getAsJsonArray(PENDING_FRIENDS);
-                for (JsonElement jsonElement : jsonArray) {
-                    int friendId = Integer.parseInt(jsonElement.getAsString());
-                    pendingIds.add(friendId);
-                }
+            UserView user = transactionHelper.runReadOnly(
+                    () -> userStore.readUser(String.valueOf(memberID), false, UserList.PENDING));
+            for (String friendId : user.getIds(UserList.PENDING)) {
+                pendingIds.add(Integer.parseInt(friendId));
             }
-        } catch (NotFoundException e) {
+        } catch (RetryException e) {
+            return e.getErrorCode();
+        } catch (NotFoundException | AbortException e) {
             e.printStackTrace();
             return -1;
         }
@@ -909,17 +1065,17 @@ public class TestDSClient extends DB {
      * codes.
      */
     @Override
-    public synchronized int queryConfirmedFriendshipIds(int memberID, Vector<Integer> confirmedIds) {
+    public int queryConfirmedFriendshipIds(int memberID, Vector<Integer> confirmedIds) {
+        transactionHelper.startAction(QUERYCONFIRMED_ACTION);
         try {
-            JsonObject jsonObject = transactionHelper.readUser(String.valueOf(memberID));
-            if (jsonObject.has(CONFIRMED_FRIENDS)) {
-                JsonArray jsonArray = jsonObject.getAsJsonArray(CONFIRMED_FRIENDS);
-                for (JsonElement jsonElement : jsonArray) {
-                    int friendId = Integer.parseInt(jsonElement.getAsString());
-                    confirmedIds.add(friendId);
-                }
+            UserView user = transactionHelper.runReadOnly(
+                    () -> userStore.readUser(String.valueOf(memberID), false, UserList.FRIENDS));
+            for (String friendId : user.getIds(UserList.FRIENDS)) {
+                confirmedIds.add(Integer.parseInt(friendId));
             }
-        } catch (NotFoundException e) {
+        } catch (RetryException e) {
+            return e.getErrorCode();
+        } catch (NotFoundException | AbortException e) {
             e.printStackTrace();
             return -1;
         }
@@ -0,0 +1,130 @@
+package TestDS;
+
+/**
+ * Names and defaults of the properties understood by {@link TestDSClient}. They are passed to BG with -p.
+ */
+public interface TestDSClientConstants {
+    /**
+     * Whether multi-key actions run inside Scalaris transactions.
+     */
+    String TRANSACTIONS_PROPERTY = "scalaris.transactions";
+    String TRANSACTIONS_PROPERTY_DEFAULT = "true";
+
+    /**
+     * How users are mapped onto keys: document keeps each user in one JSON document, normalized splits it into a
+     * profile key, image keys and one key per ID list, native is normalized with the ID lists kept as Erlang lists and
+     * changed with server-side list operations.
+     */
+    String LAYOUT_PROPERTY = "scalaris.layout";
+    String LAYOUT_DOCUMENT = "document";
+    String LAYOUT_NORMALIZED = "normalized";
+    String LAYOUT_NATIVE = "native";
+    String LAYOUT_PROPERTY_DEFAULT = LAYOUT_DOCUMENT;
+
+    /**
+     * Whether the normalized and native layouts keep the size of every ID list in a counter key, so viewProfile reads
+     * a fixed amount of data regardless of the number of friends and resources. Needs data loaded with the same
+     * setting.
+     */
+    String COUNTERS_PROPERTY = "scalaris.counters";
+    String COUNTERS_PROPERTY_DEFAULT = "false";
+
+    /**
+     * How values are encoded: json stores JSON text in Erlang strings, binary a compact tagged format in Erlang
+     * binaries. Needs data loaded with the same setting.
+     */
+    String CODEC_PROPERTY = "scalaris.codec";
+    String CODEC_JSON = "json";
+    String CODEC_BINARY = "binary";
+    String CODEC_PROPERTY_DEFAULT = CODEC_JSON;
+
+    /**
+     * Number of newest resources on each wall which are kept in one key, so viewTopKResources reads a single key for
+     * any k up to this. BG's workload asks for 5.
+     */
+    String TOP_K_PROPERTY = "scalaris.topk";
+    String TOP_K_PROPERTY_DEFAULT = "5";
+
+    /**
+     * Whether -load writes users, resources and friendships with {@link BulkLoader} instead of one transaction per
+     * action. Users are kept in memory until the load finishes; do not set it for the benchmark.
+     */
+    String BULK_LOAD_PROPERTY = "scalaris.bulkload";
+    String BULK_LOAD_PROPERTY_DEFAULT = "false";
+
+    /**
+     * How read-only actions read: serializable commits their transaction so Scalaris validates every value read,
+     * quorum reads each value from a majority of its replicas without validating them together, cached reads through
+     * the read cache. Defaults to cached if the cache is enabled and to quorum otherwise.
+     */
+    String READ_CONSISTENCY_PROPERTY = "scalaris.read.consistency";
+    String READ_SERIALIZABLE = "serializable";
+    String READ_QUORUM = "quorum";
+    String READ_CACHED = "cached";
+
+    /**
+     * Size in bytes of the read cache shared by all BG threads, 0 disables it. Reads outside transactions and in
+     * read-only actions are served from the cache; values changed by this process are invalidated.
+     */
+    String CACHE_SIZE_PROPERTY = "scalaris.cache.size";
+    String CACHE_SIZE_PROPERTY_DEFAULT = "0";
+
+    /**
+     * Time in milliseconds after which a cached value expires. It bounds how long changes made by other BG processes
+     * go unnoticed.
+     */
+    String CACHE_TTL_PROPERTY = "scalaris.cache.ttl";
+    String CACHE_TTL_PROPERTY_DEFAULT = "1000";
+
+    /**
+     * Number of attempts of a Scalaris request or transaction before the action fails with
+     * {@link RetryException#RETRIES_EXHAUSTED}.
+     */
+    String RETRY_ATTEMPTS_PROPERTY = "scalaris.retry.attempts";
+    String RETRY_ATTEMPTS_PROPERTY_DEFAULT = "8";
+
+    /**
+     * Backoff in milliseconds before the first retry. It doubles with every further retry up to
+     * scalaris.retry.maxbackoff, and a random half of it is jitter.
+     */
+    String RETRY_BACKOFF_PROPERTY = "scalaris.retry.backoff";
+    String RETRY_BACKOFF_PROPERTY_DEFAULT = "4";
+
+    /**
+     * Upper bound in milliseconds of the backoff between two attempts.
+     */
+    String RETRY_MAX_BACKOFF_PROPERTY = "scalaris.retry.maxbackoff";
+    String RETRY_MAX_BACKOFF_PROPERTY_DEFAULT = "128";
+
+    /**
+     * Time in milliseconds a BG action may spend retrying before it fails with
+     * {@link RetryException#DEADLINE_EXCEEDED}, 0 disables the deadline.
+     */
+    String RETRY_DEADLINE_PROPERTY = "scalaris.retry.deadline";
+    String RETRY_DEADLINE_PROPERTY_DEFAULT = "5000";
+
+    /**
+     * Number of Scalaris connections shared by all BG threads. They are opened before the benchmark starts.
+     */
+    String POOL_SIZE_PROPERTY = "scalaris.pool.size";
+    String POOL_SIZE_PROPERTY_DEFAULT = "16";
+
+    /**
+     * Time in milliseconds a thread waits for a free connection before it retries.
+     */
+    String POOL_TIMEOUT_PROPERTY = "scalaris.pool.timeout";
+    String POOL_TIMEOUT_PROPERTY_DEFAULT = "1000";
+
+    /**
+     * Time in milliseconds between two checks which replace dead connections, 0 disables the checks.
+     */
+    String POOL_CHECK_INTERVAL_PROPERTY = "scalaris.pool.checkinterval";
+    String POOL_CHECK_INTERVAL_PROPERTY_DEFAULT = "5000";
+
+    /**
+     * How pooled connections are spread over the nodes listed in scalaris.node: random, roundrobin or
+     * leastoutstanding.
+     */
+    String NODE_POLICY_PROPERTY = "scalaris.node.policy";
+    String NODE_POLICY_PROPERTY_DEFAULT = "leastoutstanding";
+}
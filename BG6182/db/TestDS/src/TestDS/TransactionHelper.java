@@ -1,74 +1,606 @@
 package TestDS;
 
+import com.ericsson.otp.erlang.OtpErlangBinary;
+import com.ericsson.otp.erlang.OtpErlangList;
+import com.ericsson.otp.erlang.OtpErlangLong;
+import com.ericsson.otp.erlang.OtpErlangObject;
+import com.ericsson.otp.erlang.OtpErlangString;
+import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
-import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
 import de.zib.scalaris.*;
+import de.zib.scalaris.operations.AddDelOnListOp;
+import de.zib.scalaris.operations.AddOnNrOp;
+import de.zib.scalaris.operations.Operation;
+import de.zib.scalaris.operations.ReadOp;
+import de.zib.scalaris.operations.WriteOp;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
 
 /**
- * Wrapper class of TransactionSingleOp.
+ * Wrapper class of TransactionSingleOp. An instance is safe to share between threads: the codec is stateless and any
+ * open transaction is bound to the calling thread.
+ * <p>
+ * In transactional mode {@link #runInTransaction(TransactionBody)} runs an action on a single {@link Transaction}.
+ * Reads go to Scalaris as usual while writes, list and number operations are buffered and shipped together with the
+ * commit in one request list. The whole action is retried when the commit aborts.
+ * <p>
+ * Values are encoded by a {@link ValueCodec}, JSON text by default, except for ID lists written with
+ * {@link #writeList(String, List)} and numbers written with {@link #writeNumber(String, long)}. They are native Erlang
+ * values so that {@link #addDelOnList(String, List, List)} and {@link #addOnNr(String, long)} can change them on the
+ * server without reading them first.
+ * <p>
+ * How fresh the values of {@link #runReadOnly(TransactionBody)} are is chosen by a {@link ReadConsistency}. With
+ * {@link ReadConsistency#CACHED} reads outside transactions are served from a {@link ReadCache} when possible. Every
+ * change invalidates its key, after the commit if it was made in a transaction.
+ * <p>
+ * Outside transactions a read of more than {@value #READ_BATCH_SIZE} keys, e.g. a long friend list, sends its request
+ * lists concurrently on an executor. Each request in flight holds its own pooled connection. Smaller reads are sent by
+ * the calling thread.
+ * <p>
+ * Failed requests and aborted transactions are retried as the {@link RetryPolicy} says. Once it gives up the action
+ * fails with a {@link RetryException}; the deadline and the counters belong to the BG action last passed to
+ * {@link #startAction(String)} on the calling thread.
+ * <p>
+ * For loading data {@link #runBatched(TransactionBody)} collects the writes of an action and sends them without a
+ * transaction in request lists of many keys.
+ * <p>
+ * Request lists, keys, value sizes and the time spent in Scalaris, the codec and the connection pool are counted per
+ * action in {@link RequestStatistics}.
  */
 public class TransactionHelper {
-    private ConnectionPool connectionPool;
-    private JsonParser jsonParser;
-    private boolean isTransaction = false;
-    private Transaction transaction;
-    private Connection connection;
+    private final ScalarisConnectionPool connectionPool;
+    private final boolean transactional;
+    private final ValueCodec codec;
+    private final ReadCache cache;
+    private final Executor executor;
+    private final RetryPolicy retryPolicy;
+    private final ReadConsistency readConsistency;
+    private final RequestStatistics statistics;
+    private final ThreadLocal<TransactionContext> context = new ThreadLocal<>();
+    private final ThreadLocal<Set<String>> changedKeys = new ThreadLocal<>();
+    private final ThreadLocal<Boolean> readOnly = new ThreadLocal<>();
+    private final ThreadLocal<Action> action = new ThreadLocal<>();
+    private final ThreadLocal<Map<String, Object>> batch = new ThreadLocal<>();
     private static final String USER_ID_PREFIX = "u";
     private static final String RESOURCE_ID_PREFIX = "r";
-    private static final String MANIPULATION = "manipulation";
-    private static final double INIT_WAIT_TIME = 5;
-    private static final double MAX_WAIT_TIME = 10;
+    private static final String IMAGE_KEY_SEPARATOR = ":";
+    private static final String MANIPULATION_KEY_SEPARATOR = ":m";
+    private static final String RECENT_RESOURCES_KEY_SUFFIX = ":recent";
+    private static final int READ_BATCH_SIZE = 256;
+    private static final int WRITE_BATCH_SIZE = 256;
+
+    /**
+     * How read-only actions read, from the freshest and slowest to the most stale and fastest.
+     */
+    public enum ReadConsistency {
+        /**
+         * Read-only actions run in a transaction which is committed, so Scalaris validates that no value read has
+         * changed since and the action is retried if one has. Needs transactional mode.
+         */
+        SERIALIZABLE,
+        /**
+         * Every value is read from a majority of its replicas, in a transaction which is not committed. Values read
+         * one after another may belong to different points in time.
+         */
+        QUORUM,
+        /**
+         * Read-only actions run without a transaction and read through the {@link ReadCache}. Values changed by other
+         * processes may be stale for up to the cache's time to live.
+         */
+        CACHED
+    }
+
+    /**
+     * An action which runs inside a transaction. It may be run more than once, so it should not have side effects
+     * other than reads and writes through this helper.
+     *
+     * @param <T> Type of the result.
+     */
+    @FunctionalInterface
+    public interface TransactionBody<T> {
+        T run() throws NotFoundException;
+    }
+
+    /**
+     * A single Scalaris request which may fail and be sent again.
+     *
+     * @param <T> Type of the result.
+     * @param <E> Type of a failure which is not retried.
+     */
+    @FunctionalInterface
+    private interface Request<T, E extends Exception> {
+        T send() throws ConnectionException, AbortException, E;
+    }
+
+    /**
+     * BG action running on the current thread.
+     */
+    private static final class Action {
+        private final String name;
+        private final long startNanos;
+
+        private Action(String name, long startNanos) {
+            this.name = name;
+            this.startNanos = startNanos;
+        }
+    }
+
+    /**
+     * State of the transaction bound to the current thread.
+     */
+    private static final class TransactionContext {
+        private final Connection connection;
+        private final Transaction transaction;
+        private final Transaction.RequestList operations = new Transaction.RequestList();
+        private final Map<String, ErlangValue> writes = new HashMap<>();
+        private final Set<String> serverUpdates = new HashSet<>();
+
+        private TransactionContext(Connection connection) {
+            this.connection = connection;
+            this.transaction = new Transaction(connection);
+        }
+    }
+
+    /**
+     * Creates an instance with connection pool. Every read and write is a single operation.
+     *
+     * @param connectionPool A ScalarisConnectionPool instance.
+     */
+    public TransactionHelper(ScalarisConnectionPool connectionPool) {
+        this(connectionPool, false);
+    }
+
+    /**
+     * Creates an instance with connection pool.
+     *
+     * @param connectionPool A ScalarisConnectionPool instance.
+     * @param transactional  If true, {@link #runInTransaction(TransactionBody)} uses Scalaris transactions.
+     */
+    public TransactionHelper(ScalarisConnectionPool connectionPool, boolean transactional) {
+        this(connectionPool, transactional, new JsonCodec());
+    }
+
+    /**
+     * Creates an instance with connection pool.
+     *
+     * @param connectionPool A ScalarisConnectionPool instance.
+     * @param transactional  If true, {@link #runInTransaction(TransactionBody)} uses Scalaris transactions.
+     * @param codec          Encoding of the values.
+     */
+    public TransactionHelper(ScalarisConnectionPool connectionPool, boolean transactional, ValueCodec codec) {
+        this(connectionPool, transactional, codec, null);
+    }
+
+    /**
+     * Creates an instance with connection pool.
+     *
+     * @param connectionPool A ScalarisConnectionPool instance.
+     * @param transactional  If true, {@link #runInTransaction(TransactionBody)} uses Scalaris transactions.
+     * @param codec          Encoding of the values.
+     * @param cache          Cache of values read, or null to read everything from Scalaris.
+     */
+    public TransactionHelper(ScalarisConnectionPool connectionPool, boolean transactional, ValueCodec codec,
+                             ReadCache cache) {
+        this(connectionPool, transactional, codec, cache, null);
+    }
+
+    /**
+     * Creates an instance with connection pool.
+     *
+     * @param connectionPool A ScalarisConnectionPool instance.
+     * @param transactional  If true, {@link #runInTransaction(TransactionBody)} uses Scalaris transactions.
+     * @param codec          Encoding of the values.
+     * @param cache          Cache of values read, or null to read everything from Scalaris.
+     * @param executor       Executor for asynchronous reads, or null to run them on the calling thread.
+     */
+    public TransactionHelper(ScalarisConnectionPool connectionPool, boolean transactional, ValueCodec codec,
+                             ReadCache cache, Executor executor) {
+        this(connectionPool, transactional, codec, cache, executor, new RetryPolicy());
+    }
+
+    /**
+     * Creates an instance with connection pool.
+     *
+     * @param connectionPool A ScalarisConnectionPool instance.
+     * @param transactional  If true, {@link #runInTransaction(TransactionBody)} uses Scalaris transactions.
+     * @param codec          Encoding of the values.
+     * @param cache          Cache of values read, or null to read everything from Scalaris.
+     * @param executor       Executor for asynchronous reads, or null to run them on the calling thread.
+     * @param retryPolicy    When to retry failed requests and aborted transactions.
+     */
+    public TransactionHelper(ScalarisConnectionPool connectionPool, boolean transactional, ValueCodec codec,
+                             ReadCache cache, Executor executor, RetryPolicy retryPolicy) {
+        this(connectionPool, transactional, codec, cache, executor, retryPolicy,
+                cache != null ? ReadConsistency.CACHED : ReadConsistency.QUORUM);
+    }
 
     /**
      * Creates an instance with connection pool.
      *
-     * @param connectionPool A ConnectionPool instance.
+     * @param connectionPool  A ScalarisConnectionPool instance.
+     * @param transactional   If true, {@link #runInTransaction(TransactionBody)} uses Scalaris transactions.
+     * @param codec           Encoding of the values.
+     * @param cache           Cache of values read, or null to read everything from Scalaris.
+     * @param executor        Executor for asynchronous reads, or null to run them on the calling thread.
+     * @param retryPolicy     When to retry failed requests and aborted transactions.
+     * @param readConsistency How read-only actions read.
+     * @throws IllegalArgumentException If the read consistency needs a cache or transactions which are missing.
      */
-    public TransactionHelper(ConnectionPool connectionPool) {
-        this.jsonParser = new JsonParser();
+    public TransactionHelper(ScalarisConnectionPool connectionPool, boolean transactional, ValueCodec codec,
+                             ReadCache cache, Executor executor, RetryPolicy retryPolicy,
+                             ReadConsistency readConsistency) {
+        this(connectionPool, transactional, codec, cache, executor, retryPolicy, readConsistency,
+                new RequestStatistics());
+    }
+
+    /**
+     * Creates an instance with connection pool.
+     *
+     * @param connectionPool  A ScalarisConnectionPool instance.
+     * @param transactional   If true, {@link #runInTransaction(TransactionBody)} uses Scalaris transactions.
+     * @param codec           Encoding of the values.
+     * @param cache           Cache of values read, or null to read everything from Scalaris.
+     * @param executor        Executor for asynchronous reads, or null to run them on the calling thread.
+     * @param retryPolicy     When to retry failed requests and aborted transactions.
+     * @param readConsistency How read-only actions read.
+     * @param statistics      Counters of the requests sent per action.
+     * @throws IllegalArgumentException If the read consistency needs a cache or transactions which are missing.
+     */
+    public TransactionHelper(ScalarisConnectionPool connectionPool, boolean transactional, ValueCodec codec,
+                             ReadCache cache, Executor executor, RetryPolicy retryPolicy,
+                             ReadConsistency readConsistency, RequestStatistics statistics) {
+        if (readConsistency == ReadConsistency.CACHED && cache == null) {
+            throw new IllegalArgumentException("Cached reads need a read cache");
+        }
+        if (readConsistency == ReadConsistency.SERIALIZABLE && !transactional) {
+            throw new IllegalArgumentException("Serializable reads need transactions");
+        }
         this.connectionPool = connectionPool;
+        this.transactional = transactional;
+        this.codec = codec;
+        this.cache = cache;
+        this.executor = executor;
+        this.retryPolicy = retryPolicy;
+        this.readConsistency = readConsistency;
+        this.statistics = statistics;
+    }
+
+    /**
+     * Returns the counters of the requests sent per action.
+     *
+     * @return The statistics.
+     */
+    RequestStatistics getRequestStatistics() {
+        return statistics;
+    }
+
+    /**
+     * Starts a BG action on the current thread. Its deadline for retries starts now, and retries, aborts and failures
+     * until the next call are counted for it.
+     *
+     * @param name Name of the action as used in BG's measurements.
+     */
+    public void startAction(final String name) {
+        action.set(new Action(name, System.nanoTime()));
+        statistics.addAction(name);
+    }
+
+    private Action currentAction() {
+        Action current = action.get();
+        return current != null ? current : new Action(RetryPolicy.NO_ACTION, System.nanoTime());
+    }
+
+    private String actionName() {
+        Action current = action.get();
+        return current != null ? current.name : RetryPolicy.NO_ACTION;
+    }
+
+    /**
+     * Counts a request list sent for the current action. Subclasses which do not send requests through this class
+     * call it for each of their round trips.
+     *
+     * @param reads  Keys read by the request list.
+     * @param writes Keys written or changed by the request list.
+     * @param nanos  Time until the result arrived.
+     */
+    protected void countRequest(final int reads, final int writes, final long nanos) {
+        statistics.addRequest(actionName(), reads, writes, nanos);
     }
 
     /**
-     * Returns a connection from the given connection pool.
+     * Counts the size of values read for the current action.
+     *
+     * @param bytes Characters of JSON text and bytes of binaries.
+     */
+    protected void countBytesReceived(final long bytes) {
+        statistics.addBytesReceived(actionName(), bytes);
+    }
+
+    /**
+     * Returns a connection from the given connection pool. The pool blocks until a connection is free, so waiting
+     * threads are served in order instead of polling. A wait which timed out is retried like a failed request.
      *
      * @return An instance of Connection.
      */
     private Connection getConnection() {
-        double ms = INIT_WAIT_TIME;
-        Connection conn;
-        while (true) {
+        long start = System.nanoTime();
+        try {
+            return retry(connectionPool::getConnection);
+        } finally {
+            statistics.addPoolWait(actionName(), System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Sends a request until it succeeds, waiting between attempts as the retry policy says.
+     *
+     * @param request The request.
+     * @param <T>     Type of the result.
+     * @param <E>     Type of a failure which is not retried.
+     * @return The result of the first successful attempt.
+     * @throws E              If the request fails for another reason than a lost connection or an abort.
+     * @throws RetryException If the retry policy gives up.
+     */
+    private <T, E extends Exception> T retry(final Request<T, E> request) throws E {
+        Action current = currentAction();
+        for (int attempt = 1; ; attempt++) {
             try {
-                conn = connectionPool.getConnection();
-                if (conn != null) break;
-            } catch (ConnectionException e) {
-                try {
-                    Thread.sleep((long) ms);
-                    if (ms < MAX_WAIT_TIME)
-                        ms *= Math.log(ms);
-                } catch (InterruptedException ignored) {
+                return request.send();
+            } catch (ConnectionException | AbortException e) {
+                retryPolicy.await(current.name, current.startNanos, attempt, e);
+            }
+        }
+    }
+
+    /**
+     * Sends a request like {@link #retry(Request)} and counts every attempt, failed ones included, as a round trip.
+     *
+     * @param reads   Keys read by the request.
+     * @param writes  Keys written or changed by the request.
+     * @param request The request.
+     * @param <T>     Type of the result.
+     * @param <E>     Type of a failure which is not retried.
+     * @return The result of the first successful attempt.
+     * @throws E              If the request fails for another reason than a lost connection or an abort.
+     * @throws RetryException If the retry policy gives up.
+     */
+    private <T, E extends Exception> T send(final int reads, final int writes, final Request<T, E> request)
+            throws E {
+        return retry(() -> {
+            long start = System.nanoTime();
+            try {
+                return request.send();
+            } finally {
+                countRequest(reads, writes, System.nanoTime() - start);
+            }
+        });
+    }
+
+    /**
+     * Runs the given action atomically. Without transactional mode the action simply runs with single operations.
+     *
+     * @param body The action to run.
+     * @param <T>  Type of the result.
+     * @return The result of the last successful run.
+     * @throws NotFoundException
+     * @throws AbortException    Declared for subclasses; a commit which keeps aborting fails with RetryException.
+     */
+    public <T> T runInTransaction(final TransactionBody<T> body) throws NotFoundException, AbortException {
+        return runInTransaction(body, false);
+    }
+
+    /**
+     * Runs the given action atomically.
+     *
+     * @param body          The action to run.
+     * @param validateReads If true a transaction which only read is committed as well.
+     * @param <T>           Type of the result.
+     * @return The result of the last successful run.
+     * @throws NotFoundException
+     * @throws AbortException    Declared for subclasses; a commit which keeps aborting fails with RetryException.
+     */
+    private <T> T runInTransaction(final TransactionBody<T> body, final boolean validateReads)
+            throws NotFoundException, AbortException {
+        /**
+         * Reads bypass the cache and stay on the calling thread, and keys changed by the action are invalidated again
+         * once it has committed.
+         */
+        Set<String> changed = new HashSet<>();
+        changedKeys.set(changed);
+        try {
+            return runAtomically(body, validateReads);
+        } finally {
+            changedKeys.remove();
+            if (cache != null) {
+                for (String key : changed) {
+                    cache.invalidate(key);
                 }
             }
         }
-        return conn;
     }
 
     /**
-     * Begins a transaction.
+     * Runs an action which only reads, as the {@link ReadConsistency} says. Writes are rejected.
+     *
+     * @param body The action to run.
+     * @param <T>  Type of the result.
+     * @return The result of the action.
+     * @throws NotFoundException
+     * @throws AbortException    Declared for subclasses; a commit which keeps aborting fails with RetryException.
+     */
+    public <T> T runReadOnly(final TransactionBody<T> body) throws NotFoundException, AbortException {
+        readOnly.set(Boolean.TRUE);
+        try {
+            if (readConsistency == ReadConsistency.CACHED) {
+                return body.run();
+            }
+            return runInTransaction(body, readConsistency == ReadConsistency.SERIALIZABLE);
+        } finally {
+            readOnly.remove();
+        }
+    }
+
+    /**
+     * Runs an action whose writes are collected and sent afterwards without a transaction, up to
+     * {@value #WRITE_BATCH_SIZE} keys per request list. It is meant for loading data nobody reads yet, so every key
+     * should be written once; list and number operations on the server are rejected.
+     *
+     * @param body The action to run.
+     * @param <T>  Type of the result.
+     * @return The result of the action.
+     * @throws NotFoundException
      */
-    public void beginTransaction() {
-        //isTransaction = true;
-        //connection = getConnection();
-        //transaction = new Transaction(connection);
+    public <T> T runBatched(final TransactionBody<T> body) throws NotFoundException {
+        Map<String, Object> writes = new LinkedHashMap<>();
+        batch.set(writes);
+        T result;
+        try {
+            result = body.run();
+        } finally {
+            batch.remove();
+        }
+
+        storeValues(writes);
+        if (cache != null) {
+            for (String key : writes.keySet()) {
+                cache.invalidate(key);
+            }
+        }
+        return result;
     }
 
     /**
-     * Ends a current transaction.
+     * Runs the given action atomically, retrying it when the commit aborts.
+     *
+     * @param body          The action to run.
+     * @param validateReads If true a transaction which only read is committed as well.
+     * @param <T>           Type of the result.
+     * @return The result of the last successful run.
+     * @throws NotFoundException
+     * @throws AbortException    Declared for subclasses; a commit which keeps aborting fails with RetryException.
      */
-    public void endTransaction() {
-        //isTransaction = false;
-        //connectionPool.releaseConnection(connection);
+    private <T> T runAtomically(final TransactionBody<T> body, final boolean validateReads)
+            throws NotFoundException, AbortException {
+        if (!transactional) {
+            return body.run();
+        }
+
+        Action current = currentAction();
+        for (int attempt = 1; ; attempt++) {
+            beginTransaction();
+            boolean committed = false;
+            AbortException abort;
+            try {
+                T result = body.run();
+                endTransaction(validateReads);
+                committed = true;
+                return result;
+            } catch (AbortException e) {
+                abort = e;
+            } finally {
+                if (!committed) {
+                    abortTransaction();
+                }
+            }
+            retryPolicy.await(current.name, current.startNanos, attempt, abort);
+        }
+    }
+
+    /**
+     * Begins a transaction bound to the current thread.
+     */
+    protected void beginTransaction() {
+        context.set(new TransactionContext(getConnection()));
+    }
+
+    /**
+     * Commits the current transaction. All buffered writes, list and number operations and the commit are sent in a
+     * single request list. A transaction which only read is released without a commit unless its reads are validated.
+     *
+     * @param validateReads If true a transaction which only read is committed as well, so it aborts if any value it
+     *                      read has changed since.
+     * @throws AbortException If the transaction conflicts with another one.
+     * @throws RetryException If the reply to the commit was lost, see {@link #commitOutcomeUnknown}.
+     */
+    protected void endTransaction(final boolean validateReads) throws AbortException {
+        TransactionContext current = context.get();
+        Transaction.RequestList requestList = current.operations;
+        if (requestList.isEmpty() && !validateReads) {
+            release(current);
+            return;
+        }
+        requestList.addCommit();
+
+        try {
+            long start = System.nanoTime();
+            Transaction.ResultList resultList;
+            try {
+                resultList = current.transaction.req_list(requestList);
+            } finally {
+                countRequest(0, requestList.size() - 1, System.nanoTime() - start);
+            }
+            List<Operation> operations = requestList.getRequests();
+            for (int i = 0; i < requestList.size() - 1; i++) {
+                if (operations.get(i) instanceof AddDelOnListOp) {
+                    resultList.processAddDelOnListAt(i);
+                } else if (operations.get(i) instanceof AddOnNrOp) {
+                    resultList.processAddOnNrAt(i);
+                } else {
+                    resultList.processWriteAt(i);
+                }
+            }
+            resultList.processCommitAt(requestList.size() - 1);
+        } catch (ConnectionException e) {
+            throw commitOutcomeUnknown(e);
+        } catch (NotAListException e) {
+            throw new IllegalStateException("A list operation hit a key which does not hold a native list", e);
+        } catch (NotANumberException e) {
+            throw new IllegalStateException("A number operation hit a key which does not hold a native number", e);
+        }
+        release(current);
+    }
+
+    /**
+     * Returns the failure of an action whose commit was sent but whose reply was lost. Unlike an abort this is not
+     * retried: the commit may have been applied, and running the action again would apply its list and number
+     * operations twice.
+     *
+     * @param cause The failure of the commit request.
+     * @return The exception to throw.
+     */
+    protected RetryException commitOutcomeUnknown(final ConnectionException cause) {
+        Action current = currentAction();
+        return retryPolicy.giveUp(current.name, RetryException.COMMIT_UNKNOWN,
+                current.name + " lost the reply to its commit", cause);
+    }
+
+    /**
+     * Discards the current transaction, if any.
+     */
+    protected void abortTransaction() {
+        TransactionContext current = context.get();
+        if (current != null) {
+            current.transaction.abort();
+            release(current);
+        }
+    }
+
+    private void release(TransactionContext current) {
+        context.remove();
+        connectionPool.releaseConnection(current.connection);
     }
 
     /**
@@ -79,7 +611,18 @@ public class TransactionHelper {
      * @throws NotFoundException
      */
     public JsonObject readUser(final String userId) throws NotFoundException {
-        return read(String.format("%s%s", USER_ID_PREFIX, userId));
+        return read(String.format("%s%s", USER_ID_PREFIX, userId)).getAsJsonObject();
+    }
+
+    /**
+     * Read several user values at once. All keys are sent in as few request lists as possible.
+     *
+     * @param userIds User IDs given by BG.
+     * @return JsonObject instances in the order of the given IDs.
+     * @throws NotFoundException If any of the users does not exist.
+     */
+    public List<JsonObject> readUsers(final Collection<String> userIds) throws NotFoundException {
+        return toJsonObjects(read(toKeys(USER_ID_PREFIX, userIds)));
     }
 
     /**
@@ -92,6 +635,96 @@ public class TransactionHelper {
         write(String.format("%s%s", USER_ID_PREFIX, userId), value);
     }
 
+    /**
+     * Write an image of a user as raw bytes. Images are kept in their own keys next to the user value, so reading or
+     * rewriting a user does not move them.
+     *
+     * @param userId User ID given by BG.
+     * @param image  pic or tpic.
+     * @param bytes  The image.
+     */
+    public void writeImage(final String userId, final String image, final byte[] bytes) {
+        writeBytes(imageKey(userId, image), bytes);
+    }
+
+    /**
+     * Read the newest resources posted on a user's wall, newest first.
+     *
+     * @param userId User ID given by BG.
+     * @return JsonObject instances.
+     * @throws NotFoundException If the user has no such key, because it does not exist or was loaded before the key
+     *                           was introduced.
+     */
+    public List<JsonObject> readRecentResources(final String userId) throws NotFoundException {
+        return toJsonObjects(toList(read(recentResourcesKey(userId)).getAsJsonArray()));
+    }
+
+    /**
+     * Write the newest resources posted on a user's wall.
+     *
+     * @param userId    User ID given by BG.
+     * @param resources JsonObject instances, newest first.
+     */
+    public void writeRecentResources(final String userId, final List<JsonObject> resources) {
+        JsonArray recent = new JsonArray();
+        for (JsonObject resource : resources) {
+            recent.add(resource);
+        }
+        write(recentResourcesKey(userId), recent);
+    }
+
+    /**
+     * Put a resource in front of the newest resources of a user's wall and drop the oldest beyond the limit. Users
+     * without the key are left alone, as it would not list their older resources.
+     *
+     * @param userId   User ID given by BG.
+     * @param resource JsonObject instance.
+     * @param limit    Number of resources to keep.
+     * @throws NotFoundException Declared for subclasses.
+     */
+    public void addRecentResource(final String userId, final JsonObject resource, final int limit)
+            throws NotFoundException {
+        List<JsonObject> recent;
+        try {
+            recent = readRecentResources(userId);
+        } catch (NotFoundException e) {
+            return;
+        }
+        recent.add(0, resource);
+        writeRecentResources(userId, recent.subList(0, Math.min(limit, recent.size())));
+    }
+
+    /**
+     * Returns the key of the newest resources on a user's wall, u&lt;id&gt;:recent.
+     *
+     * @param userId User ID given by BG.
+     * @return The key.
+     */
+    static String recentResourcesKey(final String userId) {
+        return USER_ID_PREFIX + userId + RECENT_RESOURCES_KEY_SUFFIX;
+    }
+
+    /**
+     * Returns the key of a user value.
+     *
+     * @param userId User ID given by BG.
+     * @return The key.
+     */
+    static String userKey(final String userId) {
+        return USER_ID_PREFIX + userId;
+    }
+
+    /**
+     * Returns the key of an image of a user, u&lt;id&gt;:pic or u&lt;id&gt;:tpic.
+     *
+     * @param userId User ID given by BG.
+     * @param image  pic or tpic.
+     * @return The key.
+     */
+    static String imageKey(final String userId, final String image) {
+        return USER_ID_PREFIX + userId + IMAGE_KEY_SEPARATOR + image;
+    }
+
     /**
      * Read a resource value as a JSON obejct.
      *
@@ -100,163 +733,743 @@ public class TransactionHelper {
      * @throws NotFoundException
      */
     public JsonObject readResource(final String resourceId) throws NotFoundException {
-        return read(String.format("%s%s", RESOURCE_ID_PREFIX, resourceId));
+        return read(String.format("%s%s", RESOURCE_ID_PREFIX, resourceId)).getAsJsonObject();
     }
 
     /**
-     * Write a resource value as a JSON Obejct.
+     * Read several resource values at once. All keys are sent in as few request lists as possible.
+     *
+     * @param resourceIds Resource IDs given by BG.
+     * @return JsonObject instances in the order of the given IDs.
+     * @throws NotFoundException If any of the resources does not exist.
+     */
+    public List<JsonObject> readResources(final Collection<String> resourceIds) throws NotFoundException {
+        return toJsonObjects(read(toKeys(RESOURCE_ID_PREFIX, resourceIds)));
+    }
+
+    /**
+     * Write a resource value as a JSON Obejct together with the empty list of its manipulations.
      *
      * @param resourceId Resource ID given by BG.
      * @param value      JsonObject instance.
      */
     public void writeResource(final String resourceId, final JsonObject value) {
         write(String.format("%s%s", RESOURCE_ID_PREFIX, resourceId), value);
+        writeList(manipulationListKey(resourceId), Collections.<String>emptyList());
     }
 
     /**
-     * Returns a manipulation value as a JSON object.
+     * Returns the manipulation values of a resource in the order they were added. The list of manipulation IDs is read
+     * first, then all manipulations at once.
      *
      * @param resourceId Resource ID given by BG.
-     * @return JsonObject instance.
-     * @throws NotFoundException
+     * @return JsonObject instances.
+     * @throws NotFoundException If the resource does not exist.
      */
-    public JsonObject readManipulations(final String resourceId) throws NotFoundException {
-        JsonObject manipulationObject;
-        JsonObject resourceObject = readResource(resourceId);
-        if (resourceObject.has(MANIPULATION)) {
-            manipulationObject = resourceObject.getAsJsonObject(MANIPULATION);
-        } else {
-            manipulationObject = new JsonObject();
+    public List<JsonObject> readManipulations(final String resourceId) throws NotFoundException {
+        JsonArray manipulationIds = read(manipulationListKey(resourceId)).getAsJsonArray();
+        List<String> keys = new ArrayList<>(manipulationIds.size());
+        for (JsonElement manipulationId : manipulationIds) {
+            keys.add(manipulationKey(resourceId, manipulationId.getAsString()));
         }
-        return manipulationObject;
+        return toJsonObjects(read(keys));
     }
 
     /**
-     * Add a manipulation value to the resource value.
+     * Add a manipulation value to the resource. The manipulation gets its own key and its ID is appended to the list
+     * of the resource on the server, so neither the resource nor the other manipulations are rewritten and concurrent
+     * manipulations of a resource do not conflict.
      *
      * @param resourceId     Resource ID given by BG.
      * @param manipulationId Manipulation ID given by BG.
      * @param value          JsonObject instance.
-     * @throws NotFoundException
+     * @throws NotFoundException If the resource does not exist.
      */
     public void writeManipulation(final String resourceId, final String manipulationId, final JsonObject value)
             throws NotFoundException {
-        JsonObject manipulationObject;
-        JsonObject resourceObject = readResource(resourceId);
-        if (resourceObject.has(MANIPULATION)) {
-            manipulationObject = resourceObject.getAsJsonObject(MANIPULATION);
-        } else {
-            manipulationObject = new JsonObject();
-        }
-        manipulationObject.add(manipulationId, value);
-        resourceObject.add(MANIPULATION, manipulationObject);
-        writeResource(resourceId, resourceObject);
+        readResource(resourceId);
+        write(manipulationKey(resourceId, manipulationId), value);
+        addDelOnList(manipulationListKey(resourceId), Collections.singletonList(manipulationId),
+                Collections.<String>emptyList());
     }
 
     /**
-     * Delete the manipulation value from the resource.
+     * Delete the manipulation value from the resource. Its ID is removed from the list of the resource; the key itself
+     * cannot be deleted by a transaction and is left unreferenced.
      *
      * @param resourceId     Resource ID given by BG.
      * @param manipulationId Manipulation ID given by BG.
-     * @throws NotFoundException
+     * @throws NotFoundException If the resource does not exist.
      */
     public void deleteManipulation(final String resourceId, final String manipulationId) throws NotFoundException {
-        JsonObject resourceObject = readResource(resourceId);
-        if (resourceObject.has(MANIPULATION)) {
-            JsonObject manipulationObject = resourceObject.getAsJsonObject(MANIPULATION);
-            manipulationObject.remove(manipulationId);
-            resourceObject.add(MANIPULATION, manipulationObject);
-            writeResource(resourceId, resourceObject);
-        }
+        readResource(resourceId);
+        addDelOnList(manipulationListKey(resourceId), Collections.<String>emptyList(),
+                Collections.singletonList(manipulationId));
+    }
+
+    /**
+     * Returns the key of the manipulation IDs of a resource, r&lt;id&gt;:m.
+     *
+     * @param resourceId Resource ID given by BG.
+     * @return The key.
+     */
+    static String manipulationListKey(final String resourceId) {
+        return RESOURCE_ID_PREFIX + resourceId + MANIPULATION_KEY_SEPARATOR;
+    }
+
+    /**
+     * Returns the key of a manipulation, r&lt;id&gt;:m&lt;mid&gt;.
+     *
+     * @param resourceId     Resource ID given by BG.
+     * @param manipulationId Manipulation ID given by BG.
+     * @return The key.
+     */
+    static String manipulationKey(final String resourceId, final String manipulationId) {
+        return RESOURCE_ID_PREFIX + resourceId + MANIPULATION_KEY_SEPARATOR + manipulationId;
     }
 
     /**
      * Read a value with the key.
      *
      * @param key Unique key.
-     * @return JsonObject instance.
+     * @return JsonElement instance.
      * @throws NotFoundException
      */
-    private JsonObject read(final String key) throws NotFoundException {
-        if (isTransaction) {
-            return read(key, transaction);
-        } else {
-            Connection connection = getConnection();
-            TransactionSingleOp transaction = new TransactionSingleOp(connection);
+    protected JsonElement read(final String key) throws NotFoundException {
+        return toJson(readValues(Collections.singletonList(key)).get(0));
+    }
 
-            JsonObject json = read(key, transaction);
-            connectionPool.releaseConnection(connection);
-            return json;
+    /**
+     * Read values with the keys. Up to {@value #READ_BATCH_SIZE} keys share one request list.
+     *
+     * @param keys Unique keys.
+     * @return JsonElement instances in the order of the keys.
+     * @throws NotFoundException If any of the keys does not exist.
+     */
+    protected List<JsonElement> read(final List<String> keys) throws NotFoundException {
+        return toJson(readValues(keys));
+    }
+
+    /**
+     * Read values with the keys without decoding them, so binary values such as images can share a request list
+     * with JSON values. Cached keys are not sent; the others are fetched together and cached.
+     *
+     * @param keys Unique keys.
+     * @return Values as read from Scalaris in the order of the keys.
+     * @throws NotFoundException If any of the keys does not exist.
+     */
+    protected List<ErlangValue> readValues(final List<String> keys) throws NotFoundException {
+        if (executor != null && keys.size() > READ_BATCH_SIZE && !inTransaction()) {
+            return join(readValuesAsync(keys));
+        }
+        if (readConsistency != ReadConsistency.CACHED || inTransaction()) {
+            return fetchValues(keys);
+        }
+
+        List<ErlangValue> values = new ArrayList<>(keys.size());
+        List<String> missing = new ArrayList<>();
+        for (String key : keys) {
+            ErlangValue value = cache.get(key);
+            values.add(value);
+            if (value == null) {
+                missing.add(key);
+            }
         }
+        if (missing.isEmpty()) {
+            return values;
+        }
+
+        long[] generations = new long[missing.size()];
+        for (int i = 0; i < generations.length; i++) {
+            generations[i] = cache.generation(missing.get(i));
+        }
+        List<ErlangValue> fetched = fetchValues(missing);
+        for (int i = 0; i < generations.length; i++) {
+            cache.put(missing.get(i), fetched.get(i), generations[i]);
+        }
+        for (int i = 0, next = 0; i < values.size(); i++) {
+            if (values.get(i) == null) {
+                values.set(i, fetched.get(next++));
+            }
+        }
+        return values;
     }
 
     /**
-     * Read a value with the key.
+     * Read values with the keys without waiting for them. Outside a transaction every {@value #READ_BATCH_SIZE} keys
+     * are read on the executor, so the request lists of a large read are in flight together. Inside a transaction,
+     * which is bound to the calling thread, or without an executor the values are read before this method returns.
      *
-     * @param key Unique key.
-     * @return JsonObject instance.
-     * @throws NotFoundException
+     * @param keys Unique keys.
+     * @return Values in the order of the keys, completed exceptionally with NotFoundException if any of the keys does
+     * not exist.
      */
-    private JsonObject read(final String key,
-                            AbstractTransaction<? extends RequestList, ? extends ResultList> transaction)
-            throws NotFoundException {
-        ErlangValue erlangValue;
-        double ms = INIT_WAIT_TIME;
-        while (true) {
+    protected CompletableFuture<List<ErlangValue>> readValuesAsync(final List<String> keys) {
+        if (executor == null || inTransaction()) {
+            CompletableFuture<List<ErlangValue>> values = new CompletableFuture<>();
             try {
-                erlangValue = transaction.read(key);
-                if (erlangValue != null) break;
-            } catch (ConnectionException e) {
+                values.complete(readValues(keys));
+            } catch (NotFoundException | RuntimeException e) {
+                values.completeExceptionally(e);
+            }
+            return values;
+        }
+
+        /** Retries and requests on the executor count for the action which started the read. */
+        Action current = currentAction();
+        List<CompletableFuture<List<ErlangValue>>> batches = new ArrayList<>();
+        for (int from = 0; from < keys.size(); from += READ_BATCH_SIZE) {
+            List<String> batch = keys.subList(from, Math.min(from + READ_BATCH_SIZE, keys.size()));
+            CompletableFuture<List<ErlangValue>> values = new CompletableFuture<>();
+            executor.execute(() -> {
+                action.set(current);
                 try {
-                    Thread.sleep((long) ms);
-                    if (ms < MAX_WAIT_TIME)
-                        ms *= Math.log(ms);
-                } catch (InterruptedException ignored) {
+                    values.complete(readValues(batch));
+                } catch (NotFoundException | RuntimeException e) {
+                    values.completeExceptionally(e);
+                } finally {
+                    action.remove();
                 }
+            });
+            batches.add(values);
+        }
+        return CompletableFuture.allOf(batches.toArray(new CompletableFuture<?>[batches.size()])).thenApply(done -> {
+            List<ErlangValue> values = new ArrayList<>(keys.size());
+            for (CompletableFuture<List<ErlangValue>> batch : batches) {
+                values.addAll(batch.join());
             }
+            return values;
+        });
+    }
+
+    /**
+     * Waits for a read started with {@link #readValuesAsync(List)}.
+     *
+     * @param future The read.
+     * @param <T>    Type of the result.
+     * @return The result.
+     * @throws NotFoundException If any of the keys does not exist.
+     */
+    private static <T> T join(final CompletableFuture<T> future) throws NotFoundException {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof NotFoundException) {
+                throw (NotFoundException) e.getCause();
+            }
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
         }
-        JsonElement jsonElement = jsonParser.parse(erlangValue.stringValue());
-        return jsonElement.getAsJsonObject();
+    }
+
+    private boolean inTransaction() {
+        return changedKeys.get() != null;
+    }
+
+    /**
+     * Read values with the keys from Scalaris. Up to {@value #READ_BATCH_SIZE} keys share one request list.
+     *
+     * @param keys Unique keys.
+     * @return Values as read from Scalaris in the order of the keys.
+     * @throws NotFoundException If any of the keys does not exist.
+     */
+    protected List<ErlangValue> fetchValues(final List<String> keys) throws NotFoundException {
+        List<ErlangValue> values = new ArrayList<>(keys.size());
+        if (keys.isEmpty()) {
+            return values;
+        }
+
+        TransactionContext current = context.get();
+        if (current != null) {
+            for (int from = 0; from < keys.size(); from += READ_BATCH_SIZE) {
+                List<String> batch = keys.subList(from, Math.min(from + READ_BATCH_SIZE, keys.size()));
+                values.addAll(readValues(batch, current));
+            }
+        } else {
+            Connection connection = getConnection();
+            try {
+                TransactionSingleOp transaction = new TransactionSingleOp(connection);
+                for (int from = 0; from < keys.size(); from += READ_BATCH_SIZE) {
+                    List<String> batch = keys.subList(from, Math.min(from + READ_BATCH_SIZE, keys.size()));
+                    TransactionSingleOp.RequestList requestList = new TransactionSingleOp.RequestList();
+                    for (String key : batch) {
+                        requestList.addOp(new ReadOp(key));
+                    }
+                    values.addAll(readValues(requestList, transaction));
+                }
+            } finally {
+                connectionPool.releaseConnection(connection);
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Read values with the keys inside the current transaction. Keys written by the transaction are not sent.
+     *
+     * @param keys    Unique keys.
+     * @param current The current transaction.
+     * @return Values in the order of the keys.
+     * @throws NotFoundException If any of the keys does not exist.
+     */
+    private List<ErlangValue> readValues(final List<String> keys, TransactionContext current)
+            throws NotFoundException {
+        Transaction.RequestList requestList = new Transaction.RequestList();
+        for (String key : keys) {
+            checkNoServerUpdate(current, key);
+            if (!current.writes.containsKey(key)) {
+                requestList.addOp(new ReadOp(key));
+            }
+        }
+
+        List<ErlangValue> fetched = requestList.isEmpty()
+                ? Collections.<ErlangValue>emptyList() : readValues(requestList, current.transaction);
+        List<ErlangValue> values = new ArrayList<>(keys.size());
+        int next = 0;
+        for (String key : keys) {
+            ErlangValue written = current.writes.get(key);
+            values.add(written != null ? written : fetched.get(next++));
+        }
+        return values;
+    }
+
+    /**
+     * Send a request list of reads in one round trip.
+     *
+     * @param requestList Request list of read operations.
+     * @param transaction Transaction to send the request list with.
+     * @return Values in the order of the requests.
+     * @throws NotFoundException If any of the keys does not exist.
+     */
+    private <ReqL extends RequestList, ResL extends ResultList> List<ErlangValue> readValues(
+            final ReqL requestList, AbstractTransaction<ReqL, ResL> transaction) throws NotFoundException {
+        ResL resultList = send(requestList.size(), 0, () -> transaction.req_list(requestList));
+        List<ErlangValue> values = new ArrayList<>(resultList.size());
+        long bytes = 0;
+        for (int i = 0; i < resultList.size(); i++) {
+            ErlangValue value = resultList.processReadAt(i);
+            bytes += size(value.value());
+            values.add(value);
+        }
+        countBytesReceived(bytes);
+        return values;
+    }
+
+    /**
+     * Rejects reading a key which the current transaction changed with a list or number operation. Its new value is
+     * only known to Scalaris once the operation has been sent with the commit.
+     *
+     * @param current The current transaction.
+     * @param key     Unique key.
+     */
+    private static void checkNoServerUpdate(TransactionContext current, final String key) {
+        if (current.serverUpdates.contains(key)) {
+            throw new IllegalStateException("Cannot read " + key + " after changing it on the server");
+        }
+    }
+
+    /**
+     * Converts a value read from Scalaris. Native lists become JSON arrays of strings, native numbers JSON numbers and
+     * anything else is decoded by the codec.
+     *
+     * @param erlangValue The value.
+     * @return JsonElement instance.
+     */
+    protected JsonElement toJson(final ErlangValue erlangValue) {
+        if (erlangValue.value() instanceof OtpErlangLong) {
+            return new JsonPrimitive(erlangValue.longValue());
+        }
+        if (erlangValue.value() instanceof OtpErlangList) {
+            OtpErlangList list = (OtpErlangList) erlangValue.value();
+            /** A string with characters beyond Latin-1 arrives as a list of code points. */
+            if (list.arity() == 0 || !(list.elementAt(0) instanceof OtpErlangLong)) {
+                return toJsonArray(erlangValue.stringListValue());
+            }
+        }
+        long start = System.nanoTime();
+        try {
+            return codec.decode(erlangValue);
+        } finally {
+            statistics.addCodecTime(actionName(), System.nanoTime() - start);
+        }
+    }
+
+    private List<JsonElement> toJson(final List<ErlangValue> erlangValues) {
+        List<JsonElement> values = new ArrayList<>(erlangValues.size());
+        for (ErlangValue erlangValue : erlangValues) {
+            values.add(toJson(erlangValue));
+        }
+        return values;
+    }
+
+    private static List<JsonElement> toList(final JsonArray array) {
+        List<JsonElement> elements = new ArrayList<>(array.size());
+        for (JsonElement element : array) {
+            elements.add(element);
+        }
+        return elements;
+    }
+
+    private static List<JsonObject> toJsonObjects(final List<JsonElement> elements) {
+        List<JsonObject> objects = new ArrayList<>(elements.size());
+        for (JsonElement element : elements) {
+            objects.add(element.getAsJsonObject());
+        }
+        return objects;
+    }
+
+    private static List<String> toKeys(final String prefix, final Collection<String> ids) {
+        List<String> keys = new ArrayList<>(ids.size());
+        for (String id : ids) {
+            keys.add(prefix + id);
+        }
+        return keys;
     }
 
     /**
      * Write a value with the key.
      *
      * @param key   Unique key.
-     * @param value JsonObject instance.
+     * @param value JsonElement instance.
+     */
+    protected void write(final String key, final JsonElement value) {
+        checkWritable();
+        long start = System.nanoTime();
+        Object encoded = codec.encode(value);
+        statistics.addCodecTime(actionName(), System.nanoTime() - start);
+        store(key, encoded);
+        invalidate(key);
+    }
+
+    /**
+     * Write a list of IDs with the key. The list is stored as a native Erlang list.
+     *
+     * @param key Unique key.
+     * @param ids IDs in list order.
+     */
+    protected void writeList(final String key, final List<String> ids) {
+        checkWritable();
+        store(key, ids);
+        invalidate(key);
+    }
+
+    /**
+     * Write a number with the key. The number is stored as a native Erlang integer.
+     *
+     * @param key   Unique key.
+     * @param value The number.
+     */
+    protected void writeNumber(final String key, final long value) {
+        checkWritable();
+        store(key, value);
+        invalidate(key);
+    }
+
+    /**
+     * Write raw bytes with the key, such as an image. The bytes are stored as an Erlang binary and bypass the codec,
+     * read them back with {@link #readValues(List)} and {@link ErlangValue#binaryValue()}.
+     *
+     * @param key   Unique key.
+     * @param value The bytes.
+     */
+    protected void writeBytes(final String key, final byte[] value) {
+        checkWritable();
+        store(key, value);
+        invalidate(key);
+    }
+
+    /**
+     * Append IDs to and remove IDs from a list written with {@link #writeList(String, List)}. The list is changed on
+     * the server without being read, so the key is not part of the read set of the current transaction and the change
+     * never conflicts with other list operations on it. A missing key is created as an empty list first.
+     *
+     * @param key      Unique key.
+     * @param toAdd    IDs to append.
+     * @param toRemove IDs to remove, the first occurrence of each.
+     */
+    protected void addDelOnList(final String key, final List<String> toAdd, final List<String> toRemove) {
+        checkWritable();
+        checkNotBatched();
+        statistics.addBytesSent(actionName(), size(toAdd) + size(toRemove));
+        storeAddDelOnList(key, toAdd, toRemove);
+        invalidate(key);
+    }
+
+    /**
+     * Add to a number written with {@link #writeNumber(String, long)}. Like {@link #addDelOnList(String, List, List)}
+     * the number is changed on the server without being read. A missing key is created as 0 first.
+     *
+     * @param key   Unique key.
+     * @param delta Value to add, may be negative.
      */
-    private void write(final String key, final JsonObject value) {
-        if (isTransaction) {
-            write(key, value, transaction);
+    protected void addOnNr(final String key, final long delta) {
+        checkWritable();
+        checkNotBatched();
+        statistics.addBytesSent(actionName(), Long.BYTES);
+        storeAddOnNr(key, delta);
+        invalidate(key);
+    }
+
+    private void checkWritable() {
+        if (readOnly.get() != null) {
+            throw new IllegalStateException("Cannot write in a read-only action");
+        }
+    }
+
+    private void checkNotBatched() {
+        if (batch.get() != null) {
+            throw new IllegalStateException("Cannot change a value on the server in a batched action");
+        }
+    }
+
+    private void store(final String key, final Object value) {
+        statistics.addBytesSent(actionName(), size(value));
+        Map<String, Object> writes = batch.get();
+        if (writes != null) {
+            writes.put(key, value);
+        } else {
+            storeValue(key, value);
+        }
+    }
+
+    /**
+     * Drops a changed key from the cache. Inside a transaction it is dropped again after the commit, as a read by
+     * another thread may cache the old value until then.
+     *
+     * @param key Unique key.
+     */
+    private void invalidate(final String key) {
+        if (cache != null) {
+            cache.invalidate(key);
+            Set<String> changed = changedKeys.get();
+            if (changed != null) {
+                changed.add(key);
+            }
+        }
+    }
+
+    /**
+     * Write an encoded value, a list of IDs, a number or raw bytes with the key. Inside a transaction the write is
+     * buffered until the commit.
+     *
+     * @param key   Unique key.
+     * @param value The value as passed to Scalaris.
+     */
+    protected void storeValue(final String key, final Object value) {
+        TransactionContext current = context.get();
+        if (current != null) {
+            current.operations.addOp(new WriteOp(key, value));
+            current.writes.put(key, new ErlangValue(value));
+            current.serverUpdates.remove(key);
         } else {
             Connection connection = getConnection();
+            try {
+                write(key, value, new TransactionSingleOp(connection));
+            } finally {
+                connectionPool.releaseConnection(connection);
+            }
+        }
+    }
+
+    /**
+     * Write encoded values, lists of IDs, numbers or raw bytes without a transaction. Up to
+     * {@value #WRITE_BATCH_SIZE} keys share one request list, which is sent again as a whole if any of its writes
+     * fails.
+     *
+     * @param values Values as passed to Scalaris by key.
+     */
+    protected void storeValues(final Map<String, Object> values) {
+        if (values.isEmpty()) {
+            return;
+        }
+
+        List<Map.Entry<String, Object>> entries = new ArrayList<>(values.entrySet());
+        Connection connection = getConnection();
+        try {
             TransactionSingleOp transaction = new TransactionSingleOp(connection);
-            write(key, value, transaction);
+            for (int from = 0; from < entries.size(); from += WRITE_BATCH_SIZE) {
+                TransactionSingleOp.RequestList requestList = new TransactionSingleOp.RequestList();
+                for (Map.Entry<String, Object> entry : entries.subList(from,
+                        Math.min(from + WRITE_BATCH_SIZE, entries.size()))) {
+                    requestList.addOp(new WriteOp(entry.getKey(), entry.getValue()));
+                }
+                send(0, requestList.size(), () -> {
+                    TransactionSingleOp.ResultList resultList = transaction.req_list(requestList);
+                    for (int i = 0; i < resultList.size(); i++) {
+                        resultList.processWriteAt(i);
+                    }
+                    return null;
+                });
+            }
+        } finally {
             connectionPool.releaseConnection(connection);
         }
     }
 
     /**
-     * Write a value with the key.
+     * Send an add_del_on_list operation, buffered until the commit inside a transaction.
+     *
+     * @param key      Unique key.
+     * @param toAdd    IDs to append.
+     * @param toRemove IDs to remove, the first occurrence of each.
+     */
+    protected void storeAddDelOnList(final String key, final List<String> toAdd, final List<String> toRemove) {
+        TransactionContext current = context.get();
+        if (current != null) {
+            current.operations.addOp(new AddDelOnListOp(key, toAdd, toRemove));
+            current.writes.remove(key);
+            current.serverUpdates.add(key);
+        } else {
+            Connection connection = getConnection();
+            try {
+                addDelOnList(key, toAdd, toRemove, new TransactionSingleOp(connection));
+            } finally {
+                connectionPool.releaseConnection(connection);
+            }
+        }
+    }
+
+    /**
+     * Append IDs to and remove IDs from a list with a single operation.
+     *
+     * @param key      Unique key.
+     * @param toAdd    IDs to append.
+     * @param toRemove IDs to remove, the first occurrence of each.
+     */
+    private void addDelOnList(final String key, final List<String> toAdd, final List<String> toRemove,
+                              TransactionSingleOp transaction) {
+        try {
+            send(0, 1, () -> {
+                /** Like a commit, the operation may have been applied although its reply was lost. */
+                try {
+                    transaction.addDelOnList(key, toAdd, toRemove);
+                } catch (ConnectionException e) {
+                    throw commitOutcomeUnknown(e);
+                }
+                return null;
+            });
+        } catch (NotAListException e) {
+            throw new IllegalStateException(key + " does not hold a native list", e);
+        }
+    }
+
+    /**
+     * Send an add_on_nr operation, buffered until the commit inside a transaction.
      *
      * @param key   Unique key.
-     * @param value JsonObject instance.
+     * @param delta Value to add, may be negative.
      */
-    private void write(final String key, final JsonObject value,
-                       AbstractTransaction<? extends RequestList, ? extends ResultList> transaction) {
-        double ms = INIT_WAIT_TIME;
-        while (true) {
+    protected void storeAddOnNr(final String key, final long delta) {
+        TransactionContext current = context.get();
+        if (current != null) {
+            current.operations.addOp(new AddOnNrOp(key, delta));
+            current.writes.remove(key);
+            current.serverUpdates.add(key);
+        } else {
+            Connection connection = getConnection();
             try {
-                transaction.write(key, value.toString());
-                break;
-            } catch (ConnectionException | AbortException e) {
+                addOnNr(key, delta, new TransactionSingleOp(connection));
+            } finally {
+                connectionPool.releaseConnection(connection);
+            }
+        }
+    }
+
+    /**
+     * Add to a number with a single operation.
+     *
+     * @param key   Unique key.
+     * @param delta Value to add, may be negative.
+     */
+    private void addOnNr(final String key, final long delta, TransactionSingleOp transaction) {
+        try {
+            send(0, 1, () -> {
+                /** Like a commit, the operation may have been applied although its reply was lost. */
                 try {
-                    Thread.sleep((long) ms);
-                    if (ms < MAX_WAIT_TIME)
-                        ms *= Math.log(ms);
-                } catch (InterruptedException ignored) {
+                    transaction.addOnNr(key, delta);
+                } catch (ConnectionException e) {
+                    throw commitOutcomeUnknown(e);
                 }
+                return null;
+            });
+        } catch (NotANumberException e) {
+            throw new IllegalStateException(key + " does not hold a native number", e);
+        }
+    }
+
+    /**
+     * Returns the size of a value as passed to Scalaris: characters of a string, bytes of a binary and the sum of the
+     * elements of a list. A number counts as eight bytes.
+     *
+     * @param value An encoded value, a list of IDs, a number or raw bytes.
+     * @return The size.
+     */
+    private static long size(final Object value) {
+        if (value instanceof String) {
+            return ((String) value).length();
+        }
+        if (value instanceof byte[]) {
+            return ((byte[]) value).length;
+        }
+        if (value instanceof List) {
+            long size = 0;
+            for (Object element : (List<?>) value) {
+                size += size(element);
             }
+            return size;
+        }
+        return Long.BYTES;
+    }
+
+    /**
+     * Returns the size of a value as read from Scalaris, counted like {@link #size(Object)}.
+     *
+     * @param value The value.
+     * @return The size.
+     */
+    private static long size(final OtpErlangObject value) {
+        if (value instanceof OtpErlangString) {
+            return ((OtpErlangString) value).stringValue().length();
         }
+        if (value instanceof OtpErlangBinary) {
+            return ((OtpErlangBinary) value).size();
+        }
+        if (value instanceof OtpErlangList) {
+            OtpErlangList list = (OtpErlangList) value;
+            /** A string with characters beyond Latin-1 arrives as a list of code points. */
+            if (list.arity() > 0 && list.elementAt(0) instanceof OtpErlangLong) {
+                return list.arity();
+            }
+            long size = 0;
+            for (OtpErlangObject element : list) {
+                size += size(element);
+            }
+            return size;
+        }
+        return Long.BYTES;
+    }
+
+    private static JsonArray toJsonArray(final List<String> ids) {
+        JsonArray jsonArray = new JsonArray();
+        for (String id : ids) {
+            jsonArray.add(new JsonPrimitive(id));
+        }
+        return jsonArray;
+    }
+
+    /**
+     * Write a value with the key.
+     *
+     * @param key   Unique key.
+     * @param value An encoded value, a list of IDs, a number or raw bytes.
+     */
+    private <T> void write(final String key, final T value,
+                           AbstractTransaction<? extends RequestList, ? extends ResultList> transaction) {
+        send(0, 1, () -> {
+            transaction.write(key, value);
+            return null;
+        });
     }
 }
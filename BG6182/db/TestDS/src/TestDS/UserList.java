@@ -0,0 +1,49 @@
+package TestDS;
+
+/**
+ * Lists of IDs kept per user.
+ */
+public enum UserList {
+    /**
+     * Confirmed friends.
+     */
+    FRIENDS("friends", "confirmedFriends"),
+    /**
+     * Users who sent a friend request which is still pending.
+     */
+    PENDING("pending", "pendingFriends"),
+    /**
+     * Resources posted on the user's wall.
+     */
+    WALL("walls", "resources"),
+    /**
+     * Resources created by the user.
+     */
+    CREATED("created", "createdResources");
+
+    private final String keySuffix;
+    private final String field;
+
+    UserList(String keySuffix, String field) {
+        this.keySuffix = keySuffix;
+        this.field = field;
+    }
+
+    /**
+     * Returns the suffix of the key holding this list in the normalized layout.
+     *
+     * @return Key suffix.
+     */
+    public String getKeySuffix() {
+        return keySuffix;
+    }
+
+    /**
+     * Returns the attribute holding this list in the document layout.
+     *
+     * @return Attribute name.
+     */
+    public String getField() {
+        return field;
+    }
+}
@@ -0,0 +1,97 @@
+package TestDS;
+
+import com.google.gson.JsonObject;
+import de.zib.scalaris.NotFoundException;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Maps users onto Scalaris keys. All methods go through a {@link TransactionHelper}, so they join the transaction of
+ * the calling thread if there is one.
+ */
+public interface UserStore {
+    /**
+     * Writes a user. ID lists found in the given object, as stored by the document layout, are written as well;
+     * missing lists start out empty. Images are written separately with {@link #writeImages(String, byte[], byte[])}.
+     *
+     * @param userId User ID given by BG.
+     * @param user   Profile attributes and optionally ID lists.
+     */
+    void writeUser(String userId, JsonObject user);
+
+    /**
+     * Writes the images of a user as binaries to u&lt;id&gt;:pic and u&lt;id&gt;:tpic. They are only read by actions
+     * which return them.
+     *
+     * @param userId    User ID given by BG.
+     * @param pic       The profile image, or null to leave it out.
+     * @param thumbnail The thumbnail, or null to leave it out.
+     */
+    void writeImages(String userId, byte[] pic, byte[] thumbnail);
+
+    /**
+     * Reads a user's profile together with some of its ID lists in a single round trip.
+     *
+     * @param userId User ID given by BG.
+     * @param pic    If true the profile image is read as well, see {@link UserView#getPic()}.
+     * @param lists  ID lists to read.
+     * @return The user.
+     * @throws NotFoundException If the user, or with pic its profile image, does not exist.
+     */
+    UserView readUser(String userId, boolean pic, UserList... lists) throws NotFoundException;
+
+    /**
+     * Reads a user's profile together with the sizes of some of its ID lists in a single round trip. Layouts keeping
+     * counters read those instead of the lists, so the cost does not grow with the lists.
+     *
+     * @param userId User ID given by BG.
+     * @param pic    If true the profile image is read as well, see {@link UserView#getPic()}.
+     * @param lists  ID lists to count, see {@link UserView#getCount(UserList)}.
+     * @return The user.
+     * @throws NotFoundException If the user, or with pic its profile image, does not exist.
+     */
+    UserView readCounts(String userId, boolean pic, UserList... lists) throws NotFoundException;
+
+    /**
+     * Sums the sizes of some ID lists over several users. Large batches are sent as concurrent request lists, and
+     * layouts keeping counters read those instead of the lists.
+     *
+     * @param userIds User IDs given by BG.
+     * @param lists   ID lists to count.
+     * @return Total number of IDs in each list, in the order of the given lists.
+     * @throws NotFoundException If any of the users does not exist.
+     */
+    long[] sumCounts(Collection<String> userIds, UserList... lists) throws NotFoundException;
+
+    /**
+     * Reads the profiles of several users in as few round trips as possible. Thumbnails share the request lists of
+     * the profiles.
+     *
+     * @param userIds    User IDs given by BG.
+     * @param thumbnails If true the thumbnails are read as well, see {@link UserView#getThumbnail()}.
+     * @return Users in the order of the given IDs. Depending on the layout their profiles may also hold the ID lists.
+     * @throws NotFoundException If any of the users, or with thumbnails any of their thumbnails, does not exist.
+     */
+    List<UserView> readProfiles(Collection<String> userIds, boolean thumbnails) throws NotFoundException;
+
+    /**
+     * Appends an ID to a list of a user.
+     *
+     * @param userId User ID given by BG.
+     * @param list   The list.
+     * @param id     The ID to append.
+     * @throws NotFoundException If the user does not exist.
+     */
+    void addId(String userId, UserList list, String id) throws NotFoundException;
+
+    /**
+     * Removes an ID from a list of a user.
+     *
+     * @param userId User ID given by BG.
+     * @param list   The list.
+     * @param id     The ID to remove.
+     * @throws NotFoundException If the user does not exist.
+     */
+    void removeId(String userId, UserList list, String id) throws NotFoundException;
+}
@@ -0,0 +1,97 @@
+package TestDS;
+
+import com.google.gson.JsonObject;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A user as read by {@link UserStore#readUser(String, boolean, UserList...)},
+ * {@link UserStore#readCounts(String, boolean, UserList...)} or {@link UserStore#readProfiles(Collection, boolean)}:
+ * the profile attributes and the images, ID lists or list sizes which were asked for.
+ */
+public class UserView {
+    private final JsonObject profile;
+    private final Map<UserList, List<String>> lists = new EnumMap<>(UserList.class);
+    private final Map<UserList, Long> counts = new EnumMap<>(UserList.class);
+    private byte[] pic;
+    private byte[] thumbnail;
+
+    /**
+     * Creates a view of the given profile.
+     *
+     * @param profile Profile attributes.
+     */
+    public UserView(JsonObject profile) {
+        this.profile = profile;
+    }
+
+    /**
+     * Returns the profile attributes. Depending on the layout the object may also hold the ID lists, so callers pick
+     * the attributes they need.
+     *
+     * @return JsonObject instance.
+     */
+    public JsonObject getProfile() {
+        return profile;
+    }
+
+    /**
+     * Returns the IDs of the given list.
+     *
+     * @param list The list.
+     * @return The IDs in insertion order, or an empty list if the list is empty or was not read.
+     */
+    public List<String> getIds(UserList list) {
+        List<String> ids = lists.get(list);
+        return ids != null ? ids : Collections.<String>emptyList();
+    }
+
+    void setIds(UserList list, List<String> ids) {
+        lists.put(list, ids);
+    }
+
+    /**
+     * Returns the number of IDs in the given list.
+     *
+     * @param list The list.
+     * @return The stored count if it was read, otherwise the size of the IDs read.
+     */
+    public long getCount(UserList list) {
+        Long count = counts.get(list);
+        return count != null ? count : getIds(list).size();
+    }
+
+    void setCount(UserList list, long count) {
+        counts.put(list, count);
+    }
+
+    /**
+     * Returns the profile image.
+     *
+     * @return The image, or null if it was not read.
+     */
+    public byte[] getPic() {
+        return pic;
+    }
+
+    void setPic(byte[] pic) {
+        this.pic = pic;
+    }
+
+    /**
+     * Returns the thumbnail.
+     *
+     * @return The thumbnail, or null if it was not read.
+     */
+    public byte[] getThumbnail() {
+        return thumbnail;
+    }
+
+    void setThumbnail(byte[] thumbnail) {
+        this.thumbnail = thumbnail;
+    }
+}
@@ -0,0 +1,27 @@
+package TestDS;
+
+import com.google.gson.JsonElement;
+import de.zib.scalaris.ErlangValue;
+
+/**
+ * Turns the JSON values of the binding into what is stored in Scalaris and back. Native lists and numbers written by
+ * {@link TransactionHelper#writeList(String, java.util.List)} and {@link TransactionHelper#writeNumber(String, long)}
+ * do not go through the codec.
+ */
+public interface ValueCodec {
+    /**
+     * Encodes a value for writing.
+     *
+     * @param value JsonElement instance.
+     * @return A String or a byte array, which Scalaris stores as an Erlang string or binary.
+     */
+    Object encode(JsonElement value);
+
+    /**
+     * Decodes a value written with {@link #encode(JsonElement)}.
+     *
+     * @param value The value read from Scalaris.
+     * @return JsonElement instance.
+     */
+    JsonElement decode(ErlangValue value);
+}
@@ -0,0 +1,211 @@
+package TestDS;
+
+import edu.usc.bg.base.ByteIterator;
+import edu.usc.bg.base.ObjectByteIterator;
+import edu.usc.bg.base.StringByteIterator;
+import edu.usc.bg.benchmark.BenchmarkHarness;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Vector;
+
+import static edu.usc.bg.benchmark.BenchmarkHarness.blackhole;
+
+/**
+ * Measures the binding's own cost of every BG action against {@link InMemoryTransactionHelper}, without a Scalaris
+ * ring: throughput, bytes allocated per action and the 99th percentile latency, for a user with 10, 100 and 1000
+ * friends. Every reported number is the mean and standard deviation over the measured iterations of
+ * {@link BenchmarkHarness}, each of which runs the action the given number of times. Run it before and after a change
+ * to the codec, the layouts or the locking. Run with java -cp ... TestDS.ActionBenchmark [actions per iteration]
+ * [layout] [transactions].
+ */
+public class ActionBenchmark implements TestDSClientConstants {
+    private static final int DEFAULT_ITERATIONS = 2000;
+    private static final int[] FRIEND_COUNTS = {10, 100, 1000};
+    private static final int RESOURCE_COUNT = 10;
+    private static final int COMMENT_COUNT = 5;
+    private static final int IMAGE_SIZE = 2 * 1024;
+    private static final int OWNER = 0;
+    private static int sequence;
+
+    /**
+     * A BG action, or a few which together leave the data as they found it.
+     */
+    @FunctionalInterface
+    private interface Action {
+        /**
+         * @param i Number which is unique across all runs, e.g. for new IDs.
+         * @return BG's result code.
+         */
+        int run(int i);
+    }
+
+    public static void main(String[] args) throws Exception {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_ITERATIONS;
+        String layout = args.length > 1 ? args[1] : LAYOUT_PROPERTY_DEFAULT;
+        boolean transactional = args.length > 2 ? Boolean.parseBoolean(args[2])
+                : Boolean.parseBoolean(TRANSACTIONS_PROPERTY_DEFAULT);
+
+        System.out.println(String.format("%-8s %-40s %20s %20s %16s", "friends", "action", "ops/s", "bytes/op",
+                "p99 us"));
+        for (int friendCount : FRIEND_COUNTS) {
+            TestDSClient client = load(new InMemoryTransactionHelper(0, transactional), layout, friendCount);
+            for (Map.Entry<String, Action> action : actions(client, friendCount).entrySet()) {
+                BenchmarkHarness.Result result = BenchmarkHarness.measure(() -> run(action.getValue(), iterations));
+                System.out.println(String.format("%-8d %-40s %20s %20s %16s", friendCount, action.getKey(),
+                        result.format(0, 0), result.format(1, 0), result.format(2, 1)));
+            }
+        }
+    }
+
+    /**
+     * Runs an action repeatedly on the calling thread.
+     *
+     * @return Actions per second, bytes allocated per action and the 99th percentile latency in microseconds.
+     */
+    private static double[] run(Action action, int iterations) {
+        long[] latencies = new long[iterations];
+        long allocated = allocatedBytes();
+        long st = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            long start = System.nanoTime();
+            int result = action.run(sequence++);
+            latencies[i] = System.nanoTime() - start;
+            if (result != 0) {
+                throw new IllegalStateException("Action failed with " + result);
+            }
+        }
+        long elapsed = System.nanoTime() - st;
+        allocated = allocatedBytes() - allocated;
+
+        Arrays.sort(latencies);
+        return new double[]{iterations * 1e9 / Math.max(elapsed, 1), (double) allocated / iterations,
+                latencies[(int) Math.ceil(iterations * 0.99) - 1] / 1000.0};
+    }
+
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+                .getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /**
+     * Returns the actions on the owner, user 0. Actions which change data are paired with the actions undoing the
+     * change, so the owner keeps its friends, friend requests and comments across runs. Users beyond the friends and
+     * requesters are strangers to the owner. The containers the read actions fill in go to the blackhole.
+     */
+    private static Map<String, Action> actions(TestDSClient client, int friendCount) {
+        int strangers = friendCount + pendingCount(friendCount) + 1;
+        Map<String, Action> actions = new LinkedHashMap<>();
+        actions.put("viewProfile", i -> client.viewProfile(OWNER, OWNER, blackhole(new HashMap<>()), false, false));
+        actions.put("viewProfile+pic", i -> client.viewProfile(1, OWNER, blackhole(new HashMap<>()), true, false));
+        actions.put("listFriends", i -> client.listFriends(1, OWNER, null, blackhole(new Vector<>()), false, false));
+        actions.put("listFriends+tpic", i -> client.listFriends(1, OWNER, null,
+                blackhole(new Vector<>()), true, false));
+        actions.put("viewFriendReq", i -> client.viewFriendReq(OWNER, blackhole(new Vector<>()), false, false));
+        actions.put("inviteFriend+rejectFriend", i -> {
+            int stranger = strangers + i % RESOURCE_COUNT;
+            return client.inviteFriend(stranger, OWNER) | client.rejectFriend(stranger, OWNER);
+        });
+        actions.put("inviteFriend+acceptFriend+thawFriendship", i -> {
+            int stranger = strangers + i % RESOURCE_COUNT;
+            return client.inviteFriend(stranger, OWNER) | client.acceptFriend(stranger, OWNER)
+                    | client.thawFriendship(OWNER, stranger);
+        });
+        actions.put("CreateFriendship+thawFriendship", i -> {
+            int stranger = strangers + i % RESOURCE_COUNT;
+            return client.CreateFriendship(OWNER, stranger) | client.thawFriendship(OWNER, stranger);
+        });
+        actions.put("viewTopKResources", i -> client.viewTopKResources(1, OWNER, 5, blackhole(new Vector<>())));
+        actions.put("getCreatedResources", i -> client.getCreatedResources(OWNER, blackhole(new Vector<>())));
+        actions.put("viewCommentOnResource", i -> client.viewCommentOnResource(1, OWNER, i % RESOURCE_COUNT,
+                blackhole(new Vector<>())));
+        actions.put("postComment+delComment", i -> {
+            int resourceId = i % RESOURCE_COUNT;
+            int manipulationId = COMMENT_COUNT + i;
+            return client.postCommentOnResource(1, OWNER, resourceId, comment(manipulationId))
+                    | client.delCommentOnResource(OWNER, resourceId, manipulationId);
+        });
+        actions.put("queryPendingFriendshipIds", i -> client.queryPendingFriendshipIds(OWNER,
+                blackhole(new Vector<>())));
+        actions.put("queryConfirmedFriendshipIds", i -> client.queryConfirmedFriendshipIds(OWNER,
+                blackhole(new Vector<>())));
+        actions.put("insertEntity(users)", i -> client.insertEntity("users", String.valueOf(1000000 + i),
+                user(1000000 + i), true));
+        return actions;
+    }
+
+    private static int pendingCount(int friendCount) {
+        return friendCount / 10;
+    }
+
+    /**
+     * Loads the owner with the given number of friends, a tenth as many friend requests, and resources with comments
+     * on its wall, plus a few strangers.
+     */
+    private static TestDSClient load(InMemoryTransactionHelper transactionHelper, String layout, int friendCount) {
+        TestDSClient client = new TestDSClient(transactionHelper, layout);
+        int pendingCount = pendingCount(friendCount);
+        int userCount = friendCount + pendingCount + 1 + RESOURCE_COUNT;
+        for (int userId = 0; userId < userCount; userId++) {
+            check(client.insertEntity("users", String.valueOf(userId), user(userId), true));
+        }
+        for (int userId = 1; userId <= friendCount; userId++) {
+            check(client.CreateFriendship(OWNER, userId));
+        }
+        for (int userId = friendCount + 1; userId <= friendCount + pendingCount; userId++) {
+            check(client.inviteFriend(userId, OWNER));
+        }
+        for (int resourceId = 0; resourceId < RESOURCE_COUNT; resourceId++) {
+            check(client.insertEntity("resources", String.valueOf(resourceId), resource(resourceId), false));
+            for (int manipulationId = 0; manipulationId < COMMENT_COUNT; manipulationId++) {
+                check(client.postCommentOnResource(1, OWNER, resourceId, comment(manipulationId)));
+            }
+        }
+        return client;
+    }
+
+    private static void check(int result) {
+        if (result != 0) {
+            throw new IllegalStateException("Loading failed with " + result);
+        }
+    }
+
+    /**
+     * Returns a user with every attribute BG loads.
+     */
+    private static HashMap<String, ByteIterator> user(int userId) {
+        HashMap<String, ByteIterator> values = new HashMap<>();
+        for (String field : new String[]{"username", "pw", "fname", "lname", "gender", "dob", "jdate", "ldate",
+                "address", "email", "tel"}) {
+            values.put(field, new StringByteIterator(field + "-" + userId));
+        }
+        values.put("userid", new StringByteIterator(String.valueOf(userId)));
+        values.put("pic", new ObjectByteIterator(new byte[IMAGE_SIZE]));
+        values.put("tpic", new ObjectByteIterator(new byte[IMAGE_SIZE / 16]));
+        return values;
+    }
+
+    private static HashMap<String, ByteIterator> resource(int resourceId) {
+        HashMap<String, ByteIterator> values = new HashMap<>();
+        values.put("rid", new StringByteIterator(String.valueOf(resourceId)));
+        values.put("creatorid", new StringByteIterator(String.valueOf(OWNER)));
+        values.put("walluserid", new StringByteIterator(String.valueOf(OWNER)));
+        values.put("type", new StringByteIterator("post"));
+        values.put("body", new StringByteIterator("Lorem ipsum dolor sit amet, consectetur adipiscing elit"));
+        values.put("doc", new StringByteIterator("2016/01/01"));
+        return values;
+    }
+
+    private static HashMap<String, ByteIterator> comment(int manipulationId) {
+        HashMap<String, ByteIterator> values = new HashMap<>();
+        values.put("mid", new StringByteIterator(String.valueOf(manipulationId)));
+        values.put("modifierid", new StringByteIterator("1"));
+        values.put("type", new StringByteIterator("comment"));
+        values.put("content", new StringByteIterator("Comment number " + manipulationId));
+        values.put("timestamp", new StringByteIterator("2016/01/02"));
+        return values;
+    }
+}
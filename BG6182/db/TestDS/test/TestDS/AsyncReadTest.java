@@ -0,0 +1,110 @@
+package TestDS;
+
+import com.google.gson.JsonObject;
+import de.zib.scalaris.NotFoundException;
+import edu.usc.bg.base.ByteIterator;
+import edu.usc.bg.base.StringByteIterator;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Vector;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class AsyncReadTest implements TestDSClientConstants {
+    private static final int USER_COUNT = 1000;
+    private static final int LATENCY_MICROS = 2000;
+    private final ExecutorService executor = Executors.newFixedThreadPool(4);
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testLargeReadsSendBatchesConcurrently() throws Exception {
+        InMemoryTransactionHelper transactionHelper =
+                new InMemoryTransactionHelper(LATENCY_MICROS, true, null, executor);
+        List<String> userIds = writeUsers(transactionHelper);
+
+        long roundTrips = transactionHelper.getRoundTrips();
+        List<JsonObject> users = transactionHelper.readUsers(userIds);
+
+        assertThat(transactionHelper.getRoundTrips() - roundTrips, is(4L));
+        assertTrue(transactionHelper.getMaxInFlight() > 1);
+        for (int i = 0; i < USER_COUNT; i++) {
+            assertThat(users.get(i).get("userid").getAsString(), is(String.valueOf(i)));
+        }
+    }
+
+    @Test
+    public void testReadsInTransactionStayOnCallingThread() throws Exception {
+        InMemoryTransactionHelper transactionHelper =
+                new InMemoryTransactionHelper(LATENCY_MICROS, true, null, executor);
+        List<String> userIds = writeUsers(transactionHelper);
+
+        List<JsonObject> users = transactionHelper.runInTransaction(() -> transactionHelper.readUsers(userIds));
+
+        assertThat(users.size(), is(USER_COUNT));
+        assertThat(transactionHelper.getMaxInFlight(), is(1));
+    }
+
+    @Test
+    public void testLargeReadOfMissingKeyThrowsNotFound() throws Exception {
+        InMemoryTransactionHelper transactionHelper = new InMemoryTransactionHelper(0, true, null, executor);
+        List<String> userIds = writeUsers(transactionHelper);
+        userIds.add(String.valueOf(USER_COUNT));
+
+        long roundTrips = transactionHelper.getRoundTrips();
+        try {
+            transactionHelper.readUsers(userIds);
+            fail();
+        } catch (NotFoundException expected) {
+            assertThat(transactionHelper.getRoundTrips() - roundTrips, is(4L));
+        }
+    }
+
+    @Test
+    public void testListFriendsBeyondOneRequestList() throws Exception {
+        int friendCount = 600;
+        TestDSClient client = new TestDSClient(new InMemoryTransactionHelper(0, true, null, executor),
+                LAYOUT_NORMALIZED);
+        for (int i = 0; i <= friendCount; i++) {
+            HashMap<String, ByteIterator> values = new HashMap<>();
+            values.put("userid", new StringByteIterator(String.valueOf(i)));
+            assertThat(client.insertEntity("users", String.valueOf(i), values, false), is(0));
+        }
+        for (int i = 1; i <= friendCount; i++) {
+            assertThat(client.CreateFriendship(0, i), is(0));
+        }
+
+        Vector<HashMap<String, ByteIterator>> friends = new Vector<>();
+        assertThat(client.listFriends(0, 0, null, friends, false, false), is(0));
+        assertThat(friends.size(), is(friendCount));
+        for (int i = 0; i < friendCount; i++) {
+            assertThat(friends.get(i).get("userid").toString(), is(String.valueOf(i + 1)));
+        }
+    }
+
+    private static List<String> writeUsers(InMemoryTransactionHelper transactionHelper) throws Exception {
+        List<String> userIds = new ArrayList<>(USER_COUNT);
+        transactionHelper.runInTransaction(() -> {
+            for (int i = 0; i < USER_COUNT; i++) {
+                JsonObject user = new JsonObject();
+                user.addProperty("userid", String.valueOf(i));
+                transactionHelper.writeUser(String.valueOf(i), user);
+                userIds.add(String.valueOf(i));
+            }
+            return null;
+        });
+        return userIds;
+    }
+}
@@ -0,0 +1,76 @@
+package TestDS;
+
+import edu.usc.bg.base.ByteIterator;
+import edu.usc.bg.base.ObjectByteIterator;
+import edu.usc.bg.base.StringByteIterator;
+import org.junit.Test;
+
+import java.util.HashMap;
+
+import static TestDS.NormalizedUserStoreTest.IMAGE_SIZE;
+import static TestDS.NormalizedUserStoreTest.USER_COUNT;
+import static TestDS.NormalizedUserStoreTest.assertSameResults;
+import static TestDS.NormalizedUserStoreTest.resource;
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class BulkLoaderTest implements TestDSClientConstants {
+    private static final int TOP_K = Integer.parseInt(TOP_K_PROPERTY_DEFAULT);
+
+    @Test
+    public void testBulkLoadMatchesLoadByActions() throws Exception {
+        for (String layout : new String[]{LAYOUT_DOCUMENT, LAYOUT_NORMALIZED, LAYOUT_NATIVE}) {
+            InMemoryTransactionHelper expectedHelper = new InMemoryTransactionHelper();
+            TestDSClient expected = new TestDSClient(expectedHelper, layout);
+            load(expected);
+
+            InMemoryTransactionHelper bulkHelper = new InMemoryTransactionHelper();
+            BulkLoader bulkLoader = new BulkLoader(bulkHelper,
+                    TestDSClient.createUserStore(layout, false, bulkHelper), TOP_K, null);
+            TestDSClient loader = new TestDSClient(bulkHelper, layout, false, bulkLoader);
+            load(loader);
+            loader.cleanup(false);
+
+            assertTrue(layout, bulkHelper.getRoundTrips() * 10 < expectedHelper.getRoundTrips());
+            assertSameResults(expected, new TestDSClient(bulkHelper, layout));
+        }
+    }
+
+    @Test
+    public void testUsersAreWrittenByLastClient() throws Exception {
+        InMemoryTransactionHelper transactionHelper = new InMemoryTransactionHelper();
+        BulkLoader bulkLoader = new BulkLoader(transactionHelper,
+                TestDSClient.createUserStore(LAYOUT_NORMALIZED, true, transactionHelper), TOP_K, null);
+        TestDSClient first = new TestDSClient(transactionHelper, LAYOUT_NORMALIZED, true, bulkLoader);
+        TestDSClient second = new TestDSClient(transactionHelper, LAYOUT_NORMALIZED, true, bulkLoader);
+        load(first);
+
+        first.cleanup(false);
+        assertThat(first.viewProfile(0, 0, new HashMap<>(), false, false), is(-1));
+        second.cleanup(false);
+
+        HashMap<String, ByteIterator> profile = new HashMap<>();
+        assertThat(second.viewProfile(0, 0, profile, false, false), is(0));
+        assertThat(profile.get("friendcount").toString(), is("2"));
+        assertThat(new TestDSClient(transactionHelper, LAYOUT_NORMALIZED, true).getInitialStats().get("usercount"),
+                is(String.valueOf(USER_COUNT)));
+    }
+
+    private static void load(TestDSClient client) {
+        for (int i = 0; i < USER_COUNT; i++) {
+            HashMap<String, ByteIterator> values = new HashMap<>();
+            values.put("userid", new StringByteIterator(String.valueOf(i)));
+            values.put("username", new StringByteIterator("user" + i));
+            values.put("pic", new ObjectByteIterator(new byte[IMAGE_SIZE]));
+            values.put("tpic", new ObjectByteIterator(new byte[IMAGE_SIZE / 16]));
+            assertThat(client.insertEntity("users", String.valueOf(i), values, true), is(0));
+        }
+        for (int i = 0; i < USER_COUNT; i++) {
+            assertThat(client.CreateFriendship(i, (i + 1) % USER_COUNT), is(0));
+            assertThat(client.inviteFriend(i, (i + 2) % USER_COUNT), is(0));
+            assertThat(client.insertEntity("resources", String.valueOf(i), resource(i, i, (i + 3) % USER_COUNT),
+                    false), is(0));
+        }
+    }
+}
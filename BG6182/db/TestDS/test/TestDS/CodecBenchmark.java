@@ -0,0 +1,129 @@
+package TestDS;
+
+import com.ericsson.otp.erlang.OtpErlangDecodeException;
+import com.ericsson.otp.erlang.OtpInputStream;
+import com.ericsson.otp.erlang.OtpOutputStream;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+import de.zib.scalaris.ErlangValue;
+import edu.usc.bg.benchmark.BenchmarkHarness;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+import static edu.usc.bg.benchmark.BenchmarkHarness.blackhole;
+
+/**
+ * Compares the codecs on BG's user and resource records: encode and decode time including the conversion to the
+ * Erlang external format, and bytes on the wire. The times are the mean and standard deviation over the measured
+ * iterations of {@link BenchmarkHarness}, each of which encodes and decodes the record the given number of times.
+ * Run with java -cp ... TestDS.CodecBenchmark [operations per iteration].
+ */
+public class CodecBenchmark {
+    private static final int DEFAULT_ITERATIONS = 20000;
+
+    public static void main(String[] args) throws Exception {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_ITERATIONS;
+        JsonElement[] records = {userRecord(0, 0), userRecord(100, 0), userRecord(100, 12 * 1024),
+                resourceRecord(20)};
+        String[] names = {"user", "user+100 friends", "user+100 friends+12KB image", "resource+20 comments"};
+        ValueCodec[] codecs = {new JsonCodec(), new BinaryCodec()};
+
+        System.out.println(String.format("%-30s %-12s %10s %16s %16s", "record", "codec", "bytes", "encode ns",
+                "decode ns"));
+        for (int r = 0; r < records.length; r++) {
+            for (ValueCodec codec : codecs) {
+                JsonElement record = records[r];
+                BenchmarkHarness.Result result = BenchmarkHarness.measure(() -> run(codec, record, iterations));
+                System.out.println(String.format("%-30s %-12s %10.0f %16s %16s", names[r],
+                        codec.getClass().getSimpleName(), result.mean(0), result.format(1, 0), result.format(2, 0)));
+            }
+        }
+    }
+
+    /**
+     * Encodes and decodes a record repeatedly.
+     *
+     * @return Bytes on the wire, average encode and decode time in nanoseconds.
+     */
+    private static double[] run(ValueCodec codec, JsonElement record, int iterations)
+            throws OtpErlangDecodeException {
+        byte[] wire = toWire(codec.encode(record));
+        long st = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            blackhole(toWire(codec.encode(record)));
+        }
+        double encodeNanos = (double) (System.nanoTime() - st) / iterations;
+
+        st = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            blackhole(codec.decode(fromWire(wire)));
+        }
+        double decodeNanos = (double) (System.nanoTime() - st) / iterations;
+
+        if (!record.equals(codec.decode(fromWire(wire)))) {
+            throw new IllegalStateException(codec.getClass().getSimpleName() + " changed the record");
+        }
+        return new double[]{wire.length, encodeNanos, decodeNanos};
+    }
+
+    static byte[] toWire(Object encoded) {
+        return new OtpOutputStream(ErlangValue.convertToErlang(encoded)).toByteArray();
+    }
+
+    static ErlangValue fromWire(byte[] wire) throws OtpErlangDecodeException {
+        return new ErlangValue(new OtpInputStream(wire).read_any());
+    }
+
+    /**
+     * Returns a user in the document layout, as loaded by BG.
+     */
+    static JsonObject userRecord(int friendCount, int imageSize) {
+        JsonObject user = new JsonObject();
+        for (String field : new String[]{"userid", "username", "pw", "fname", "lname", "gender", "dob", "jdate",
+                "ldate", "address", "email", "tel"}) {
+            user.addProperty(field, field + "-" + ThreadLocalRandom.current().nextInt(1000000));
+        }
+        if (imageSize > 0) {
+            byte[] image = new byte[imageSize];
+            ThreadLocalRandom.current().nextBytes(image);
+            user.add("pic", ImageUtils.toJsonPrimitive(image));
+            user.add("tpic", ImageUtils.toJsonPrimitive(new byte[imageSize / 16]));
+        }
+        JsonArray friends = new JsonArray();
+        for (int i = 0; i < friendCount; i++) {
+            friends.add(new JsonPrimitive(String.valueOf(ThreadLocalRandom.current().nextInt(100000))));
+        }
+        user.add("confirmedFriends", friends);
+        user.add("pendingFriends", new JsonArray());
+        user.add("resources", new JsonArray());
+        user.add("createdResources", new JsonArray());
+        return user;
+    }
+
+    /**
+     * Returns a resource with comments, as written by BG.
+     */
+    static JsonObject resourceRecord(int commentCount) {
+        JsonObject resource = new JsonObject();
+        resource.addProperty("rid", "4711");
+        resource.addProperty("creatorid", "12");
+        resource.addProperty("walluserid", "13");
+        resource.addProperty("type", "post");
+        resource.addProperty("body", "Lorem ipsum dolor sit amet, consectetur adipiscing elit");
+        resource.addProperty("doc", "2016/01/01");
+        JsonObject manipulations = new JsonObject();
+        for (int i = 0; i < commentCount; i++) {
+            JsonObject manipulation = new JsonObject();
+            manipulation.addProperty("mid", String.valueOf(i));
+            manipulation.addProperty("modifierid", "14");
+            manipulation.addProperty("type", "comment");
+            manipulation.addProperty("content", "Comment number " + i);
+            manipulation.addProperty("timestamp", "2016/01/02");
+            manipulations.add(String.valueOf(i), manipulation);
+        }
+        resource.add("manipulation", manipulations);
+        return resource;
+    }
+}
@@ -0,0 +1,350 @@
+package TestDS;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
+import de.zib.scalaris.AbortException;
+import de.zib.scalaris.ErlangValue;
+import de.zib.scalaris.NotFoundException;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
+
+/**
+ * Local stand-in for a Scalaris ring. Values are kept as JSON strings like the real binding stores them, images as
+ * raw bytes, and every
+ * round trip can be delayed to emulate the network. Transactions are optimistic: a commit aborts if any key read by
+ * the transaction has been written since. Native lists and numbers are kept as JSON; list and number operations are
+ * applied at commit without being read, like Scalaris does on the server.
+ */
+public class InMemoryTransactionHelper extends TransactionHelper {
+    private static final JsonParser JSON_PARSER = new JsonParser();
+    private static final int WRITE_BATCH_SIZE = 256;
+    private final ConcurrentHashMap<String, Versioned> store = new ConcurrentHashMap<>();
+    private final ThreadLocal<Tx> tx = new ThreadLocal<>();
+    private final AtomicLong roundTrips = new AtomicLong();
+    private final AtomicLong aborts = new AtomicLong();
+    private final AtomicLong bytesWritten = new AtomicLong();
+    private final AtomicLong bytesRead = new AtomicLong();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+    private final long latencyNanos;
+
+    private static final class Versioned {
+        private final Object value;
+        private final long version;
+
+        private Versioned(Object value, long version) {
+            this.value = value;
+            this.version = version;
+        }
+    }
+
+    private static final class Tx {
+        private final Map<String, Long> reads = new HashMap<>();
+        private final Map<String, Object> writes = new LinkedHashMap<>();
+        private final Map<String, ServerUpdate> serverUpdates = new LinkedHashMap<>();
+    }
+
+    private static final class ServerUpdate {
+        private Function<JsonElement, JsonElement> change = Function.identity();
+        private long bytes;
+    }
+
+    /**
+     * Creates a stand-in without simulated latency.
+     */
+    public InMemoryTransactionHelper() {
+        this(0, true);
+    }
+
+    /**
+     * Creates a stand-in which delays every round trip.
+     *
+     * @param latencyMicros Simulated round trip time in microseconds.
+     * @param transactional If true, multi-key actions run in optimistic transactions.
+     */
+    public InMemoryTransactionHelper(long latencyMicros, boolean transactional) {
+        this(latencyMicros, transactional, null);
+    }
+
+    /**
+     * Creates a stand-in which delays every round trip and caches reads.
+     *
+     * @param latencyMicros Simulated round trip time in microseconds.
+     * @param transactional If true, multi-key actions run in optimistic transactions.
+     * @param cache         Cache of values read, or null.
+     */
+    public InMemoryTransactionHelper(long latencyMicros, boolean transactional, ReadCache cache) {
+        this(latencyMicros, transactional, cache, null);
+    }
+
+    /**
+     * Creates a stand-in which delays every round trip, caches reads and reads asynchronously.
+     *
+     * @param latencyMicros Simulated round trip time in microseconds.
+     * @param transactional If true, multi-key actions run in optimistic transactions.
+     * @param cache         Cache of values read, or null.
+     * @param executor      Executor for asynchronous reads, or null.
+     */
+    public InMemoryTransactionHelper(long latencyMicros, boolean transactional, ReadCache cache, Executor executor) {
+        this(latencyMicros, transactional, cache, executor, new RetryPolicy());
+    }
+
+    /**
+     * Creates a stand-in which delays every round trip, caches reads, reads asynchronously and retries aborted
+     * transactions as the given policy says.
+     *
+     * @param latencyMicros Simulated round trip time in microseconds.
+     * @param transactional If true, multi-key actions run in optimistic transactions.
+     * @param cache         Cache of values read, or null.
+     * @param executor      Executor for asynchronous reads, or null.
+     * @param retryPolicy   When to retry aborted transactions.
+     */
+    public InMemoryTransactionHelper(long latencyMicros, boolean transactional, ReadCache cache, Executor executor,
+                                     RetryPolicy retryPolicy) {
+        this(latencyMicros, transactional, cache, executor, retryPolicy,
+                cache != null ? ReadConsistency.CACHED : ReadConsistency.QUORUM);
+    }
+
+    /**
+     * Creates a stand-in which delays every round trip, caches reads, reads asynchronously, retries aborted
+     * transactions as the given policy says and runs read-only actions with the given consistency.
+     *
+     * @param latencyMicros   Simulated round trip time in microseconds.
+     * @param transactional   If true, multi-key actions run in optimistic transactions.
+     * @param cache           Cache of values read, or null.
+     * @param executor        Executor for asynchronous reads, or null.
+     * @param retryPolicy     When to retry aborted transactions.
+     * @param readConsistency How read-only actions read.
+     */
+    public InMemoryTransactionHelper(long latencyMicros, boolean transactional, ReadCache cache, Executor executor,
+                                     RetryPolicy retryPolicy, ReadConsistency readConsistency) {
+        super(null, transactional, new JsonCodec(), cache, executor, retryPolicy, readConsistency);
+        this.latencyNanos = TimeUnit.MICROSECONDS.toNanos(latencyMicros);
+    }
+
+    /**
+     * Returns the number of round trips issued so far.
+     *
+     * @return Round trip count.
+     */
+    public long getRoundTrips() {
+        return roundTrips.get();
+    }
+
+    /**
+     * Returns the largest number of round trips which were in flight at the same time.
+     *
+     * @return Maximum concurrent round trips.
+     */
+    public int getMaxInFlight() {
+        return maxInFlight.get();
+    }
+
+    /**
+     * Returns the number of aborted commits so far.
+     *
+     * @return Abort count.
+     */
+    public long getAborts() {
+        return aborts.get();
+    }
+
+    /**
+     * Returns the size of all values written so far.
+     *
+     * @return Written characters of JSON values and bytes of images.
+     */
+    public long getBytesWritten() {
+        return bytesWritten.get();
+    }
+
+    /**
+     * Returns the size of all values read from the store so far.
+     *
+     * @return Read characters of JSON values and bytes of images.
+     */
+    public long getBytesRead() {
+        return bytesRead.get();
+    }
+
+    @Override
+    protected void beginTransaction() {
+        tx.set(new Tx());
+    }
+
+    @Override
+    protected void endTransaction(final boolean validateReads) throws AbortException {
+        Tx current = tx.get();
+        tx.remove();
+        if (current.writes.isEmpty() && current.serverUpdates.isEmpty() && !validateReads) {
+            return;
+        }
+
+        roundTrip(0, current.writes.size() + current.serverUpdates.size());
+        synchronized (store) {
+            for (Map.Entry<String, Long> entry : current.reads.entrySet()) {
+                if (version(store.get(entry.getKey())) != entry.getValue()) {
+                    aborts.incrementAndGet();
+                    throw new AbortException(entry.getKey());
+                }
+            }
+            current.writes.forEach((key, value) -> put(key, value, size(value)));
+            current.serverUpdates.forEach((key, update) -> put(key, update.change.apply(readValue(key)).toString(),
+                    update.bytes));
+        }
+    }
+
+    @Override
+    protected void abortTransaction() {
+        tx.remove();
+    }
+
+    @Override
+    protected List<ErlangValue> fetchValues(final List<String> keys) throws NotFoundException {
+        List<ErlangValue> values = new ArrayList<>(keys.size());
+        if (keys.isEmpty()) {
+            return values;
+        }
+
+        roundTrip(keys.size(), 0);
+        Tx current = tx.get();
+        long bytes = 0;
+        for (String key : keys) {
+            checkNoServerUpdate(current, key);
+            if (current != null && current.writes.containsKey(key)) {
+                values.add(new ErlangValue(current.writes.get(key)));
+                continue;
+            }
+            Versioned value = store.get(key);
+            if (current != null) {
+                current.reads.putIfAbsent(key, version(value));
+            }
+            if (value == null) {
+                throw new NotFoundException(key);
+            }
+            bytes += size(value.value);
+            values.add(new ErlangValue(value.value));
+        }
+        bytesRead.addAndGet(bytes);
+        countBytesReceived(bytes);
+        return values;
+    }
+
+    @Override
+    protected void storeValue(final String key, final Object value) {
+        Object stored = toStored(value);
+        Tx current = tx.get();
+        if (current != null) {
+            current.writes.put(key, stored);
+            current.serverUpdates.remove(key);
+        } else {
+            roundTrip(0, 1);
+            synchronized (store) {
+                put(key, stored, size(stored));
+            }
+        }
+    }
+
+    @Override
+    protected void storeValues(final Map<String, Object> values) {
+        for (int i = 0; i < values.size(); i += WRITE_BATCH_SIZE) {
+            roundTrip(0, Math.min(WRITE_BATCH_SIZE, values.size() - i));
+        }
+        synchronized (store) {
+            values.forEach((key, value) -> {
+                Object stored = toStored(value);
+                put(key, stored, size(stored));
+            });
+        }
+    }
+
+    @Override
+    protected void storeAddDelOnList(final String key, final List<String> toAdd, final List<String> toRemove) {
+        updateOnServer(key, value -> {
+            JsonArray ids = value != null ? value.getAsJsonArray() : new JsonArray();
+            toAdd.forEach(id -> ids.add(new JsonPrimitive(id)));
+            toRemove.forEach(id -> ids.remove(new JsonPrimitive(id)));
+            return ids;
+        }, toJsonArray(toAdd).toString().length() + toJsonArray(toRemove).toString().length());
+    }
+
+    @Override
+    protected void storeAddOnNr(final String key, final long delta) {
+        updateOnServer(key, value -> new JsonPrimitive((value != null ? value.getAsLong() : 0) + delta),
+                String.valueOf(delta).length());
+    }
+
+    private void updateOnServer(String key, Function<JsonElement, JsonElement> change, long bytes) {
+        Tx current = tx.get();
+        if (current != null) {
+            ServerUpdate update = current.serverUpdates.computeIfAbsent(key, k -> new ServerUpdate());
+            update.change = update.change.andThen(change);
+            update.bytes += bytes;
+        } else {
+            roundTrip(0, 1);
+            synchronized (store) {
+                put(key, change.apply(readValue(key)).toString(), bytes);
+            }
+        }
+    }
+
+    private JsonElement readValue(String key) {
+        Versioned value = store.get(key);
+        return value != null ? JSON_PARSER.parse((String) value.value) : null;
+    }
+
+    private static void checkNoServerUpdate(Tx current, String key) {
+        if (current != null && current.serverUpdates.containsKey(key)) {
+            throw new IllegalStateException("Cannot read " + key + " after changing it on the server");
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Object toStored(Object value) {
+        return value instanceof List ? toJsonArray((List<String>) value).toString()
+                : value instanceof byte[] ? value : value.toString();
+    }
+
+    private static JsonArray toJsonArray(List<String> ids) {
+        JsonArray jsonArray = new JsonArray();
+        ids.forEach(id -> jsonArray.add(new JsonPrimitive(id)));
+        return jsonArray;
+    }
+
+    private void put(String key, Object value, long bytes) {
+        bytesWritten.addAndGet(bytes);
+        store.put(key, new Versioned(value, version(store.get(key)) + 1));
+    }
+
+    private static long size(Object value) {
+        return value instanceof byte[] ? ((byte[]) value).length : ((String) value).length();
+    }
+
+    private static long version(Versioned value) {
+        return value == null ? -1 : value.version;
+    }
+
+    private void roundTrip(int reads, int writes) {
+        long start = System.nanoTime();
+        roundTrips.incrementAndGet();
+        maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+        if (latencyNanos > 0) {
+            LockSupport.parkNanos(latencyNanos);
+        }
+        inFlight.decrementAndGet();
+        countRequest(reads, writes, System.nanoTime() - start);
+    }
+}
@@ -0,0 +1,64 @@
+package TestDS;
+
+import edu.usc.bg.base.ByteIterator;
+import edu.usc.bg.base.StringByteIterator;
+import org.junit.Test;
+
+import java.util.HashMap;
+
+import static TestDS.NormalizedUserStoreTest.resource;
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class InitialStatsTest implements TestDSClientConstants {
+    private static final int USER_COUNT = 4100;
+
+    @Test
+    public void testStatsCoverAllUsersInFewRoundTrips() throws Exception {
+        for (String layout : new String[]{LAYOUT_DOCUMENT, LAYOUT_NORMALIZED, LAYOUT_NATIVE}) {
+            for (boolean counters : new boolean[]{false, true}) {
+                if (counters && layout.equals(LAYOUT_DOCUMENT)) {
+                    continue;
+                }
+                InMemoryTransactionHelper transactionHelper = new InMemoryTransactionHelper();
+                TestDSClient client = load(transactionHelper, layout, counters);
+
+                long roundTrips = transactionHelper.getRoundTrips();
+                HashMap<String, String> stats = client.getInitialStats();
+
+                assertThat(layout, stats.get("usercount"), is(String.valueOf(USER_COUNT)));
+                assertThat(layout, stats.get("avgfriendsperuser"), is("2"));
+                assertThat(layout, stats.get("avgpendingperuser"), is("1"));
+                assertThat(layout, stats.get("resourcesperuser"), is("2"));
+                assertTrue(layout, transactionHelper.getRoundTrips() - roundTrips < 40);
+            }
+        }
+    }
+
+    @Test
+    public void testEmptyStore() throws Exception {
+        HashMap<String, String> stats = new TestDSClient(new InMemoryTransactionHelper()).getInitialStats();
+
+        assertThat(stats.get("usercount"), is("0"));
+        assertThat(stats.get("avgfriendsperuser"), is("0"));
+    }
+
+    private static TestDSClient load(InMemoryTransactionHelper transactionHelper, String layout, boolean counters) {
+        TestDSClient client = new TestDSClient(transactionHelper, layout, counters);
+        for (int i = 0; i < USER_COUNT; i++) {
+            HashMap<String, ByteIterator> values = new HashMap<>();
+            values.put("userid", new StringByteIterator(String.valueOf(i)));
+            assertThat(client.insertEntity("users", String.valueOf(i), values, false), is(0));
+        }
+        for (int i = 0; i < USER_COUNT; i++) {
+            assertThat(client.CreateFriendship(i, (i + 1) % USER_COUNT), is(0));
+            assertThat(client.inviteFriend(i, (i + 2) % USER_COUNT), is(0));
+            for (int j = 0; j < 2; j++) {
+                String resourceId = String.valueOf(2 * i + j);
+                assertThat(client.insertEntity("resources", resourceId, resource(2 * i + j, i, i), false), is(0));
+            }
+        }
+        return client;
+    }
+}
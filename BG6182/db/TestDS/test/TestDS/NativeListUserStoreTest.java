@@ -0,0 +1,109 @@
+package TestDS;
+
+import edu.usc.bg.base.ByteIterator;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Vector;
+import java.util.concurrent.CountDownLatch;
+
+import static TestDS.NormalizedUserStoreTest.USER_COUNT;
+import static TestDS.NormalizedUserStoreTest.assertSameResults;
+import static TestDS.NormalizedUserStoreTest.load;
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+public class NativeListUserStoreTest implements TestDSClientConstants {
+    private static final int THREAD_COUNT = 4;
+
+    @Test
+    public void testLayoutsReturnSameResults() throws Exception {
+        TestDSClient document = load(new InMemoryTransactionHelper(), LAYOUT_DOCUMENT);
+        TestDSClient nativeLists = load(new InMemoryTransactionHelper(), LAYOUT_NATIVE);
+
+        assertSameResults(document, nativeLists);
+    }
+
+    @Test
+    public void testMigratedUsersMatchDocumentLayout() throws Exception {
+        InMemoryTransactionHelper transactionHelper = new InMemoryTransactionHelper();
+        TestDSClient document = load(transactionHelper, LAYOUT_DOCUMENT);
+
+        UserStore target = new NativeListUserStore(transactionHelper);
+        assertThat(LayoutMigration.migrate(transactionHelper, target), is(USER_COUNT));
+        assertSameResults(document, new TestDSClient(transactionHelper, LAYOUT_NATIVE));
+    }
+
+    @Test
+    public void testFriendshipActionsOnlyReadWhatTheyCheck() throws Exception {
+        InMemoryTransactionHelper transactionHelper = new InMemoryTransactionHelper();
+        TestDSClient client = load(transactionHelper, LAYOUT_NATIVE);
+
+        /** The profile of the invitee, then the commit. */
+        long roundTrips = transactionHelper.getRoundTrips();
+        assertThat(client.inviteFriend(2, 3), is(0));
+        assertThat(transactionHelper.getRoundTrips() - roundTrips, is(2L));
+
+        /** Both profiles and the pending list the invitation is removed from, then the commit. */
+        roundTrips = transactionHelper.getRoundTrips();
+        assertThat(client.acceptFriend(2, 3), is(0));
+        assertThat(transactionHelper.getRoundTrips() - roundTrips, is(4L));
+
+        /** Both friend lists, then the commit. */
+        roundTrips = transactionHelper.getRoundTrips();
+        assertThat(client.thawFriendship(2, 3), is(0));
+        assertThat(transactionHelper.getRoundTrips() - roundTrips, is(3L));
+    }
+
+    @Test
+    public void testFriendshipActionsOnMissingUserFail() throws Exception {
+        TestDSClient client = load(new InMemoryTransactionHelper(), LAYOUT_NATIVE);
+
+        assertThat(client.inviteFriend(1, USER_COUNT), is(-1));
+        assertThat(client.acceptFriend(USER_COUNT, 1), is(-1));
+        assertThat(client.thawFriendship(1, USER_COUNT), is(-1));
+    }
+
+    @Test
+    public void testCounterOnlyChangesWithList() throws Exception {
+        TestDSClient client = load(new InMemoryTransactionHelper(), LAYOUT_NATIVE, true);
+        HashMap<String, ByteIterator> before = new HashMap<>();
+        assertThat(client.viewProfile(2, 2, before, false, false), is(0));
+
+        assertThat(client.rejectFriend(4, 2), is(0));
+        assertThat(client.thawFriendship(2, 4), is(0));
+
+        HashMap<String, ByteIterator> after = new HashMap<>();
+        assertThat(client.viewProfile(2, 2, after, false, false), is(0));
+        assertThat(count(after, "pendingcount"), is(count(before, "pendingcount")));
+        assertThat(count(after, "friendcount"), is(count(before, "friendcount")));
+    }
+
+    @Test
+    public void testConcurrentInvitesToHotUserAreNotLost() throws Exception {
+        InMemoryTransactionHelper transactionHelper = new InMemoryTransactionHelper(200, true);
+        TestDSClient client = load(transactionHelper, LAYOUT_NATIVE);
+        long aborts = transactionHelper.getAborts();
+
+        final CountDownLatch done = new CountDownLatch(THREAD_COUNT);
+        for (int t = 0; t < THREAD_COUNT; t++) {
+            final int first = t;
+            new Thread(() -> {
+                for (int i = 1 + first; i < USER_COUNT; i += THREAD_COUNT) {
+                    client.inviteFriend(i, 0);
+                }
+                done.countDown();
+            }).start();
+        }
+        done.await();
+
+        assertThat(transactionHelper.getAborts() - aborts, is(0L));
+        Vector<Integer> pendingIds = new Vector<>();
+        client.queryPendingFriendshipIds(0, pendingIds);
+        assertThat(pendingIds.size(), is(USER_COUNT - 1));
+    }
+
+    private static int count(HashMap<String, ByteIterator> profile, String name) {
+        return Integer.parseInt(new String(profile.get(name).toArray()));
+    }
+}
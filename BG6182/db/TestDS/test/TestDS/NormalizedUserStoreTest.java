@@ -0,0 +1,164 @@
+package TestDS;
+
+import edu.usc.bg.base.ByteIterator;
+import edu.usc.bg.base.ObjectByteIterator;
+import edu.usc.bg.base.StringByteIterator;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Vector;
+import java.util.concurrent.CountDownLatch;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class NormalizedUserStoreTest implements TestDSClientConstants {
+    static final int USER_COUNT = 20;
+    static final int IMAGE_SIZE = 8192;
+
+    @Test
+    public void testLayoutsReturnSameResults() throws Exception {
+        TestDSClient document = load(new InMemoryTransactionHelper(), LAYOUT_DOCUMENT);
+        TestDSClient normalized = load(new InMemoryTransactionHelper(), LAYOUT_NORMALIZED);
+
+        assertSameResults(document, normalized);
+    }
+
+    @Test
+    public void testMigratedUsersMatchDocumentLayout() throws Exception {
+        InMemoryTransactionHelper transactionHelper = new InMemoryTransactionHelper();
+        TestDSClient document = load(transactionHelper, LAYOUT_DOCUMENT);
+
+        UserStore target = new NormalizedUserStore(transactionHelper);
+        assertThat(LayoutMigration.migrate(transactionHelper, target), is(USER_COUNT));
+        assertSameResults(document, new TestDSClient(transactionHelper, LAYOUT_NORMALIZED));
+    }
+
+    @Test
+    public void testInviteDoesNotRewriteProfile() throws Exception {
+        InMemoryTransactionHelper documentHelper = new InMemoryTransactionHelper();
+        InMemoryTransactionHelper normalizedHelper = new InMemoryTransactionHelper();
+        TestDSClient document = load(documentHelper, LAYOUT_DOCUMENT);
+        TestDSClient normalized = load(normalizedHelper, LAYOUT_NORMALIZED);
+
+        long documentBytes = documentHelper.getBytesWritten();
+        long normalizedBytes = normalizedHelper.getBytesWritten();
+        assertThat(document.inviteFriend(1, 0), is(0));
+        assertThat(normalized.inviteFriend(1, 0), is(0));
+        documentBytes = documentHelper.getBytesWritten() - documentBytes;
+        normalizedBytes = normalizedHelper.getBytesWritten() - normalizedBytes;
+
+        assertTrue(documentBytes > 2 * normalizedBytes);
+        assertTrue(normalizedBytes < 100);
+    }
+
+    @Test
+    public void testActionsOnDifferentListsOfHotUserDoNotConflict() throws Exception {
+        InMemoryTransactionHelper transactionHelper = new InMemoryTransactionHelper(200, true);
+        TestDSClient client = load(transactionHelper, LAYOUT_NORMALIZED);
+        long aborts = transactionHelper.getAborts();
+
+        final CountDownLatch done = new CountDownLatch(2);
+        new Thread(() -> {
+            for (int i = 1; i < USER_COUNT; i++) {
+                client.inviteFriend(i, 0);
+            }
+            done.countDown();
+        }).start();
+        new Thread(() -> {
+            for (int i = 0; i < USER_COUNT; i++) {
+                client.insertEntity("resources", String.valueOf(1000 + i), resource(1000 + i, 0, 0), false);
+            }
+            done.countDown();
+        }).start();
+        done.await();
+
+        assertThat(transactionHelper.getAborts() - aborts, is(0L));
+        Vector<Integer> pendingIds = new Vector<>();
+        client.queryPendingFriendshipIds(0, pendingIds);
+        assertThat(pendingIds.size(), is(USER_COUNT - 1));
+    }
+
+    static TestDSClient load(InMemoryTransactionHelper transactionHelper, String layout) {
+        return load(transactionHelper, layout, false);
+    }
+
+    static TestDSClient load(InMemoryTransactionHelper transactionHelper, String layout, boolean counters) {
+        TestDSClient client = new TestDSClient(transactionHelper, layout, counters);
+        for (int i = 0; i < USER_COUNT; i++) {
+            HashMap<String, ByteIterator> values = new HashMap<>();
+            values.put("userid", new StringByteIterator(String.valueOf(i)));
+            values.put("username", new StringByteIterator("user" + i));
+            values.put("pic", new ObjectByteIterator(new byte[IMAGE_SIZE]));
+            values.put("tpic", new ObjectByteIterator(new byte[IMAGE_SIZE / 16]));
+            assertThat(client.insertEntity("users", String.valueOf(i), values, true), is(0));
+        }
+        for (int i = 1; i < USER_COUNT / 2; i++) {
+            assertThat(client.CreateFriendship(0, i), is(0));
+            assertThat(client.insertEntity("resources", String.valueOf(i), resource(i, 0, i), false), is(0));
+        }
+        for (int i = USER_COUNT / 2; i < USER_COUNT; i++) {
+            assertThat(client.inviteFriend(i, 1), is(0));
+        }
+        assertThat(client.acceptFriend(USER_COUNT / 2, 1), is(0));
+        assertThat(client.rejectFriend(USER_COUNT / 2 + 1, 1), is(0));
+        assertThat(client.thawFriendship(0, 2), is(0));
+        return client;
+    }
+
+    static HashMap<String, ByteIterator> resource(int resourceId, int wallUserId, int creatorId) {
+        HashMap<String, ByteIterator> values = new HashMap<>();
+        values.put("rid", new StringByteIterator(String.valueOf(resourceId)));
+        values.put("walluserid", new StringByteIterator(String.valueOf(wallUserId)));
+        values.put("creatorid", new StringByteIterator(String.valueOf(creatorId)));
+        values.put("type", new StringByteIterator("post"));
+        return values;
+    }
+
+    static void assertSameResults(TestDSClient expected, TestDSClient actual) {
+        for (int userId = 0; userId < USER_COUNT; userId++) {
+            HashMap<String, ByteIterator> expectedProfile = new HashMap<>();
+            HashMap<String, ByteIterator> actualProfile = new HashMap<>();
+            assertThat(expected.viewProfile(userId, userId, expectedProfile, true, false), is(0));
+            assertThat(actual.viewProfile(userId, userId, actualProfile, true, false), is(0));
+            assertThat(toStrings(actualProfile), is(toStrings(expectedProfile)));
+
+            Vector<HashMap<String, ByteIterator>> expectedFriends = new Vector<>();
+            Vector<HashMap<String, ByteIterator>> actualFriends = new Vector<>();
+            assertThat(expected.listFriends(userId, userId, null, expectedFriends, true, false), is(0));
+            assertThat(actual.listFriends(userId, userId, null, actualFriends, true, false), is(0));
+            assertThat(actualFriends.size(), is(expectedFriends.size()));
+            for (int i = 0; i < expectedFriends.size(); i++) {
+                assertThat(toStrings(actualFriends.get(i)), is(toStrings(expectedFriends.get(i))));
+            }
+
+            Vector<Integer> expectedIds = new Vector<>();
+            Vector<Integer> actualIds = new Vector<>();
+            expected.queryPendingFriendshipIds(userId, expectedIds);
+            actual.queryPendingFriendshipIds(userId, actualIds);
+            assertThat(actualIds, is(expectedIds));
+
+            Vector<HashMap<String, ByteIterator>> expectedResources = new Vector<>();
+            Vector<HashMap<String, ByteIterator>> actualResources = new Vector<>();
+            assertThat(expected.getCreatedResources(userId, expectedResources), is(0));
+            assertThat(actual.getCreatedResources(userId, actualResources), is(0));
+            assertThat(actualResources.size(), is(expectedResources.size()));
+
+            Vector<HashMap<String, ByteIterator>> expectedTop = new Vector<>();
+            Vector<HashMap<String, ByteIterator>> actualTop = new Vector<>();
+            assertThat(expected.viewTopKResources(userId, userId, 5, expectedTop), is(0));
+            assertThat(actual.viewTopKResources(userId, userId, 5, actualTop), is(0));
+            assertThat(actualTop.size(), is(expectedTop.size()));
+            for (int i = 0; i < expectedTop.size(); i++) {
+                assertThat(toStrings(actualTop.get(i)), is(toStrings(expectedTop.get(i))));
+            }
+        }
+    }
+
+    private static HashMap<String, String> toStrings(HashMap<String, ByteIterator> values) {
+        HashMap<String, String> strings = new HashMap<>();
+        values.forEach((key, value) -> strings.put(key, new String(value.toArray())));
+        return strings;
+    }
+}
@@ -0,0 +1,106 @@
+package TestDS;
+
+import com.google.gson.JsonPrimitive;
+import de.zib.scalaris.ErlangValue;
+import edu.usc.bg.base.ByteIterator;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Vector;
+
+import static TestDS.NormalizedUserStoreTest.USER_COUNT;
+import static TestDS.NormalizedUserStoreTest.load;
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsNull.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ReadCacheTest implements TestDSClientConstants {
+    private static final long CAPACITY = 1 << 20;
+    private static final long TTL = 60000;
+
+    @Test
+    public void testHotReadsAreServedFromCache() throws Exception {
+        ReadCache cache = new ReadCache(CAPACITY, TTL);
+        InMemoryTransactionHelper transactionHelper = new InMemoryTransactionHelper(0, true, cache);
+        TestDSClient client = load(transactionHelper, LAYOUT_NORMALIZED);
+
+        assertThat(client.viewProfile(0, 0, new HashMap<>(), true, false), is(0));
+        assertThat(client.listFriends(0, 0, null, new Vector<>(), true, false), is(0));
+        long roundTrips = transactionHelper.getRoundTrips();
+        long hits = cache.getHits();
+        assertThat(client.viewProfile(0, 0, new HashMap<>(), true, false), is(0));
+        assertThat(client.listFriends(0, 0, null, new Vector<>(), true, false), is(0));
+
+        assertThat(transactionHelper.getRoundTrips() - roundTrips, is(0L));
+        assertTrue(cache.getHits() > hits);
+        assertTrue(cache.getHitRatio() > 0);
+    }
+
+    @Test
+    public void testOwnWritesInvalidateEntries() throws Exception {
+        for (String layout : new String[]{LAYOUT_DOCUMENT, LAYOUT_NATIVE}) {
+            ReadCache cache = new ReadCache(CAPACITY, TTL);
+            TestDSClient client = load(new InMemoryTransactionHelper(0, true, cache), layout);
+
+            HashMap<String, ByteIterator> before = new HashMap<>();
+            assertThat(client.viewProfile(0, 0, before, false, false), is(0));
+            assertThat(client.inviteFriend(USER_COUNT - 1, 0), is(0));
+            HashMap<String, ByteIterator> after = new HashMap<>();
+            assertThat(client.viewProfile(0, 0, after, false, false), is(0));
+
+            assertThat(layout, Integer.parseInt(after.get("pendingcount").toString()),
+                    is(Integer.parseInt(before.get("pendingcount").toString()) + 1));
+        }
+    }
+
+    @Test
+    public void testEntriesExpire() throws Exception {
+        ReadCache cache = new ReadCache(CAPACITY, 1);
+        cache.put("k", new ErlangValue("v"), cache.generation("k"));
+        Thread.sleep(5);
+
+        assertThat(cache.get("k"), nullValue());
+    }
+
+    @Test
+    public void testLeastRecentlyUsedEntryIsEvicted() throws Exception {
+        ReadCache cache = new ReadCache(3 * (64 + 2 * 100), TTL);
+        String value = new String(new char[100]);
+        for (String key : new String[]{"a", "b", "c"}) {
+            cache.put(key, new ErlangValue(value), cache.generation(key));
+        }
+        cache.get("a");
+        cache.put("d", new ErlangValue(value), cache.generation("d"));
+
+        assertThat(cache.get("b"), nullValue());
+        assertThat(cache.get("a").stringValue(), is(value));
+        assertThat(cache.get("d").stringValue(), is(value));
+    }
+
+    @Test
+    public void testReadStartedBeforeInvalidationIsNotCached() throws Exception {
+        ReadCache cache = new ReadCache(CAPACITY, TTL);
+        long generation = cache.generation("k");
+        cache.invalidate("k");
+        cache.put("k", new ErlangValue("old"), generation);
+
+        assertThat(cache.get("k"), nullValue());
+    }
+
+    @Test
+    public void testReadOnlyActionRejectsWrites() throws Exception {
+        InMemoryTransactionHelper transactionHelper =
+                new InMemoryTransactionHelper(0, true, new ReadCache(CAPACITY, TTL));
+        try {
+            transactionHelper.runReadOnly(() -> {
+                transactionHelper.write("k", new JsonPrimitive(1));
+                return null;
+            });
+            fail();
+        } catch (IllegalStateException expected) {
+            assertThat(transactionHelper.getBytesWritten(), is(0L));
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package TestDS;
+
+import com.google.gson.JsonObject;
+import edu.usc.bg.base.ByteIterator;
+import edu.usc.bg.base.StringByteIterator;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Vector;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static TestDS.TransactionHelper.ReadConsistency;
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class ReadConsistencyTest implements TestDSClientConstants {
+    private static final long CAPACITY = 1 << 20;
+    private static final long TTL = 60000;
+
+    @Test
+    public void testSerializableRetriesActionWhoseReadsChanged() throws Exception {
+        InMemoryTransactionHelper transactionHelper = helper(ReadConsistency.SERIALIZABLE);
+        load(transactionHelper);
+
+        AtomicInteger runs = new AtomicInteger();
+        String[] names = readWhileChanging(transactionHelper, runs);
+        assertThat(runs.get(), is(2));
+        assertThat(names[0], is("changed"));
+        assertThat(names[1], is("changed"));
+        assertThat(transactionHelper.getAborts(), is(1L));
+    }
+
+    @Test
+    public void testQuorumMayMixPointsInTime() throws Exception {
+        InMemoryTransactionHelper transactionHelper = helper(ReadConsistency.QUORUM);
+        load(transactionHelper);
+
+        AtomicInteger runs = new AtomicInteger();
+        String[] names = readWhileChanging(transactionHelper, runs);
+        assertThat(runs.get(), is(1));
+        assertThat(names[0], is("user0"));
+        assertThat(names[1], is("changed"));
+    }
+
+    @Test
+    public void testOnlyCachedReadsUseTheCache() throws Exception {
+        for (ReadConsistency readConsistency : ReadConsistency.values()) {
+            InMemoryTransactionHelper transactionHelper = new InMemoryTransactionHelper(0, true,
+                    new ReadCache(CAPACITY, TTL), null, new RetryPolicy(), readConsistency);
+            TestDSClient client = load(transactionHelper);
+
+            assertThat(client.listFriends(0, 0, null, new Vector<>(), false, false), is(0));
+            long roundTrips = transactionHelper.getRoundTrips();
+            assertThat(client.listFriends(0, 0, null, new Vector<>(), false, false), is(0));
+            long expected = readConsistency == ReadConsistency.CACHED ? 0
+                    : readConsistency == ReadConsistency.SERIALIZABLE ? 3 : 2;
+            assertThat(readConsistency.name(), transactionHelper.getRoundTrips() - roundTrips, is(expected));
+        }
+    }
+
+    @Test
+    public void testModesNeedTheirPrerequisites() throws Exception {
+        assertThat(TestDSClient.createReadConsistency(READ_QUORUM), is(ReadConsistency.QUORUM));
+        try {
+            new InMemoryTransactionHelper(0, true, null, null, new RetryPolicy(), ReadConsistency.CACHED);
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+        try {
+            new InMemoryTransactionHelper(0, false, null, null, new RetryPolicy(), ReadConsistency.SERIALIZABLE);
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    /**
+     * Reads the names of users 0 and 1 in a read-only action. The first run renames both between the two reads, as
+     * an action of another thread would.
+     */
+    private static String[] readWhileChanging(InMemoryTransactionHelper transactionHelper, AtomicInteger runs)
+            throws Exception {
+        return transactionHelper.runReadOnly(() -> {
+            String first = transactionHelper.readUser("0").get("username").getAsString();
+            if (runs.incrementAndGet() == 1) {
+                Thread writer = new Thread(() -> {
+                    for (String userId : new String[]{"0", "1"}) {
+                        JsonObject user = new JsonObject();
+                        user.addProperty("username", "changed");
+                        transactionHelper.writeUser(userId, user);
+                    }
+                });
+                writer.start();
+                try {
+                    writer.join();
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+            String second = transactionHelper.readUser("1").get("username").getAsString();
+            return new String[]{first, second};
+        });
+    }
+
+    private static InMemoryTransactionHelper helper(ReadConsistency readConsistency) {
+        return new InMemoryTransactionHelper(0, true, null, null, new RetryPolicy(), readConsistency);
+    }
+
+    private static TestDSClient load(InMemoryTransactionHelper transactionHelper) {
+        TestDSClient client = new TestDSClient(transactionHelper, LAYOUT_DOCUMENT);
+        for (int i = 0; i < 3; i++) {
+            HashMap<String, ByteIterator> values = new HashMap<>();
+            values.put("userid", new StringByteIterator(String.valueOf(i)));
+            values.put("username", new StringByteIterator("user" + i));
+            assertThat(client.insertEntity("users", String.valueOf(i), values, false), is(0));
+        }
+        assertThat(client.CreateFriendship(0, 1), is(0));
+        assertThat(client.CreateFriendship(0, 2), is(0));
+        return client;
+    }
+}
@@ -0,0 +1,63 @@
+package TestDS;
+
+import edu.usc.bg.base.ByteIterator;
+import edu.usc.bg.base.StringByteIterator;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Vector;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class RequestStatisticsTest implements TestDSClientConstants {
+    @Test
+    public void testRequestsAreCountedPerAction() throws Exception {
+        InMemoryTransactionHelper transactionHelper = new InMemoryTransactionHelper();
+        TestDSClient client = load(transactionHelper);
+        RequestStatistics statistics = transactionHelper.getRequestStatistics();
+
+        long roundTrips = transactionHelper.getRoundTrips();
+        long bytesRead = transactionHelper.getBytesRead();
+        assertThat(client.viewProfile(0, 1, new HashMap<>(), false, false), is(0));
+        assertThat(statistics.getRoundTrips("PROFILE"), is(transactionHelper.getRoundTrips() - roundTrips));
+        assertThat(statistics.getReads("PROFILE"), is(1L));
+        assertThat(statistics.getWrites("PROFILE"), is(0L));
+        assertThat(statistics.getBytesReceived("PROFILE"), is(transactionHelper.getBytesRead() - bytesRead));
+        assertThat(statistics.getBytesSent("PROFILE"), is(0L));
+
+        roundTrips = transactionHelper.getRoundTrips();
+        assertThat(client.inviteFriend(0, 1), is(0));
+        assertThat(statistics.getRoundTrips("INV"), is(transactionHelper.getRoundTrips() - roundTrips));
+        assertThat(statistics.getReads("INV"), is(1L));
+        assertThat(statistics.getWrites("INV"), is(1L));
+        assertTrue(statistics.getBytesSent("INV") > 0);
+        assertThat(statistics.getReads("PROFILE"), is(1L));
+    }
+
+    @Test
+    public void testStatisticsAreAveragedPerAction() throws Exception {
+        InMemoryTransactionHelper transactionHelper = new InMemoryTransactionHelper();
+        TestDSClient client = load(transactionHelper);
+
+        for (int i = 0; i < 4; i++) {
+            assertThat(client.viewProfile(0, 1, new HashMap<>(), false, false), is(0));
+        }
+        String line = transactionHelper.getRequestStatistics().getStatistics();
+        assertTrue(line, line.contains("PROFILE(Actions=4, RoundTrips=1.00, Reads=1.00, Writes=0.00, BytesSent=0, "));
+        assertTrue(line, line.indexOf("INSERT(") < line.indexOf("PROFILE("));
+    }
+
+    private static TestDSClient load(InMemoryTransactionHelper transactionHelper) {
+        TestDSClient client = new TestDSClient(transactionHelper, LAYOUT_DOCUMENT);
+        for (int i = 0; i < 2; i++) {
+            HashMap<String, ByteIterator> values = new HashMap<>();
+            values.put("userid", new StringByteIterator(String.valueOf(i)));
+            values.put("username", new StringByteIterator("user" + i));
+            assertThat(client.insertEntity("users", String.valueOf(i), values, false), is(0));
+        }
+        assertThat(client.listFriends(0, 0, null, new Vector<>(), false, false), is(0));
+        return client;
+    }
+}
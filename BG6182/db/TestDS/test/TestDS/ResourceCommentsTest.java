@@ -0,0 +1,122 @@
+package TestDS;
+
+import edu.usc.bg.base.ByteIterator;
+import edu.usc.bg.base.StringByteIterator;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Vector;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static TestDS.NormalizedUserStoreTest.resource;
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class ResourceCommentsTest implements TestDSClientConstants {
+    private static final int COMMENT_COUNT = 50;
+
+    @Test
+    public void testCommentsAreListedInOrderAndDeleted() throws Exception {
+        TestDSClient client = load(new InMemoryTransactionHelper());
+        for (int mid = 0; mid < COMMENT_COUNT; mid++) {
+            assertThat(client.postCommentOnResource(1, 0, 0, comment(mid)), is(0));
+        }
+        assertThat(client.delCommentOnResource(0, 0, 7), is(0));
+        assertThat(client.delCommentOnResource(0, 0, COMMENT_COUNT), is(0));
+
+        Vector<HashMap<String, ByteIterator>> comments = new Vector<>();
+        assertThat(client.viewCommentOnResource(0, 0, 0, comments), is(0));
+        assertThat(comments.size(), is(COMMENT_COUNT - 1));
+        for (int i = 0, mid = 0; i < comments.size(); i++, mid++) {
+            if (mid == 7) {
+                mid++;
+            }
+            assertThat(comments.get(i).get("mid").toString(), is(String.valueOf(mid)));
+            assertThat(comments.get(i).get("content").toString(), is("comment " + mid));
+        }
+
+        comments.clear();
+        assertThat(client.viewCommentOnResource(0, 0, 1, comments), is(0));
+        assertThat(comments.size(), is(0));
+    }
+
+    @Test
+    public void testCommentOnMissingResourceFails() throws Exception {
+        TestDSClient client = load(new InMemoryTransactionHelper());
+
+        assertThat(client.postCommentOnResource(1, 0, 5, comment(0)), is(-1));
+        assertThat(client.delCommentOnResource(0, 5, 0), is(-1));
+    }
+
+    @Test
+    public void testCostDoesNotGrowWithComments() throws Exception {
+        InMemoryTransactionHelper transactionHelper = new InMemoryTransactionHelper();
+        TestDSClient client = load(transactionHelper);
+
+        long bytesWritten = transactionHelper.getBytesWritten();
+        assertThat(client.postCommentOnResource(1, 0, 0, comment(0)), is(0));
+        long firstComment = transactionHelper.getBytesWritten() - bytesWritten;
+        for (int mid = 1; mid < COMMENT_COUNT; mid++) {
+            assertThat(client.postCommentOnResource(1, 0, 0, comment(mid)), is(0));
+        }
+
+        bytesWritten = transactionHelper.getBytesWritten();
+        assertThat(client.postCommentOnResource(1, 0, 0, comment(COMMENT_COUNT)), is(0));
+        assertTrue(transactionHelper.getBytesWritten() - bytesWritten < 2 * firstComment);
+
+        long roundTrips = transactionHelper.getRoundTrips();
+        Vector<HashMap<String, ByteIterator>> comments = new Vector<>();
+        assertThat(client.viewCommentOnResource(0, 0, 0, comments), is(0));
+        assertThat(comments.size(), is(COMMENT_COUNT + 1));
+        assertThat(transactionHelper.getRoundTrips() - roundTrips, is(2L));
+    }
+
+    @Test
+    public void testConcurrentCommentsDoNotConflict() throws Exception {
+        final int threads = 16;
+        InMemoryTransactionHelper transactionHelper = new InMemoryTransactionHelper(200, true);
+        TestDSClient client = load(transactionHelper);
+        final CountDownLatch done = new CountDownLatch(threads);
+        final AtomicInteger failures = new AtomicInteger();
+
+        for (int t = 0; t < threads; t++) {
+            final int thread = t;
+            new Thread(() -> {
+                for (int i = 0; i < 10; i++) {
+                    if (client.postCommentOnResource(1, 0, 0, comment(thread * 10 + i)) != 0) {
+                        failures.incrementAndGet();
+                    }
+                }
+                done.countDown();
+            }).start();
+        }
+        done.await();
+
+        Vector<HashMap<String, ByteIterator>> comments = new Vector<>();
+        assertThat(client.viewCommentOnResource(0, 0, 0, comments), is(0));
+        assertThat(failures.get(), is(0));
+        assertThat(comments.size(), is(threads * 10));
+        assertThat(transactionHelper.getAborts(), is(0L));
+    }
+
+    private static TestDSClient load(InMemoryTransactionHelper transactionHelper) {
+        TestDSClient client = new TestDSClient(transactionHelper, LAYOUT_NATIVE);
+        for (int i = 0; i < 2; i++) {
+            HashMap<String, ByteIterator> values = new HashMap<>();
+            values.put("userid", new StringByteIterator(String.valueOf(i)));
+            assertThat(client.insertEntity("users", String.valueOf(i), values, false), is(0));
+            assertThat(client.insertEntity("resources", String.valueOf(i), resource(i, 0, 0), false), is(0));
+        }
+        return client;
+    }
+
+    private static HashMap<String, ByteIterator> comment(int mid) {
+        HashMap<String, ByteIterator> values = new HashMap<>();
+        values.put("mid", new StringByteIterator(String.valueOf(mid)));
+        values.put("modifierid", new StringByteIterator("1"));
+        values.put("content", new StringByteIterator("comment " + mid));
+        return values;
+    }
+}
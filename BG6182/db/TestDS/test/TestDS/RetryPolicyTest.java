@@ -0,0 +1,135 @@
+package TestDS;
+
+import de.zib.scalaris.AbortException;
+import de.zib.scalaris.ConnectionException;
+import edu.usc.bg.base.ByteIterator;
+import edu.usc.bg.base.StringByteIterator;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Vector;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class RetryPolicyTest implements TestDSClientConstants {
+
+    @Test
+    public void testBackoffDoublesWithJitterUpToMaximum() throws Exception {
+        RetryPolicy policy = new RetryPolicy(10, 4, 32, 0);
+        for (int i = 0; i < 100; i++) {
+            assertInRange(policy.backoff(1), 2, 4);
+            assertInRange(policy.backoff(2), 4, 8);
+            assertInRange(policy.backoff(4), 16, 32);
+            assertInRange(policy.backoff(10), 16, 32);
+        }
+    }
+
+    @Test
+    public void testCommitWhichKeepsAbortingFailsAfterLastAttempt() throws Exception {
+        RetryPolicy policy = new RetryPolicy(3, 1, 1, 0);
+        ConflictingTransactionHelper transactionHelper = new ConflictingTransactionHelper(policy);
+        TestDSClient client = load(transactionHelper);
+
+        transactionHelper.conflicting = true;
+        assertThat(client.inviteFriend(1, 0), is(RetryException.RETRIES_EXHAUSTED));
+        assertThat(policy.getAborts("INV"), is(3L));
+        assertThat(policy.getRetries("INV"), is(2L));
+        assertThat(policy.getFailures("INV"), is(1L));
+        assertThat(policy.getRetries("INSERT"), is(0L));
+
+        transactionHelper.conflicting = false;
+        assertThat(client.inviteFriend(1, 0), is(0));
+    }
+
+    @Test
+    public void testActionGivesUpAtDeadline() throws Exception {
+        RetryPolicy policy = new RetryPolicy(1000, 20, 20, 50);
+        ConflictingTransactionHelper transactionHelper = new ConflictingTransactionHelper(policy);
+        TestDSClient client = load(transactionHelper);
+
+        transactionHelper.conflicting = true;
+        long start = System.nanoTime();
+        assertThat(client.acceptFriend(1, 0), is(RetryException.DEADLINE_EXCEEDED));
+        assertTrue(System.nanoTime() - start < 1000000000L);
+        assertTrue(policy.getRetries("ACCEPT") <= 5);
+        assertThat(policy.getFailures("ACCEPT"), is(1L));
+    }
+
+    @Test
+    public void testCommitWithLostReplyIsNotRunAgain() throws Exception {
+        RetryPolicy policy = new RetryPolicy(3, 1, 1, 0);
+        LostReplyTransactionHelper transactionHelper = new LostReplyTransactionHelper(policy);
+        TestDSClient client = load(transactionHelper, LAYOUT_NATIVE);
+
+        transactionHelper.losingReplies = true;
+        assertThat(client.inviteFriend(1, 0), is(RetryException.COMMIT_UNKNOWN));
+        assertThat(policy.getRetries("INV"), is(0L));
+        assertThat(policy.getFailures("INV"), is(1L));
+
+        transactionHelper.losingReplies = false;
+        Vector<Integer> pendingIds = new Vector<>();
+        assertThat(client.queryPendingFriendshipIds(0, pendingIds), is(0));
+        assertThat(pendingIds, is(new Vector<>(Collections.singletonList(1))));
+    }
+
+    private static TestDSClient load(InMemoryTransactionHelper transactionHelper) {
+        return load(transactionHelper, LAYOUT_NORMALIZED);
+    }
+
+    private static TestDSClient load(InMemoryTransactionHelper transactionHelper, String layout) {
+        TestDSClient client = new TestDSClient(transactionHelper, layout);
+        for (int i = 0; i < 2; i++) {
+            HashMap<String, ByteIterator> values = new HashMap<>();
+            values.put("userid", new StringByteIterator(String.valueOf(i)));
+            assertThat(client.insertEntity("users", String.valueOf(i), values, false), is(0));
+        }
+        return client;
+    }
+
+    private static void assertInRange(long value, long min, long max) {
+        assertTrue(value + " < " + min, value >= min);
+        assertTrue(value + " > " + max, value <= max);
+    }
+
+    /**
+     * Stand-in whose commits abort while {@link #conflicting} is set.
+     */
+    private static final class ConflictingTransactionHelper extends InMemoryTransactionHelper {
+        private volatile boolean conflicting;
+
+        private ConflictingTransactionHelper(RetryPolicy retryPolicy) {
+            super(0, true, null, null, retryPolicy);
+        }
+
+        @Override
+        protected void endTransaction(boolean validateReads) throws AbortException {
+            if (conflicting) {
+                abortTransaction();
+                throw new AbortException("conflict");
+            }
+            super.endTransaction(validateReads);
+        }
+    }
+
+    /**
+     * Stand-in whose commits are applied but lose their reply while {@link #losingReplies} is set.
+     */
+    private static final class LostReplyTransactionHelper extends InMemoryTransactionHelper {
+        private volatile boolean losingReplies;
+
+        private LostReplyTransactionHelper(RetryPolicy retryPolicy) {
+            super(0, true, null, null, retryPolicy);
+        }
+
+        @Override
+        protected void endTransaction(boolean validateReads) throws AbortException {
+            super.endTransaction(validateReads);
+            if (losingReplies) {
+                throw commitOutcomeUnknown(new ConnectionException("reply lost"));
+            }
+        }
+    }
+}
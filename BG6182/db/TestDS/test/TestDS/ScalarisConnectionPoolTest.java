@@ -0,0 +1,154 @@
+package TestDS;
+
+import com.ericsson.otp.erlang.OtpErlangObject;
+import de.zib.scalaris.Connection;
+import de.zib.scalaris.ConnectionException;
+import de.zib.scalaris.ConnectionFactory;
+import de.zib.scalaris.ConnectionPolicy;
+import de.zib.scalaris.PeerNode;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsNull.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Runs the pool against a ring of stand-in nodes which can be stopped and restarted.
+ */
+public class ScalarisConnectionPoolTest {
+    private static final int POOL_SIZE = 6;
+
+    List<PeerNode> nodes;
+    Set<String> upNodes;
+    ConnectionFactory factory;
+    ScalarisConnectionPool pool;
+
+    @Before
+    public void setUp() throws Exception {
+        nodes = Arrays.asList(new PeerNode("node1@127.0.0.1"), new PeerNode("node2@127.0.0.1"),
+                new PeerNode("node3@127.0.0.1"));
+        upNodes = ConcurrentHashMap.newKeySet();
+        nodes.forEach(node -> upNodes.add(name(node)));
+
+        factory = mock(ConnectionFactory.class);
+        when(factory.getNodes()).thenReturn(nodes);
+        when(factory.createConnection(any(ConnectionPolicy.class))).thenAnswer(invocation -> {
+            ConnectionPolicy policy = (ConnectionPolicy) invocation.getArguments()[0];
+            for (int attempt = 0; attempt < nodes.size(); attempt++) {
+                PeerNode node = policy.selectNode();
+                if (isUp(node)) {
+                    policy.nodeConnectSuccess(node);
+                    return connectTo(node);
+                }
+                policy.nodeFailed(node);
+            }
+            throw new ConnectionException("no node is up");
+        });
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (pool != null) {
+            pool.closeAll();
+        }
+    }
+
+    @Test
+    public void testConnectionsAreSpreadOverNodes() throws Exception {
+        pool = new ScalarisConnectionPool(factory, "leastoutstanding", POOL_SIZE, 100, 0);
+
+        assertThat(pool.getOpenConnections(), is(POOL_SIZE));
+        for (PeerNode node : nodes) {
+            assertThat(pool.getConnections(node), is(POOL_SIZE / nodes.size()));
+        }
+    }
+
+    @Test
+    public void testPoolSurvivesNodeRestart() throws Exception {
+        pool = new ScalarisConnectionPool(factory, "leastoutstanding", POOL_SIZE, 100, 0);
+        PeerNode restarted = nodes.get(0);
+
+        upNodes.remove(name(restarted));
+        pool.checkConnections();
+        assertThat(pool.getOpenConnections(), is(POOL_SIZE));
+        assertThat(pool.getConnections(restarted), is(0));
+        List<Connection> taken = new ArrayList<>();
+        for (int i = 0; i < POOL_SIZE; i++) {
+            Connection connection = pool.getConnection();
+            assertTrue(isUp(connection.getRemote()));
+            taken.add(connection);
+        }
+        taken.forEach(pool::releaseConnection);
+
+        upNodes.add(name(restarted));
+        pool.checkConnections();
+        assertThat(pool.getOpenConnections(), is(POOL_SIZE));
+        for (PeerNode node : nodes) {
+            assertThat(pool.getConnections(node), is(POOL_SIZE / nodes.size()));
+        }
+    }
+
+    @Test
+    public void testNewConnectionsGoToLeastBusyNode() throws Exception {
+        pool = new ScalarisConnectionPool(factory, "leastoutstanding", POOL_SIZE, 100, 0);
+        PeerNode busy = nodes.get(1);
+
+        List<Connection> taken = new ArrayList<>();
+        for (int i = 0; i < POOL_SIZE; i++) {
+            Connection connection = pool.getConnection();
+            if (connection.getRemote() == busy) {
+                taken.add(connection);
+            } else {
+                pool.releaseConnection(connection);
+            }
+        }
+        assertThat(pool.getNodePolicy().selectNode() == busy, is(false));
+        taken.forEach(pool::releaseConnection);
+    }
+
+    @Test(expected = ConnectionException.class)
+    public void testGetConnectionTimesOut() throws Exception {
+        pool = new ScalarisConnectionPool(factory, "roundrobin", 1, 10, 0);
+        Connection connection = pool.getConnection();
+
+        assertThat(pool.getConnection(10), nullValue());
+        try {
+            pool.getConnection();
+        } finally {
+            pool.releaseConnection(connection);
+        }
+    }
+
+    private boolean isUp(PeerNode node) {
+        return upNodes.contains(name(node));
+    }
+
+    private static String name(PeerNode node) {
+        return node.getNode().node();
+    }
+
+    private Connection connectTo(PeerNode node) throws ConnectionException {
+        Connection connection = mock(Connection.class);
+        when(connection.getRemote()).thenReturn(node);
+        when(connection.doRPC(anyString(), anyString(), any(OtpErlangObject[].class))).thenAnswer(invocation -> {
+            if (!isUp(node)) {
+                throw new ConnectionException(node + " is down");
+            }
+            return null;
+        });
+        return connection;
+    }
+}
@@ -0,0 +1,118 @@
+package TestDS;
+
+import edu.usc.bg.base.ByteIterator;
+import edu.usc.bg.base.StringByteIterator;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Vector;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class TestDSClientConcurrencyTest {
+    private static final int USER_COUNT = 128;
+    private static final int OPS_PER_THREAD = 200;
+    private static final int LATENCY_MICROS = 200;
+
+    TestDSClient testDSClient;
+    InMemoryTransactionHelper transactionHelper;
+
+    @Before
+    public void setUp() throws Exception {
+        transactionHelper = new InMemoryTransactionHelper(LATENCY_MICROS, true);
+        testDSClient = new TestDSClient(transactionHelper);
+
+        for (int i = 0; i < USER_COUNT; i++) {
+            HashMap<String, ByteIterator> values = new HashMap<>();
+            values.put("userid", new StringByteIterator(String.valueOf(i)));
+            values.put("username", new StringByteIterator("user" + i));
+            testDSClient.insertEntity("users", String.valueOf(i), values, false);
+        }
+    }
+
+    @Test
+    public void testConcurrentReadsOverlap() throws Exception {
+        final int threads = 16;
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(threads);
+        final AtomicInteger failures = new AtomicInteger();
+
+        for (int t = 0; t < threads; t++) {
+            new Thread(() -> {
+                try {
+                    start.await();
+                    for (int i = 0; i < OPS_PER_THREAD; i++) {
+                        int userId = ThreadLocalRandom.current().nextInt(USER_COUNT);
+                        if (testDSClient.viewProfile(userId, userId, new HashMap<>(), false, false) != 0) {
+                            failures.incrementAndGet();
+                        }
+                    }
+                } catch (InterruptedException ignored) {
+                }
+                done.countDown();
+            }).start();
+        }
+        start.countDown();
+        done.await();
+
+        assertThat(failures.get(), is(0));
+        assertTrue(transactionHelper.getMaxInFlight() > 1);
+    }
+
+    @Test
+    public void testConcurrentInvitesAreNotLost() throws Exception {
+        final int threads = 32;
+        final int inviters = 16;
+        final CountDownLatch done = new CountDownLatch(threads);
+        final AtomicInteger failures = new AtomicInteger();
+
+        for (int t = 0; t < threads; t++) {
+            final int inviteeId = t;
+            new Thread(() -> {
+                for (int i = 0; i < inviters; i++) {
+                    if (testDSClient.inviteFriend(threads + i, inviteeId) != 0) {
+                        failures.incrementAndGet();
+                    }
+                }
+                done.countDown();
+            }).start();
+        }
+        done.await();
+
+        assertThat(failures.get(), is(0));
+        for (int t = 0; t < threads; t++) {
+            Vector<Integer> pendingIds = new Vector<>();
+            testDSClient.queryPendingFriendshipIds(t, pendingIds);
+            assertThat(pendingIds.size(), is(inviters));
+        }
+    }
+
+    @Test
+    public void testConcurrentInvitesOnHotUserAreNotLost() throws Exception {
+        final int threads = 16;
+        final CountDownLatch done = new CountDownLatch(threads);
+        final AtomicInteger successes = new AtomicInteger();
+
+        for (int t = 0; t < threads; t++) {
+            final int inviterId = t + 1;
+            new Thread(() -> {
+                if (testDSClient.inviteFriend(inviterId, 0) == 0) {
+                    successes.incrementAndGet();
+                }
+                done.countDown();
+            }).start();
+        }
+        done.await();
+
+        Vector<Integer> pendingIds = new Vector<>();
+        testDSClient.queryPendingFriendshipIds(0, pendingIds);
+        assertTrue(successes.get() > 0);
+        assertThat(pendingIds.size(), is(successes.get()));
+    }
+}
@@ -7,6 +7,7 @@ import edu.usc.bg.base.StringByteIterator;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.Matchers;
 import org.mockito.Mock;
 import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.junit4.PowerMockRunner;
@@ -25,6 +26,8 @@ import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyObject;
 import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.powermock.api.mockito.PowerMockito.*;
 
 @RunWith(PowerMockRunner.class)
@@ -51,6 +54,10 @@ public class TestDSClientTest {
         whenNew(TransactionHelper.class).withAnyArguments().thenReturn(transactionHelper);
         doNothing().when(transactionHelper).writeUser(anyString(), any(JsonObject.class));
         doReturn(jsonObject).when(transactionHelper).readUser(anyString());
+        doAnswer(mock -> ((TransactionHelper.TransactionBody<?>) mock.getArguments()[0]).run())
+                .when(transactionHelper).runInTransaction(Matchers.<TransactionHelper.TransactionBody<Object>>any());
+        doAnswer(mock -> ((TransactionHelper.TransactionBody<?>) mock.getArguments()[0]).run())
+                .when(transactionHelper).runReadOnly(Matchers.<TransactionHelper.TransactionBody<Object>>any());
 
         testDSClient = new TestDSClient();
         testDSClient.init();
@@ -163,6 +170,7 @@ public class TestDSClientTest {
         entitySet = "resources";
         values.put("mid", new StringByteIterator("1"));
         values.put("creatorid", new StringByteIterator("1"));
+        values.put("walluserid", new StringByteIterator("1"));
         values.put("rid", new StringByteIterator("1"));
         values.put("modifierid", new StringByteIterator("1"));
         values.put("timestamp", new StringByteIterator("01/01/2015"));
@@ -187,6 +195,7 @@ public class TestDSClientTest {
             assertThat(jsonObject.getAsJsonPrimitive("content").getAsString(), is("My first post."));
             return null;
         }).when(transactionHelper).writeResource(anyString(), anyObject());
+        doNothing().when(transactionHelper).writeUser(anyString(), any(JsonObject.class));
 
         result = testDSClient.insertEntity(entitySet, entityPK, values, false);
         assertThat(result, is(0));
@@ -265,6 +274,33 @@ public class TestDSClientTest {
         assertThat(exitCode, is(0));
     }
 
+    @Test
+    public void testListFriendsBatchesReads() throws Exception {
+        InMemoryTransactionHelper inMemoryHelper = new InMemoryTransactionHelper();
+        TestDSClient client = new TestDSClient(inMemoryHelper);
+        int friendCount = 50;
+        for (int i = 0; i <= friendCount; i++) {
+            HashMap<String, ByteIterator> values = new HashMap<>();
+            values.put("userid", new StringByteIterator(String.valueOf(i)));
+            values.put("username", new StringByteIterator("user" + i));
+            client.insertEntity("users", String.valueOf(i), values, false);
+        }
+        for (int i = 1; i <= friendCount; i++) {
+            client.CreateFriendship(0, i);
+        }
+
+        long roundTrips = inMemoryHelper.getRoundTrips();
+        Vector<HashMap<String, ByteIterator>> result = new Vector<>();
+        int exitCode = client.listFriends(0, 0, null, result, false, false);
+
+        assertThat(exitCode, is(0));
+        assertThat(result.size(), is(friendCount));
+        for (int i = 0; i < friendCount; i++) {
+            assertThat(result.get(i).get("userid").toString(), is(String.valueOf(i + 1)));
+        }
+        assertThat(inMemoryHelper.getRoundTrips() - roundTrips, is(2L));
+    }
+
     @Test
     public void testViewFriendReq() throws Exception {
         int profileOwnerID = 1;
@@ -287,6 +323,17 @@ public class TestDSClientTest {
         assertThat(exitCode, is(0));
     }
 
+    @Test
+    public void testReadOnlyActionsRunReadOnly() throws Exception {
+        assertThat(testDSClient.viewProfile(1, 1, new HashMap<>(), false, false), is(0));
+        assertThat(testDSClient.viewFriendReq(1, new Vector<>(), false, false), is(0));
+        assertThat(testDSClient.viewCommentOnResource(1, 1, 1, new Vector<>()), is(0));
+        assertThat(testDSClient.queryPendingFriendshipIds(1, new Vector<>()), is(0));
+        assertThat(testDSClient.queryConfirmedFriendshipIds(1, new Vector<>()), is(0));
+
+        verify(transactionHelper, times(5)).runReadOnly(Matchers.<TransactionHelper.TransactionBody<Object>>any());
+    }
+
     @Test
     public void testAcceptFriend() throws Exception {
         assertTrue(true);
@@ -0,0 +1,96 @@
+package TestDS;
+
+import com.google.gson.JsonObject;
+import edu.usc.bg.base.ByteIterator;
+import edu.usc.bg.base.StringByteIterator;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Vector;
+
+import static TestDS.NormalizedUserStoreTest.resource;
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+public class TopResourcesTest implements TestDSClientConstants {
+    private static final int RESOURCE_COUNT = 40;
+
+    @Test
+    public void testNewestResourcesAreReadFromOneKey() throws Exception {
+        for (String layout : new String[]{LAYOUT_DOCUMENT, LAYOUT_NORMALIZED, LAYOUT_NATIVE}) {
+            InMemoryTransactionHelper transactionHelper = new InMemoryTransactionHelper();
+            TestDSClient client = load(transactionHelper, layout);
+
+            long roundTrips = transactionHelper.getRoundTrips();
+            Vector<HashMap<String, ByteIterator>> resources = new Vector<>();
+            assertThat(client.viewTopKResources(1, 0, 5, resources), is(0));
+            assertThat(layout, transactionHelper.getRoundTrips() - roundTrips, is(1L));
+            assertNewestFirst(resources, 5);
+
+            resources.clear();
+            assertThat(client.viewTopKResources(1, 1, 5, resources), is(0));
+            assertThat(resources.size(), is(0));
+        }
+    }
+
+    @Test
+    public void testLargerKReadsTheWall() throws Exception {
+        TestDSClient client = load(new InMemoryTransactionHelper(), LAYOUT_NATIVE);
+
+        Vector<HashMap<String, ByteIterator>> resources = new Vector<>();
+        assertThat(client.viewTopKResources(1, 0, 10, resources), is(0));
+        assertNewestFirst(resources, 10);
+
+        resources.clear();
+        assertThat(client.viewTopKResources(1, 0, RESOURCE_COUNT * 2, resources), is(0));
+        assertNewestFirst(resources, RESOURCE_COUNT);
+    }
+
+    @Test
+    public void testShorterKeyReadsTheWall() throws Exception {
+        InMemoryTransactionHelper transactionHelper = new InMemoryTransactionHelper();
+        TestDSClient client = load(transactionHelper, LAYOUT_NATIVE);
+        /** As if loaded with scalaris.topk=3. */
+        transactionHelper.writeRecentResources("0", transactionHelper.readRecentResources("0").subList(0, 3));
+
+        Vector<HashMap<String, ByteIterator>> resources = new Vector<>();
+        assertThat(client.viewTopKResources(1, 0, 5, resources), is(0));
+        assertNewestFirst(resources, 5);
+    }
+
+    @Test
+    public void testUserWithoutKeyReadsTheWall() throws Exception {
+        InMemoryTransactionHelper transactionHelper = new InMemoryTransactionHelper();
+        TestDSClient client = new TestDSClient(transactionHelper, LAYOUT_NORMALIZED);
+        TestDSClient.createUserStore(LAYOUT_NORMALIZED, false, transactionHelper).writeUser("0", new JsonObject());
+        for (int i = 0; i < RESOURCE_COUNT; i++) {
+            assertThat(client.insertEntity("resources", String.valueOf(i), resource(i, 0, 0), false), is(0));
+        }
+
+        Vector<HashMap<String, ByteIterator>> resources = new Vector<>();
+        assertThat(client.viewTopKResources(1, 0, 5, resources), is(0));
+        assertNewestFirst(resources, 5);
+        assertThat(client.viewTopKResources(1, 7, 5, new Vector<>()), is(-1));
+    }
+
+    private static TestDSClient load(InMemoryTransactionHelper transactionHelper, String layout) {
+        TestDSClient client = new TestDSClient(transactionHelper, layout);
+        for (int i = 0; i < 2; i++) {
+            HashMap<String, ByteIterator> values = new HashMap<>();
+            values.put("userid", new StringByteIterator(String.valueOf(i)));
+            assertThat(client.insertEntity("users", String.valueOf(i), values, false), is(0));
+        }
+        for (int i = 0; i < RESOURCE_COUNT; i++) {
+            assertThat(client.insertEntity("resources", String.valueOf(i), resource(i, 0, 1), false), is(0));
+        }
+        return client;
+    }
+
+    private static void assertNewestFirst(Vector<HashMap<String, ByteIterator>> resources, int count) {
+        assertThat(resources.size(), is(count));
+        for (int i = 0; i < count; i++) {
+            assertThat(resources.get(i).get("rid").toString(), is(String.valueOf(RESOURCE_COUNT - 1 - i)));
+            assertThat(resources.get(i).get("walluserid").toString(), is("0"));
+        }
+    }
+}
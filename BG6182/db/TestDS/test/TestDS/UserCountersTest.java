@@ -0,0 +1,68 @@
+package TestDS;
+
+import edu.usc.bg.base.ByteIterator;
+import org.junit.Test;
+
+import java.util.HashMap;
+
+import static TestDS.NormalizedUserStoreTest.USER_COUNT;
+import static TestDS.NormalizedUserStoreTest.assertSameResults;
+import static TestDS.NormalizedUserStoreTest.load;
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class UserCountersTest implements TestDSClientConstants {
+    private static final int INVITE_COUNT = 200;
+
+    @Test
+    public void testCountersMatchDocumentLayout() throws Exception {
+        TestDSClient document = load(new InMemoryTransactionHelper(), LAYOUT_DOCUMENT);
+
+        assertSameResults(document, load(new InMemoryTransactionHelper(), LAYOUT_NORMALIZED, true));
+        assertSameResults(document, load(new InMemoryTransactionHelper(), LAYOUT_NATIVE, true));
+    }
+
+    @Test
+    public void testMigrationWritesCounters() throws Exception {
+        InMemoryTransactionHelper transactionHelper = new InMemoryTransactionHelper();
+        TestDSClient document = load(transactionHelper, LAYOUT_DOCUMENT);
+
+        UserStore target = new NativeListUserStore(transactionHelper, true);
+        assertThat(LayoutMigration.migrate(transactionHelper, target), is(USER_COUNT));
+        assertSameResults(document, new TestDSClient(transactionHelper, LAYOUT_NATIVE, true));
+    }
+
+    @Test
+    public void testViewProfileCostDoesNotGrowWithLists() throws Exception {
+        for (String layout : new String[]{LAYOUT_NORMALIZED, LAYOUT_NATIVE}) {
+            InMemoryTransactionHelper transactionHelper = new InMemoryTransactionHelper();
+            TestDSClient client = load(transactionHelper, layout, true);
+
+            long bytesRead = transactionHelper.getBytesRead();
+            HashMap<String, ByteIterator> before = new HashMap<>();
+            assertThat(client.viewProfile(0, 0, before, false, false), is(0));
+            long profileBytes = transactionHelper.getBytesRead() - bytesRead;
+
+            for (int i = 0; i < INVITE_COUNT; i++) {
+                assertThat(client.inviteFriend(USER_COUNT + i, 0), is(0));
+            }
+
+            bytesRead = transactionHelper.getBytesRead();
+            HashMap<String, ByteIterator> after = new HashMap<>();
+            assertThat(client.viewProfile(0, 0, after, false, false), is(0));
+            /** Only the digits of the pending count may grow. */
+            assertTrue(transactionHelper.getBytesRead() - bytesRead <= profileBytes + 2);
+            assertThat(count(after, "pendingcount"), is(count(before, "pendingcount") + INVITE_COUNT));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDocumentLayoutHasNoCounters() {
+        new TestDSClient(new InMemoryTransactionHelper(), LAYOUT_DOCUMENT, true);
+    }
+
+    private static int count(HashMap<String, ByteIterator> profile, String name) {
+        return Integer.parseInt(new String(profile.get(name).toArray()));
+    }
+}
@@ -0,0 +1,103 @@
+package TestDS;
+
+import com.google.gson.JsonObject;
+import edu.usc.bg.base.ByteIterator;
+import edu.usc.bg.base.ObjectByteIterator;
+import edu.usc.bg.base.StringByteIterator;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Vector;
+
+import static TestDS.NormalizedUserStoreTest.IMAGE_SIZE;
+import static TestDS.NormalizedUserStoreTest.USER_COUNT;
+import static TestDS.NormalizedUserStoreTest.load;
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class UserImagesTest implements TestDSClientConstants {
+    private static final String[] LAYOUTS = {LAYOUT_DOCUMENT, LAYOUT_NORMALIZED, LAYOUT_NATIVE};
+
+    @Test
+    public void testActionsWithoutImagesDoNotReadThem() throws Exception {
+        for (String layout : LAYOUTS) {
+            InMemoryTransactionHelper transactionHelper = new InMemoryTransactionHelper();
+            TestDSClient client = load(transactionHelper, layout);
+
+            long bytesRead = transactionHelper.getBytesRead();
+            assertThat(client.viewProfile(0, 0, new HashMap<>(), false, false), is(0));
+            assertThat(client.listFriends(0, 0, null, new Vector<>(), false, false), is(0));
+            assertThat(client.viewFriendReq(1, new Vector<>(), false, false), is(0));
+            assertThat(client.acceptFriend(USER_COUNT / 2 + 2, 1), is(0));
+            assertThat(client.thawFriendship(0, 3), is(0));
+
+            assertTrue(layout, transactionHelper.getBytesRead() - bytesRead < IMAGE_SIZE / 2);
+        }
+    }
+
+    @Test
+    public void testViewProfileReturnsOnlyPic() throws Exception {
+        for (String layout : LAYOUTS) {
+            TestDSClient client = load(new InMemoryTransactionHelper(), layout);
+
+            HashMap<String, ByteIterator> result = new HashMap<>();
+            assertThat(client.viewProfile(0, 0, result, true, false), is(0));
+            assertThat(layout, result.get("pic").toArray().length, is(IMAGE_SIZE));
+            assertFalse(layout, result.containsKey("tpic"));
+        }
+    }
+
+    @Test
+    public void testFriendListsBatchThumbnails() throws Exception {
+        for (String layout : LAYOUTS) {
+            InMemoryTransactionHelper transactionHelper = new InMemoryTransactionHelper();
+            TestDSClient client = load(transactionHelper, layout);
+
+            long roundTrips = transactionHelper.getRoundTrips();
+            Vector<HashMap<String, ByteIterator>> friends = new Vector<>();
+            assertThat(client.listFriends(0, 0, null, friends, true, false), is(0));
+            assertThat(layout, transactionHelper.getRoundTrips() - roundTrips, is(2L));
+
+            assertTrue(layout, friends.size() > 0);
+            for (HashMap<String, ByteIterator> friend : friends) {
+                assertThat(layout, friend.get("tpic").toArray().length, is(IMAGE_SIZE / 16));
+                assertFalse(layout, friend.containsKey("pic"));
+            }
+        }
+    }
+
+    @Test
+    public void testImagesAreStoredAsBinaries() throws Exception {
+        for (String layout : LAYOUTS) {
+            InMemoryTransactionHelper transactionHelper = new InMemoryTransactionHelper();
+            TestDSClient client = new TestDSClient(transactionHelper, layout);
+
+            HashMap<String, ByteIterator> values = new HashMap<>();
+            values.put("userid", new StringByteIterator("0"));
+            values.put("pic", new ObjectByteIterator(new byte[IMAGE_SIZE]));
+            values.put("tpic", new ObjectByteIterator(new byte[IMAGE_SIZE / 16]));
+            assertThat(client.insertEntity("users", "0", values, true), is(0));
+
+            /** Base64 would take a third more. */
+            assertTrue(layout, transactionHelper.getBytesWritten() < (IMAGE_SIZE + IMAGE_SIZE / 16) * 11 / 10);
+        }
+    }
+
+    @Test
+    public void testMigrationMovesEmbeddedImages() throws Exception {
+        InMemoryTransactionHelper transactionHelper = new InMemoryTransactionHelper();
+        JsonObject user = new JsonObject();
+        user.addProperty("userid", "0");
+        user.add("pic", ImageUtils.toJsonPrimitive(new byte[IMAGE_SIZE]));
+        user.add("tpic", ImageUtils.toJsonPrimitive(new byte[IMAGE_SIZE / 16]));
+        transactionHelper.writeUser("0", user);
+
+        assertThat(LayoutMigration.migrate(transactionHelper, new NormalizedUserStore(transactionHelper)), is(1));
+        TestDSClient client = new TestDSClient(transactionHelper, LAYOUT_NORMALIZED);
+        HashMap<String, ByteIterator> result = new HashMap<>();
+        assertThat(client.viewProfile(0, 0, result, true, false), is(0));
+        assertThat(result.get("pic").toArray().length, is(IMAGE_SIZE));
+    }
+}
@@ -0,0 +1,66 @@
+package TestDS;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+import org.junit.Test;
+
+import static TestDS.CodecBenchmark.fromWire;
+import static TestDS.CodecBenchmark.resourceRecord;
+import static TestDS.CodecBenchmark.toWire;
+import static TestDS.CodecBenchmark.userRecord;
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class ValueCodecTest {
+    private final ValueCodec[] codecs = {new JsonCodec(), new BinaryCodec()};
+
+    @Test
+    public void testRecordsSurviveRoundTrip() throws Exception {
+        for (ValueCodec codec : codecs) {
+            for (JsonElement record : new JsonElement[]{userRecord(10, 1024), resourceRecord(5)}) {
+                assertThat(codec.decode(fromWire(toWire(codec.encode(record)))), is(record));
+            }
+        }
+    }
+
+    @Test
+    public void testPrimitivesSurviveRoundTrip() throws Exception {
+        JsonObject object = new JsonObject();
+        object.add("zero", new JsonPrimitive(0));
+        object.add("negative", new JsonPrimitive(-123456789012L));
+        object.add("max", new JsonPrimitive(Long.MAX_VALUE));
+        object.add("fraction", new JsonPrimitive(-0.25));
+        object.add("true", new JsonPrimitive(true));
+        object.add("false", new JsonPrimitive(false));
+        object.add("null", JsonNull.INSTANCE);
+        object.add("empty", new JsonPrimitive(""));
+        object.add("unicode", new JsonPrimitive("Gr\u00fc\u00dfe \u20ac \ud83d\ude00"));
+        JsonArray nested = new JsonArray();
+        nested.add(new JsonObject());
+        nested.add(new JsonArray());
+        object.add("nested", nested);
+
+        for (ValueCodec codec : codecs) {
+            JsonElement decoded = codec.decode(fromWire(toWire(codec.encode(object))));
+            for (String key : new String[]{"zero", "negative", "max", "fraction"}) {
+                assertThat(decoded.getAsJsonObject().get(key).getAsDouble(), is(object.get(key).getAsDouble()));
+            }
+            for (String key : new String[]{"true", "false", "null", "empty", "unicode", "nested"}) {
+                assertThat(decoded.getAsJsonObject().get(key), is(object.get(key)));
+            }
+        }
+    }
+
+    @Test
+    public void testBinaryIsSmallerOnTheWire() {
+        for (JsonElement record : new JsonElement[]{userRecord(100, 0), resourceRecord(20)}) {
+            int jsonBytes = toWire(new JsonCodec().encode(record)).length;
+            int binaryBytes = toWire(new BinaryCodec().encode(record)).length;
+            assertTrue(binaryBytes < jsonBytes * 0.9);
+        }
+    }
+}
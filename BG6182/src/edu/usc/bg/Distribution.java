@@ -164,7 +164,8 @@ public class Distribution extends Thread{
 	}
 
 	public void run () {
-		granularity = calc_granularity();
+		if (isQueueEngine())
+			granularity = calc_granularity();
 		//server1 = new Server(1,100); //numofServers, serviceTime
 
 		runSimulation();
@@ -185,8 +186,34 @@ public class Distribution extends Thread{
 
 
 
+	/**
+	 * The queue engine grows its workers with the queue and measures response times from the start of service,
+	 * see OpenLoopDistribution for the default engine
+	 */
+	private static boolean isQueueEngine(){
+		return _props.getProperty(Client.OPEN_LOOP_ENGINE_PROPERTY, Client.OPEN_LOOP_ENGINE_PROPERTY_DEFAULT)
+				.equalsIgnoreCase("queue");
+	}
+
 	protected  void runSimulation(){
 
+		if (!isQueueEngine())
+		{
+			OpenLoopDistribution scheduled = new OpenLoopDistribution();
+			scheduled.preProcessing();
+			scheduled.runSimulation();
+			try {
+				if(OpenSimulationStats != null)
+				{
+					scheduled.writeStatistics(OpenSimulationStats);
+					OpenSimulationStats.close();
+				}
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+			return;
+		}
+
 		switch(type)
 		{
 		case 1:
@@ -0,0 +1,281 @@
+package edu.usc.bg;
+
+import edu.usc.bg.base.*;
+import edu.usc.bg.measurements.LatencyHistogram;
+import edu.usc.bg.measurements.MyMeasurement;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.text.DecimalFormat;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Open simulation without coordinated omission. The arrival time of every request is fixed on a timeline (uniform,
+ * random or Poisson like the other distributions) and a fixed pool of workers, each with its own DB, serves the
+ * arrivals in order: a free worker claims the next arrival and issues it at its intended start, or right away if that
+ * has passed. While all workers are busy the arrivals fall behind their timeline instead of waiting in a queue, so the
+ * arrivals never slow down with the data store and the backlog takes no memory.
+ * Response times are measured from the intended start of the request, so they include the time spent waiting for a
+ * worker and any delay in issuing the request.
+ */
+public class OpenLoopDistribution extends Distribution {
+
+	static final String STATISTICS_NAME = "OPENLOOP";
+	//longest park before checking if the run was stopped
+	private static final long MAX_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+	//random arrivals are drawn for this many uniform intervals at a time, so long runs at high rates fit in memory
+	private static final int CHUNK_ARRIVALS = 1 << 16;
+
+	private final LatencyHistogram responseTimes = new LatencyHistogram();
+	private final LatencyHistogram queueingDelays = new LatencyHistogram();
+	private final Random random = new Random();
+	//index of the next uniform arrival
+	private final AtomicLong nextIndex = new AtomicLong();
+	private final AtomicLong issued = new AtomicLong();
+	private final AtomicLong warmupIssued = new AtomicLong();
+	private final AtomicLong dropped = new AtomicLong();
+	private double intervalNanos;
+	private long simulationNanos;
+	private long warmupNanos;
+	//the random arrivals of the current chunk, sorted, and the next one to hand out
+	private long[] randomArrivals;
+	private int randomIndex;
+	private long chunkStart;
+	//kept as a fraction so that intervals shorter than a nanosecond add up
+	private double previousArrival;
+	private int threads;
+	private boolean virtual;
+	//start of the timeline
+	private long start;
+
+	public void preProcessing() {
+		threads = Integer.parseInt(_props.getProperty(Client.OPEN_LOOP_THREADS_PROPERTY,
+				Client.OPEN_LOOP_THREADS_PROPERTY_DEFAULT));
+		virtual = _props.getProperty(Client.EXECUTOR_PROPERTY, Client.EXECUTOR_PROPERTY_DEFAULT)
+				.equalsIgnoreCase("virtual") && VirtualThreads.isAvailable();
+		intervalNanos = TimeUnit.SECONDS.toNanos(1) / lambda;
+		simulationNanos = TimeUnit.MILLISECONDS.toNanos(simulationTime);
+		warmupNanos = TimeUnit.MILLISECONDS.toNanos(warmupTime);
+		currentReqCount = 0;
+		previousArrival = 0;
+		numOfReq = 0;
+		warmupNumOfReq = 0;
+		randomArrivals = new long[0];
+		randomIndex = 0;
+		chunkStart = 0;
+		MyMeasurement.addDBStatistics(STATISTICS_NAME, this::getSummary);
+	}
+
+	/**
+	 * Claims the next arrival of the timeline. Uniform arrivals are computed from their index, random and Poisson
+	 * arrivals are drawn one after the other
+	 * @return the offset of the arrival from the start of the timeline in nanoseconds, or -1 once the simulation time
+	 * is over
+	 */
+	private long claimArrival() {
+		long arrival;
+		switch (type) {
+		case 2:
+			synchronized (this) {
+				if (randomIndex == randomArrivals.length && !nextRandomChunk())
+					return -1;
+				return randomArrivals[randomIndex++];
+			}
+		case 3:
+			synchronized (this) {
+				previousArrival += -Math.log(1 - random.nextDouble()) * intervalNanos;
+				arrival = (long) previousArrival;
+			}
+			break;
+		default:
+			arrival = (long) (nextIndex.getAndIncrement() * intervalNanos);
+			break;
+		}
+		return arrival < simulationNanos ? arrival : -1;
+	}
+
+	/**
+	 * Draws the random arrivals of the next chunk of the simulation time: as many requests as uniform ones, at random
+	 * instants of the chunk
+	 * @return false once the simulation time is over
+	 */
+	private boolean nextRandomChunk() {
+		if (chunkStart >= simulationNanos)
+			return false;
+		long length = Math.max(1, Math.min((long) (CHUNK_ARRIVALS * intervalNanos), simulationNanos - chunkStart));
+		int count = (int) Math.ceil(length / intervalNanos);
+		if (randomArrivals.length != count)
+			randomArrivals = new long[count];
+		for (int i = 0; i < count; i++)
+			randomArrivals[i] = chunkStart + (long) (random.nextDouble() * length);
+		Arrays.sort(randomArrivals);
+		randomIndex = 0;
+		chunkStart += length;
+		return true;
+	}
+
+	public void runSimulation() {
+		Worker.setParameters();
+		Worker.initInitialWorkerThred();
+		Worker.maxWorker = threads;
+		OpenLoopWorker[] workers = new OpenLoopWorker[threads];
+		for (int i = 0; i < threads; i++)
+			workers[i] = new OpenLoopWorker(i);
+		//the timeline starts once every worker has its DB
+		start = System.nanoTime() + MAX_PARK_NANOS;
+		Thread[] workerThreads = new Thread[threads];
+		for (int i = 0; i < threads; i++) {
+			if (virtual) {
+				workerThreads[i] = VirtualThreads.start(workers[i]);
+			} else {
+				workerThreads[i] = new Thread(workers[i], "OpenLoopWorker-" + i);
+				workerThreads[i].start();
+			}
+		}
+		System.out.println("Open loop with " + threads + (virtual ? " virtual" : "") + " worker threads");
+
+		for (Thread workerThread : workerThreads) {
+			try {
+				workerThread.join();
+			} catch (InterruptedException e) {
+				e.printStackTrace(System.out);
+			}
+		}
+		//requests which were due but not issued when the run was stopped
+		if (_workload.isStopRequested()) {
+			long stopped = System.nanoTime() - start;
+			long arrival;
+			while ((arrival = claimArrival()) >= 0 && arrival <= stopped)
+				dropped.incrementAndGet();
+		}
+		currentReqCount = (int) issued.get();
+		numOfReq = issued.get();
+		warmupNumOfReq = warmupIssued.get();
+		flag.set(true);
+	}
+
+	/**
+	 * Writes the response times to the statistics file of the open simulation
+	 */
+	void writeStatistics(BufferedWriter out) throws IOException {
+		out.write("Total Response Time: " + responseTimes.getTotal() / 1000.0 + " ms\n");
+		out.write("No. of Requests:  " + responseTimes.getCount() + "\n");
+		out.write("Average Response Time: " + responseTimes.getAverage() / 1000.0 + " ms\n");
+		out.write("Average Queueing Delay: " + queueingDelays.getAverage() / 1000.0 + " ms\n");
+		out.write("50th/99th/99.9th Percentile Response Time: " + responseTimes.getPercentile(50) / 1000.0 + "/"
+				+ responseTimes.getPercentile(99) / 1000.0 + "/" + responseTimes.getPercentile(99.9) / 1000.0
+				+ " ms\n");
+		out.write("Max Response Time: " + responseTimes.getMax() / 1000.0 + " ms\n");
+		out.write("Dropped Requests: " + dropped.get() + "\n");
+	}
+
+	/**
+	 * Returns a one line summary of the response times measured so far
+	 */
+	String getSummary() {
+		DecimalFormat d = new DecimalFormat("#.##");
+		return "NumRequests=" + responseTimes.getCount()
+				+ ", AverageResponseTime(us)=" + d.format(responseTimes.getAverage())
+				+ ", AverageQueueingDelay(us)=" + d.format(queueingDelays.getAverage())
+				+ ", 50thPercentileResponseTime(us)=" + responseTimes.getPercentile(50)
+				+ ", 99thPercentileResponseTime(us)=" + responseTimes.getPercentile(99)
+				+ ", 99.9thPercentileResponseTime(us)=" + responseTimes.getPercentile(99.9)
+				+ ", MaxResponseTime(us)=" + responseTimes.getMax()
+				+ ", DroppedRequests=" + dropped.get();
+	}
+
+	/**
+	 * Worker of the pool. It claims and serves one arrival at a time until the simulation time is over or the run is
+	 * stopped.
+	 */
+	private class OpenLoopWorker implements Runnable {
+		private final int workerId;
+		private DB db;
+		private BufferedWriter updateLog;
+		private BufferedWriter readLog;
+
+		OpenLoopWorker(int workerId) {
+			this.workerId = workerId;
+			String dbname = _props.getProperty(Client.DB_CLIENT_PROPERTY, Client.DB_CLIENT_PROPERTY_DEFAULT);
+			try {
+				db = DBFactory.newDB(dbname, _props);
+				db.init();
+			} catch (UnknownDBException e) {
+				System.out.println("Unknown DB " + dbname);
+				System.exit(0);
+			} catch (DBException e) {
+				e.printStackTrace(System.out);
+				System.exit(0);
+			}
+			String machineid = _props.getProperty(Client.MACHINE_ID_PROPERTY, Client.MACHINE_ID_PROPERTY_DEFAULT);
+			String dir = _props.getProperty(Client.LOG_DIR_PROPERTY, Client.LOG_DIR_PROPERTY_DEFAULT);
+			try {
+				updateLog = new BufferedWriter(new FileWriter(new File(dir + "/update" + machineid + "-" + workerId + ".txt")));
+				readLog = new BufferedWriter(new FileWriter(new File(dir + "/read" + machineid + "-" + workerId + ".txt")));
+			} catch (IOException e) {
+				e.printStackTrace(System.out);
+			}
+		}
+
+		public void run() {
+			StringBuilder updateTestLog = new StringBuilder();
+			StringBuilder readTestLog = new StringBuilder();
+			long arrival;
+			while ((arrival = claimArrival()) >= 0) {
+				long intended = start + arrival;
+				long wait;
+				//requests which are late are issued right away with their original intended start
+				while ((wait = intended - System.nanoTime()) > 0 && !_workload.isStopRequested())
+					LockSupport.parkNanos(Math.min(wait, MAX_PARK_NANOS));
+				if (_workload.isStopRequested()) {
+					if (wait <= 0)
+						dropped.incrementAndGet();
+					break;
+				}
+				issued.incrementAndGet();
+				if (arrival < warmupNanos)
+					warmupIssued.incrementAndGet();
+				long started = System.nanoTime();
+				updateTestLog.delete(0, updateTestLog.length());
+				readTestLog.delete(0, readTestLog.length());
+				int actsDone = _workload.doTransaction(db, _workloadstate, workerId, updateTestLog, readTestLog,
+						seqID.get(), resUpdateOperations, friendshipInfo, pendingInfo, Worker.thinkTime,
+						Worker.insertImage, _warmup);
+				long finished = System.nanoTime();
+				if (actsDone < 0)
+					System.out.println("Couldnt Service request");
+				//requests intended to start during the warmup are not measured
+				if (arrival >= warmupNanos) {
+					responseTimes.record(TimeUnit.NANOSECONDS.toMicros(finished - intended));
+					queueingDelays.record(TimeUnit.NANOSECONDS.toMicros(started - intended));
+				}
+				actionsDone.getAndAdd(actsDone);
+				opsDone.getAndIncrement();
+				seqID.getAndIncrement();
+				try {
+					if (updateLog != null)
+						updateLog.write(updateTestLog.toString());
+					if (readLog != null)
+						readLog.write(readTestLog.toString());
+				} catch (IOException e) {
+					e.printStackTrace();
+				}
+			}
+			try {
+				db.cleanup(_warmup);
+				if (updateLog != null)
+					updateLog.close();
+				if (readLog != null)
+					readLog.close();
+			} catch (Exception e) {
+				e.printStackTrace(System.out);
+			}
+		}
+	}
+}
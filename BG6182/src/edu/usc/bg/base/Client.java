@@ -194,6 +194,7 @@ public class Client {
 	
 	public static CountDownLatch threadStart; 
 	public static long experimentStartTime=0;
+	private static LoadSchedule loadSchedule = null;
 	private static final String BENCHMARKENDMSG = " THEEND. ";
 	private static final String EXECUTIONDONEMSG = "EXECUTIONDONE";
 	public static final String BG_START_MSG = "Started";
@@ -252,6 +253,13 @@ public class Client {
 	public static final String WARMUP_OP_PROPERTY_DEFAULT = "0";
 	public static final String WARMUP_THREADS_PROPERTY = "warmupthreads";
 	public static final String WARMUP_THREADS_PROPERTY_DEFAULT = "10";
+	//thread: one ClientThread per session; pooled: the threadcount sessions share executorthreads SessionThreads
+	//and wait for their next sequence without holding a thread; virtual: every session on a virtual thread, sharing
+	//executorthreads DB instances like pooled, which it runs as before Java 21
+	public static final String EXECUTOR_PROPERTY = "executor";
+	public static final String EXECUTOR_PROPERTY_DEFAULT = "thread";
+	public static final String EXECUTOR_THREADS_PROPERTY = "executorthreads";
+	public static final String EXECUTOR_THREADS_PROPERTY_DEFAULT = "100";
 	public static final String PORT_PROPERTY = "port";
 	public static final String PORT_PROPERTY_DEFAULT = "10655";
 	public static final String DB_CLIENT_PROPERTY = "db";
@@ -264,6 +272,21 @@ public class Client {
 	public static final String MONITOR_DURATION_PROPERTY_DEFAULT = "0";
 	public static final String TARGET__PROPERTY = "target";
 	public static final String TARGET_PROPERTY_DEFAULT = "0";
+	//how target is held: schedule issues session n at start + n/target, tokenbucket lets a thread which fell behind
+	//catch up by at most throttleburst sessions
+	public static final String THROTTLE_PROPERTY = "throttle";
+	public static final String THROTTLE_PROPERTY_DEFAULT = RateLimiter.SCHEDULE;
+	public static final String THROTTLE_BURST_PROPERTY = "throttleburst";
+	public static final String THROTTLE_BURST_PROPERTY_DEFAULT = "10";
+	//thread: every thread holds target/threadcount; global: the threads share one limiter holding target
+	public static final String THROTTLE_SCOPE_PROPERTY = "throttlescope";
+	public static final String THROTTLE_SCOPE_PROPERTY_DEFAULT = "thread";
+	//phases of rate@seconds or from-to@seconds sessions/sec which replace target, see LoadSchedule
+	public static final String LOAD_SCHEDULE_PROPERTY = "loadschedule";
+	public static final String LOAD_SCHEDULE_FILE_PROPERTY = "loadschedulefile";
+	//highest 99th percentile session time in microseconds with which a phase of the load schedule counts as sustained
+	public static final String LOAD_SCHEDULE_SLA_PROPERTY = "loadschedulesla";
+	public static final String LOAD_SCHEDULE_SLA_PROPERTY_DEFAULT = "1000000";
 	public static final String LOG_DIR_PROPERTY = "logdir";
 	public static final String LOG_DIR_PROPERTY_DEFAULT = ".";
 	public static final String PROBS_PROPERTY = "probs";
@@ -282,6 +305,13 @@ public class Client {
 	public static final String DISTRITYPE_PROPERTY_DEFAULT  = "1";
 	public static final String LAMBDA_PROPERTY_DEFAULT  = "10"; //req/sec
 	public static final String SIM_WARMUP_TIME_PROPERTY_DEFAULT  = "0"; //ms
+	//scheduled: arrivals follow a precomputed timeline and are served by a fixed pool of openloopthreads workers,
+	//latency is measured from the intended start, with executor=virtual the workers run on virtual threads;
+	//queue: the original queue which grows up to 500 workers
+	public static final String OPEN_LOOP_ENGINE_PROPERTY  = "openloopengine";
+	public static final String OPEN_LOOP_ENGINE_PROPERTY_DEFAULT  = "scheduled";
+	public static final String OPEN_LOOP_THREADS_PROPERTY  = "openloopthreads";
+	public static final String OPEN_LOOP_THREADS_PROPERTY_DEFAULT  = "100";
 	
 	//DB.get constants
 	private final String AVG_PENDING_PER_USER = "avgpendingperuser";
@@ -598,6 +628,11 @@ public class Client {
 			printer.write("OVERALL", "actcount(actions)", actcount);
 
 			printer.write("OVERALL", "Throughput(actions/sec)", actthroughput);
+			int target = Integer.parseInt(props.getProperty(TARGET__PROPERTY, TARGET_PROPERTY_DEFAULT));
+			if (target > 0) {
+				printer.write("OVERALL", "RequestedThroughput(sessions/sec)", target);
+				printer.write("OVERALL", "AchievedVsRequested(%)", 100.0 * sessionthroughput / target);
+			}
 			
 	
 		 	System.out.println("OVERALLOPCOUNT(SESSIONS):" + opcount);
@@ -606,6 +641,14 @@ public class Client {
 			System.out.println("OVERALLOPCOUNT(ACTIONS):" + actcount);
 			System.out.println("OVERALLTHROUGHPUT(ACTIONS/SECS):"
 					+ actthroughput);
+			if (target > 0) {
+				System.out.println("REQUESTEDTHROUGHPUT(SESSIONS/SECS):" + target);
+				System.out.println("ACHIEVEDVSREQUESTED(%):" + 100.0 * sessionthroughput / target);
+			}
+			if (loadSchedule != null) {
+				loadSchedule.writeStatistics(printer);
+				System.out.println(LoadSchedule.STATISTICS_NAME + ":" + loadSchedule.getStatistics());
+			}
 
 			//if (benchmarkStats != null) {
 				// the run time and throughput right when the first thread dies
@@ -1371,7 +1414,26 @@ public class Client {
 
 		}
 		else{
-			for (int threadid = 0; threadid < threadCount; threadid++) {
+			String executor = props.getProperty(EXECUTOR_PROPERTY, EXECUTOR_PROPERTY_DEFAULT);
+			SessionThread.Sessions sessions = null;
+			VirtualSessionThread.Sessions virtualSessions = null;
+			int sessionThreads = threadCount;
+			if (!executor.equalsIgnoreCase("thread")) {
+				sessionThreads = Math.min(threadCount, Integer.parseInt(props.getProperty(
+						EXECUTOR_THREADS_PROPERTY, EXECUTOR_THREADS_PROPERTY_DEFAULT)));
+				threadStart = new CountDownLatch(sessionThreads);
+				if (executor.equalsIgnoreCase("virtual") && VirtualThreads.isAvailable()) {
+					virtualSessions = new VirtualSessionThread.Sessions(threadCount, sessionThreads);
+					System.out.println("BG Client: " + threadCount + " sessions on virtual threads sharing "
+							+ sessionThreads + " DB instances");
+				} else {
+					if (executor.equalsIgnoreCase("virtual"))
+						System.out.println("executor=virtual is not supported on this JVM; running executor=pooled");
+					sessions = new SessionThread.Sessions(threadCount);
+					System.out.println("BG Client: " + threadCount + " sessions on " + sessionThreads + " threads");
+				}
+			}
+			for (int threadid = 0; threadid < sessionThreads; threadid++) {
 				DB db = null;
 				try {
 					db = DBFactory.newDB(dbname, props);
@@ -1382,12 +1444,36 @@ public class Client {
 					return false;
 				}
 
-				Thread t = new ClientThread(db, dotransactions, workload,
-						threadid, threadCount, props, opcount / threadCount,
-						targetperthreadperms, false);
+				Thread t;
+				if (virtualSessions != null)
+					t = new VirtualSessionThread(db, workload, threadid, sessionThreads, props, opcount / threadCount,
+							targetperthreadperms, virtualSessions);
+				else if (sessions != null)
+					t = new SessionThread(db, workload, threadid, sessionThreads, props, opcount / threadCount,
+							targetperthreadperms, sessions);
+				else
+					t = new ClientThread(db, dotransactions, workload,
+							threadid, threadCount, props, opcount / threadCount,
+							targetperthreadperms, false);
 
 				threads.add(t);
 			}
+			if (targetperthreadperms > 0 && props.getProperty(THROTTLE_SCOPE_PROPERTY,
+					THROTTLE_SCOPE_PROPERTY_DEFAULT).equalsIgnoreCase("global")) {
+				RateLimiter limiter = RateLimiter.create(props, targetperthreadperms * threadCount);
+				for (Thread t : threads)
+					((ClientThread) t).setRateLimiter(limiter);
+			}
+			try {
+				loadSchedule = LoadSchedule.create(props, workload);
+			} catch (IllegalArgumentException e) {
+				System.out.println(e.getMessage());
+				System.out.println(EXECUTIONDONEMSG);
+				return false;
+			}
+			if (loadSchedule != null)
+				for (Thread t : threads)
+					((ClientThread) t).setLoadSchedule(loadSchedule);
 
 			st = System.currentTimeMillis();
 
@@ -1418,6 +1504,9 @@ public class Client {
 			t.start();
 		}
 
+		if (loadSchedule != null)
+			loadSchedule.start();
+
 		//if(simType.equalsIgnoreCase("closed")){
 		Thread terminator = null;
 
@@ -1475,6 +1564,11 @@ public class Client {
 			} catch (InterruptedException e) {
 			}
 		}
+		//the logs for validation are written per SessionThread or VirtualSessionThread
+		if (threads.size() < threadCount) {
+			props.setProperty(THREAD_CNT_PROPERTY, Integer.toString(threads.size()));
+			threadCount = threads.size();
+		}
 		}else{
 			for (Thread t : threads) {
 				try {
@@ -40,6 +40,8 @@ public class ClientThread extends Thread {
 	Workload _workload;
 	int _opcount;
 	double _target;
+	RateLimiter _limiter; //null when the operations are not throttled
+	LoadSchedule _schedule; //null unless the run follows a load schedule
 
 	boolean _warmup; //identifies if this thread is a warmup thread,m if it is it does not issue updates.
 	int _opsdone=0; //sessions
@@ -94,6 +96,7 @@ public class ClientThread extends Thread {
 		_opcount = opcount;
 		_opsdone = 0;
 		_target = targetperthreadperms;
+		_limiter = _target > 0 ? RateLimiter.create(props, _target) : null;
 		_threadid = threadid;
 		_threadcount = threadcount;
 		_props = props;
@@ -121,6 +124,21 @@ public class ClientThread extends Thread {
 		}
 	}
 
+	/**
+	 * Throttles this thread with the given limiter instead of its own one, e.g. one shared by all threads
+	 */
+	void setRateLimiter(RateLimiter limiter) {
+		_limiter = limiter;
+	}
+
+	/**
+	 * Throttles this thread by the schedule and counts its sessions in the phases of the schedule
+	 */
+	void setLoadSchedule(LoadSchedule schedule) {
+		_schedule = schedule;
+		setRateLimiter(schedule.getRateLimiter());
+	}
+
 	public int getOpsDone() {
 		return _opsdone;
 	}
@@ -163,7 +181,6 @@ public class ClientThread extends Thread {
 
 		try {
 			if (_dotransactions) {
-				long st = System.currentTimeMillis();
 				int seqID = 0; // needed for determining staleness in
 								// granularity of users
 				int thinkTime = 0;
@@ -200,6 +217,8 @@ public class ClientThread extends Thread {
 				while (((_opcount == 0) || (_actionsDone < _opcount))
 						&& !_workload.isStopRequested()) {
 					
+					// throttle the operations
+					long due = _limiter != null ? _limiter.acquire() : System.nanoTime();
 					sleep(interarrivalTime);
 					updateTestLog.delete(0, updateTestLog.length());
 					readTestLog.delete(0, readTestLog.length());
@@ -219,35 +238,18 @@ public class ClientThread extends Thread {
 
 					_opsdone++; //keeps a track of the number of sessions/sequences done
 					_actionsDone+=actsDone;  //keeps a track of the number of actual successful actions done
-					
-
-					// throttle the operations
-					if (_target > 0) {
-						// this is more accurate than other throttling
-						// approaches we have tried,
-						// like sleeping for (1/target throughput)-operation
-						// latency,
-						// because it smooths timing inaccuracies (from sleep()
-						// taking an int,
-						// current time in millis) over many operations
-						while (System.currentTimeMillis() - st < ((double) _opsdone)
-								/ _target) {
-							try {
-								sleep(1);
-							} catch (InterruptedException e) {
-								// do nothing.
-							}
-
-						}
-					}
+					if (_schedule != null)
+						_schedule.record(due, actsDone);
 				}
 				
 			} else {
-				long st = System.currentTimeMillis();
-
 				while (((_opcount == 0) || (_opsdone < _opcount))
 						&& !_workload.isStopRequested()) {
 
+					// throttle the operations
+					if (_limiter != null)
+						_limiter.acquire();
+
 					if (!_workload.doInsert(_db, _workloadstate)) {
 						//break;
 						System.out.println("Insertion failed. Make sure the appropriate data store schema" +
@@ -255,25 +257,6 @@ public class ClientThread extends Thread {
 						System.exit(-1);
 					}
 					_opsdone++;
-
-					// throttle the operations
-					if (_target > 0) {
-						// this is more accurate than other throttling
-						// approaches we have tried,
-						// like sleeping for (1/target throughput)-operation
-						// latency,
-						// because it smoothens timing inaccuracies (from sleep()
-						// taking an int,
-						// current time in millis) over many operations
-						while (System.currentTimeMillis() - st < ((double) _opsdone)
-								/ _target) {
-							try {
-								sleep(1);
-							} catch (InterruptedException e) {
-								// do nothing.
-							}
-						}
-					}
 				}
 
 			}
@@ -0,0 +1,260 @@
+package edu.usc.bg.base;
+
+import edu.usc.bg.measurements.LatencyHistogram;
+import edu.usc.bg.measurements.StatsPrinter;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.text.DecimalFormat;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Changes the target throughput of a run over time, phase by phase, and measures every phase on its own.
+ * A phase is written rate@seconds to hold rate sessions per second, or from-to@seconds to ramp from one rate to the
+ * other. Phases are separated by commas in the loadschedule property, or by new lines in the loadschedulefile, e.g.
+ * 1000@30,1000-8000@60,20000@5,1000@30 holds 1000 sessions/sec, ramps up to 8000, spikes to 20000 and recovers.
+ * All threads draw their sessions from one RateLimiter; this thread sets its rate and requests the workload to stop
+ * once the last phase is over. A phase is sustained if it reaches its rate, does not fall behind and keeps the 99th
+ * percentile session time within the loadschedulesla.
+ */
+public class LoadSchedule extends Thread {
+	static final String STATISTICS_NAME = "LOADSCHEDULE";
+	//a phase is sustained if its throughput is at least this share of the requested one and it ends with a backlog of
+	//at most the rest of its sessions
+	private static final double SUSTAINED_SHARE = 0.95;
+	//the percentile of the session time which has to be within the SLA
+	private static final double SLA_PERCENTILE = 99;
+	//how often the rate is changed during a ramp
+	private static final long STEP_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+	private final Phase[] phases;
+	private final RateLimiter limiter;
+	private final Workload workload;
+	//highest SLA_PERCENTILE session time of a sustained phase in microseconds
+	private final long slaMicros;
+	//the last phase which has started
+	private volatile int current = 0;
+
+	/**
+	 * One phase of the schedule and its measurements
+	 */
+	static final class Phase {
+		final double fromRate;
+		final double toRate;
+		final long durationMs;
+		final LongAdder sessions = new LongAdder();
+		final LongAdder actions = new LongAdder();
+		//from the time the session was due on the schedule, so falling behind it shows up as latency
+		final LatencyHistogram sessionTimes = new LatencyHistogram();
+		volatile long start;
+		volatile long end;
+		//sessions due but not started when the phase ended
+		volatile long backlog;
+
+		Phase(double fromRate, double toRate, long durationMs) {
+			this.fromRate = fromRate;
+			this.toRate = toRate;
+			this.durationMs = durationMs;
+		}
+
+		double rateAt(long elapsedNanos) {
+			return fromRate + (toRate - fromRate) * Math.min(elapsedNanos, TimeUnit.MILLISECONDS.toNanos(durationMs))
+					/ TimeUnit.MILLISECONDS.toNanos(durationMs);
+		}
+
+		double getRequestedThroughput() {
+			return (fromRate + toRate) / 2;
+		}
+
+		double getRunTime() {
+			return (double) TimeUnit.NANOSECONDS.toMillis((end > 0 ? end : System.nanoTime()) - start);
+		}
+
+		double getThroughput(long count) {
+			return getRunTime() > 0 ? 1000.0 * count / getRunTime() : 0;
+		}
+
+		boolean isSustained(long slaMicros) {
+			return end > 0 && getThroughput(sessions.sum()) >= SUSTAINED_SHARE * getRequestedThroughput()
+					&& backlog <= (1 - SUSTAINED_SHARE) * getRequestedThroughput() * durationMs / 1000
+					&& sessionTimes.getPercentile(SLA_PERCENTILE) <= slaMicros;
+		}
+	}
+
+	LoadSchedule(List<Phase> phases, Properties props, Workload workload) {
+		super("LoadSchedule");
+		this.phases = phases.toArray(new Phase[phases.size()]);
+		this.limiter = RateLimiter.create(props, this.phases[0].fromRate / 1000.0);
+		this.workload = workload;
+		this.slaMicros = Long.parseLong(props.getProperty(Client.LOAD_SCHEDULE_SLA_PROPERTY,
+				Client.LOAD_SCHEDULE_SLA_PROPERTY_DEFAULT));
+	}
+
+	/**
+	 * Creates the schedule given by the loadschedule or loadschedulefile property
+	 *
+	 * @return null if neither is set
+	 * @throws IllegalArgumentException if a phase or the SLA cannot be parsed or the file cannot be read
+	 */
+	public static LoadSchedule create(Properties props, Workload workload) {
+		String schedule = props.getProperty(Client.LOAD_SCHEDULE_PROPERTY);
+		String file = props.getProperty(Client.LOAD_SCHEDULE_FILE_PROPERTY);
+		List<String> specs = new ArrayList<String>();
+		if (file != null) {
+			try {
+				specs.addAll(Files.readAllLines(Paths.get(file), StandardCharsets.UTF_8));
+			} catch (IOException e) {
+				throw new IllegalArgumentException("Could not read " + Client.LOAD_SCHEDULE_FILE_PROPERTY + " " + file, e);
+			}
+		} else if (schedule != null) {
+			for (String spec : schedule.split(","))
+				specs.add(spec);
+		} else {
+			return null;
+		}
+		List<Phase> phases = new ArrayList<Phase>();
+		for (String spec : specs) {
+			spec = spec.trim();
+			if (!spec.isEmpty() && !spec.startsWith("#"))
+				phases.add(parsePhase(spec));
+		}
+		if (phases.isEmpty())
+			throw new IllegalArgumentException("The load schedule has no phases");
+		return new LoadSchedule(phases, props, workload);
+	}
+
+	static Phase parsePhase(String spec) {
+		try {
+			String[] rateAndTime = spec.split("@");
+			if (rateAndTime.length != 2)
+				throw new IllegalArgumentException("Expected rate@seconds or from-to@seconds but got " + spec);
+			String[] rates = rateAndTime[0].split("-");
+			double from = Double.parseDouble(rates[0].trim());
+			double to = rates.length > 1 ? Double.parseDouble(rates[1].trim()) : from;
+			long durationMs = (long) (Double.parseDouble(rateAndTime[1].trim()) * 1000);
+			if (from <= 0 || to <= 0 || durationMs <= 0 || rates.length > 2)
+				throw new IllegalArgumentException("Rates and duration must be positive in phase " + spec);
+			return new Phase(from, to, durationMs);
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Expected rate@seconds or from-to@seconds but got " + spec, e);
+		}
+	}
+
+	public RateLimiter getRateLimiter() {
+		return limiter;
+	}
+
+	/**
+	 * Counts a session in the phase it was due in, so sessions which fall behind the schedule still count for the
+	 * load that caused them. Sessions due after the schedule is over are not counted.
+	 *
+	 * @param due
+	 *            The System.nanoTime() the session was due on the schedule.
+	 * @param actions
+	 *            The number of actions of the session.
+	 */
+	public void record(long due, int actions) {
+		int last = current;
+		//the last phase which started before the session was due, the first one for sessions due before it started
+		int low = 0;
+		int high = last;
+		while (low < high) {
+			int mid = (low + high + 1) >>> 1;
+			if (phases[mid].start - due <= 0)
+				low = mid;
+			else
+				high = mid - 1;
+		}
+		Phase phase = phases[low];
+		long end = phase.end;
+		if (low == last && end > 0 && due - end >= 0)
+			return;
+		phase.sessions.increment();
+		phase.actions.add(actions);
+		phase.sessionTimes.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - due));
+	}
+
+	public void run() {
+		for (int i = 0; i < phases.length && !workload.isStopRequested(); i++) {
+			Phase phase = phases[i];
+			phase.start = System.nanoTime();
+			current = i;
+			System.out.println("Load schedule phase " + (i + 1) + ": " + phase.fromRate
+					+ (phase.toRate != phase.fromRate ? "-" + phase.toRate : "") + " sessions/sec for "
+					+ phase.durationMs / 1000.0 + " secs");
+			long end = phase.start + TimeUnit.MILLISECONDS.toNanos(phase.durationMs);
+			double rate = 0;
+			long now;
+			while ((now = System.nanoTime()) < end && !workload.isStopRequested()) {
+				double next = phase.rateAt(now - phase.start);
+				if (next != rate) {
+					limiter.setRate(next / 1000.0);
+					rate = next;
+				}
+				LockSupport.parkNanos(Math.min(end - now, STEP_NANOS));
+			}
+			phase.backlog = limiter.getBacklog();
+			phase.end = System.nanoTime();
+		}
+		System.out.println("Load schedule is over. Requesting stop for the workload.");
+		workload.requestStop();
+	}
+
+	/**
+	 * Returns the highest requested throughput of a sustained phase, 0 if none was sustained
+	 */
+	double getHighestSustainedThroughput() {
+		double highest = 0;
+		for (Phase phase : phases)
+			if (phase.isSustained(slaMicros))
+				highest = Math.max(highest, phase.getRequestedThroughput());
+		return highest;
+	}
+
+	/**
+	 * Returns one line with the measurements of every phase which has started
+	 */
+	String getStatistics() {
+		DecimalFormat d = new DecimalFormat("#.##");
+		StringBuilder ret = new StringBuilder();
+		for (int i = 0; i < phases.length && phases[i].start > 0; i++) {
+			Phase phase = phases[i];
+			ret.append("Phase").append(i + 1)
+					.append("(RequestedThroughput(sessions/sec)=").append(d.format(phase.getRequestedThroughput()))
+					.append(", Throughput(sessions/sec)=").append(d.format(phase.getThroughput(phase.sessions.sum())))
+					.append(", Throughput(actions/sec)=").append(d.format(phase.getThroughput(phase.actions.sum())))
+					.append(", AverageSessionTime(us)=").append(d.format(phase.sessionTimes.getAverage()))
+					.append(", 99thPercentileSessionTime(us)=").append(phase.sessionTimes.getPercentile(99))
+					.append(", Backlog(sessions)=").append(phase.backlog)
+					.append(") ");
+		}
+		return ret.append("HighestSustainedThroughput(sessions/sec)=").append(d.format(getHighestSustainedThroughput()))
+				.toString();
+	}
+
+	/**
+	 * Writes the measurements of every phase which has ended
+	 */
+	void writeStatistics(StatsPrinter printer) throws IOException {
+		for (int i = 0; i < phases.length && phases[i].end > 0; i++) {
+			Phase phase = phases[i];
+			String metric = "PHASE" + (i + 1);
+			printer.write(metric, "RunTime(ms)", phase.getRunTime());
+			printer.write(metric, "RequestedThroughput(sessions/sec)", phase.getRequestedThroughput());
+			printer.write(metric, "Throughput(sessions/sec)", phase.getThroughput(phase.sessions.sum()));
+			printer.write(metric, "Throughput(actions/sec)", phase.getThroughput(phase.actions.sum()));
+			printer.write(metric, "AverageSessionTime(us)", phase.sessionTimes.getAverage());
+			printer.write(metric, "50thPercentileSessionTime(us)", phase.sessionTimes.getPercentile(50));
+			printer.write(metric, "99thPercentileSessionTime(us)", phase.sessionTimes.getPercentile(99));
+			printer.write(metric, "Backlog(sessions)", phase.backlog);
+		}
+		printer.write(STATISTICS_NAME, "HighestSustainedThroughput(sessions/sec)", getHighestSustainedThroughput());
+	}
+}
@@ -0,0 +1,184 @@
+package edu.usc.bg.base;
+
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Throttles sessions to a target rate using System.nanoTime() and LockSupport.parkNanos.
+ * One instance may be used by a single thread or shared by all of them; permits are handed out in order either way.
+ * schedule: permit n is due at start + n / rate. A thread which falls behind gets its permits right away until it
+ * is back on schedule, so timing inaccuracies never add up.
+ * tokenbucket: the bucket fills at the rate and holds at most throttleburst permits, so a thread which falls behind
+ * only catches up by that many permits.
+ */
+public abstract class RateLimiter {
+	public static final String SCHEDULE = "schedule";
+	public static final String TOKEN_BUCKET = "tokenbucket";
+
+	volatile double intervalNanos;
+
+	RateLimiter(double permitsPerMs) {
+		intervalNanos = interval(permitsPerMs);
+	}
+
+	static double interval(double permitsPerMs) {
+		return TimeUnit.MILLISECONDS.toNanos(1) / permitsPerMs;
+	}
+
+	/**
+	 * Creates the limiter chosen by the throttle property
+	 *
+	 * @param props
+	 *            The properties defining the experiment.
+	 * @param permitsPerMs
+	 *            Target number of permits per ms.
+	 */
+	public static RateLimiter create(Properties props, double permitsPerMs) {
+		String throttle = props.getProperty(Client.THROTTLE_PROPERTY, Client.THROTTLE_PROPERTY_DEFAULT);
+		if (throttle.equalsIgnoreCase(TOKEN_BUCKET))
+			return new TokenBucket(permitsPerMs, Integer.parseInt(props.getProperty(Client.THROTTLE_BURST_PROPERTY,
+					Client.THROTTLE_BURST_PROPERTY_DEFAULT)));
+		return new Schedule(permitsPerMs);
+	}
+
+	/**
+	 * Waits until the next permit is due. The first permit is due right away.
+	 * Returns early if the thread is interrupted.
+	 *
+	 * @return the System.nanoTime() at which the permit was due
+	 */
+	public abstract long acquire();
+
+	/**
+	 * Changes the rate for the permits not yet handed out
+	 *
+	 * @param permitsPerMs
+	 *            Target number of permits per ms.
+	 */
+	public abstract void setRate(double permitsPerMs);
+
+	/**
+	 * Returns the number of permits which are due but not handed out yet, i.e. how far the threads are behind
+	 */
+	public abstract long getBacklog();
+
+	static void parkUntil(long due) {
+		long wait;
+		while ((wait = due - System.nanoTime()) > 0 && !Thread.currentThread().isInterrupted())
+			LockSupport.parkNanos(wait);
+	}
+
+	static final class Schedule extends RateLimiter {
+		private final AtomicReference<State> state;
+
+		/**
+		 * Permit first is due at start, the following ones every intervalNanos, and next is the permit handed out next.
+		 * Taking a permit and changing the rate both replace the whole state with compareAndSet, so every permit is
+		 * timed with the rate it was taken under.
+		 */
+		private static final class State {
+			private final boolean started;
+			private final long start;
+			private final long first;
+			private final double intervalNanos;
+			private final long next;
+
+			State(boolean started, long start, long first, double intervalNanos, long next) {
+				this.started = started;
+				this.start = start;
+				this.first = first;
+				this.intervalNanos = intervalNanos;
+				this.next = next;
+			}
+
+			long due(long permit) {
+				return start + (long) ((permit - first) * intervalNanos);
+			}
+		}
+
+		Schedule(double permitsPerMs) {
+			super(permitsPerMs);
+			state = new AtomicReference<State>(new State(false, 0, 0, intervalNanos, 0));
+		}
+
+		public long acquire() {
+			State current;
+			State taken;
+			do {
+				current = state.get();
+				//the schedule starts with the first permit
+				taken = current.started
+						? new State(true, current.start, current.first, current.intervalNanos, current.next + 1)
+						: new State(true, System.nanoTime(), current.next, current.intervalNanos, current.next + 1);
+			} while (!state.compareAndSet(current, taken));
+			long due = taken.due(taken.next - 1);
+			parkUntil(due);
+			return due;
+		}
+
+		public void setRate(double permitsPerMs) {
+			double interval = interval(permitsPerMs);
+			intervalNanos = interval;
+			State current;
+			State changed;
+			do {
+				current = state.get();
+				//the schedule goes on from the next permit, so a thread which is behind still catches up
+				changed = current.started
+						? new State(true, current.due(current.next), current.next, interval, current.next)
+						: new State(false, 0, 0, interval, 0);
+			} while (!state.compareAndSet(current, changed));
+		}
+
+		public long getBacklog() {
+			State current = state.get();
+			if (!current.started)
+				return 0;
+			return Math.max(0, current.first + (long) ((System.nanoTime() - current.start) / current.intervalNanos) + 1
+					- current.next);
+		}
+	}
+
+	static final class TokenBucket extends RateLimiter {
+		private final int burst;
+		private double burstNanos;
+		//when the bucket has the next permit, as an offset from the start
+		private double next;
+		private long start;
+
+		TokenBucket(double permitsPerMs, int burst) {
+			super(permitsPerMs);
+			this.burst = Math.max(burst, 1);
+			burstNanos = this.burst * intervalNanos;
+		}
+
+		public long acquire() {
+			long due;
+			synchronized (this) {
+				long now = System.nanoTime();
+				if (start == 0)
+					start = now;
+				//permits not taken while the bucket was full are lost
+				next = Math.max(next, now - start - burstNanos + intervalNanos);
+				due = start + (long) next;
+				next += intervalNanos;
+			}
+			parkUntil(due);
+			return due;
+		}
+
+		public synchronized void setRate(double permitsPerMs) {
+			intervalNanos = interval(permitsPerMs);
+			burstNanos = burst * intervalNanos;
+		}
+
+		//permits which were not taken in time are dropped, only the bucket can be behind
+		public synchronized long getBacklog() {
+			if (start == 0)
+				return 0;
+			return Math.max(0, (long) ((System.nanoTime() - start - next) / intervalNanos) + 1);
+		}
+	}
+}
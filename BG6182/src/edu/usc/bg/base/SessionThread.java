@@ -0,0 +1,155 @@
+package edu.usc.bg.base;
+
+import java.io.IOException;
+import java.util.Properties;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A thread which runs the sessions of many simulated members instead of one.
+ * A session does not hold a thread while it waits for its next sequence: it waits in a queue shared by all
+ * SessionThreads and the first free thread runs it once it is due. Many thousands of sessions need only the memory
+ * of their counters, while the number of threads, DB instances and log files stays at executorthreads.
+ * Think time between the actions of one sequence is still spent on the thread.
+ */
+public class SessionThread extends ClientThread {
+	//longest wait for a session before checking if the run was stopped
+	private static final long POLL_MILLIS = 100;
+
+	private final Sessions sessions;
+
+	/**
+	 * A simulated member session and its counters
+	 */
+	static final class Session implements Delayed {
+		private final long start = System.nanoTime();
+		private long due = start;
+		private int opsDone = 0;
+		private int actionsDone = 0;
+
+		public long getDelay(TimeUnit unit) {
+			return unit.convert(due - System.nanoTime(), TimeUnit.NANOSECONDS);
+		}
+
+		public int compareTo(Delayed other) {
+			return Long.compare(due, ((Session) other).due);
+		}
+	}
+
+	/**
+	 * The sessions shared by a group of SessionThreads
+	 */
+	public static final class Sessions {
+		private final DelayQueue<Session> queue = new DelayQueue<Session>();
+		private final AtomicInteger live;
+
+		/**
+		 * @param count the number of sessions, all due right away
+		 */
+		public Sessions(int count) {
+			live = new AtomicInteger(count);
+			for (int i = 0; i < count; i++)
+				queue.add(new Session());
+		}
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param db
+	 *            The DB implementation of this thread, shared by the sessions it runs.
+	 * @param workload
+	 *            The workload to use.
+	 * @param threadid
+	 *            The id of this thread.
+	 * @param threadcount
+	 *            The total number of threads.
+	 * @param props
+	 *            The properties defining the experiment.
+	 * @param opcount
+	 *            The number of actions each session does.
+	 * @param targetperthreadperms
+	 *            Target number of sequences per session per ms.
+	 * @param sessions
+	 *            The sessions shared with the other threads.
+	 */
+	public SessionThread(DB db, Workload workload, int threadid, int threadcount, Properties props, int opcount,
+			double targetperthreadperms, Sessions sessions) {
+		super(db, true, workload, threadid, threadcount, props, opcount, targetperthreadperms, false);
+		this.sessions = sessions;
+		//sessions are throttled one by one unless the threads are given a shared limiter
+		_limiter = null;
+	}
+
+	public void run() {
+		try {
+			int seqID = 0; // needed for determining staleness in granularity of users
+			int thinkTime = Integer.parseInt(_props.getProperty(Client.THINK_TIME_PROPERTY,
+					Client.THINK_TIME_PROPERTY_DEFAULT));
+			boolean insertImage = Boolean.parseBoolean(_props.getProperty(Client.INSERT_IMAGE_PROPERTY,
+					Client.INSERT_IMAGE_PROPERTY_DEFAULT));
+			long interarrivalTime = TimeUnit.MILLISECONDS.toNanos(Integer.parseInt(_props.getProperty(
+					Client.INTERARRIVAL_TIME_PROPERTY, Client.INTERARRIVAL_TIME_PROPERTY_DEFAULT)));
+			StringBuilder updateTestLog = new StringBuilder();
+			StringBuilder readTestLog = new StringBuilder();
+			Client.threadStart.countDown();
+			Client.threadStart.await();
+			Client.experimentStartTime = System.currentTimeMillis();
+
+			while (sessions.live.get() > 0 && !_workload.isStopRequested()) {
+				Session session = sessions.queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+				if (session == null)
+					continue;
+				long due = _limiter != null ? _limiter.acquire() : session.due;
+
+				updateTestLog.delete(0, updateTestLog.length());
+				readTestLog.delete(0, readTestLog.length());
+				int actsDone = _workload.doTransaction(_db, _workloadstate, _threadid, updateTestLog, readTestLog,
+						seqID, resUpdateOperations, friendshipInfo, pendingInfo, thinkTime, insertImage, _warmup);
+				if (actsDone < 0) {
+					//the session ends like its ClientThread would
+					sessions.live.decrementAndGet();
+					continue;
+				}
+
+				seqID++;
+				if (updateLog != null)
+					updateLog.write(updateTestLog.toString());
+				if (readLog != null)
+					readLog.write(readTestLog.toString());
+				_opsdone++;
+				_actionsDone += actsDone;
+				session.opsDone++;
+				session.actionsDone += actsDone;
+				if (_schedule != null)
+					_schedule.record(due, actsDone);
+
+				if (_opcount != 0 && session.actionsDone >= _opcount) {
+					sessions.live.decrementAndGet();
+					continue;
+				}
+				session.due = System.nanoTime() + interarrivalTime;
+				// throttle the session like a ClientThread, by the time its sequences should have taken
+				if (_target > 0 && _limiter == null)
+					session.due = Math.max(session.due,
+							session.start + (long) (session.opsDone / _target * TimeUnit.MILLISECONDS.toNanos(1)));
+				sessions.queue.add(session);
+			}
+		} catch (Exception e) {
+			e.printStackTrace(System.out);
+			System.exit(0);
+		}
+
+		try {
+			cleanup();
+			if (updateLog != null)
+				updateLog.close();
+			if (readLog != null)
+				readLog.close();
+		} catch (IOException e) {
+			e.printStackTrace(System.out);
+		}
+	}
+}
@@ -0,0 +1,184 @@
+package edu.usc.bg.base;
+
+import java.io.IOException;
+import java.util.Properties;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Holds one DB instance, its log files and its workload state for sessions which run on virtual threads.
+ * Every session is a virtual thread of its own which waits for its next sequence (interarrivaltime, target) without
+ * holding a platform thread or a DB. For the sequence it takes a free VirtualSessionThread, runs the sequence with its
+ * DB and logs, and hands it back. Many thousands of sessions need only a virtual thread and their counters, while the
+ * number of DB instances and log files stays at executorthreads like with SessionThread.
+ * Think time between the actions of one sequence is still spent holding the DB.
+ */
+public class VirtualSessionThread extends ClientThread {
+	private final Sessions sessions;
+	private int seqID = 0; // needed for determining staleness in granularity of users
+	private final StringBuilder updateTestLog = new StringBuilder();
+	private final StringBuilder readTestLog = new StringBuilder();
+
+	/**
+	 * The sessions shared by a group of VirtualSessionThreads and the DBs free to run their sequences
+	 */
+	public static final class Sessions {
+		private final int count;
+		private final BlockingQueue<VirtualSessionThread> free;
+		private final CountDownLatch done;
+		//the limiter shared by all threads, null while every session is throttled on its own
+		private volatile RateLimiter limiter;
+
+		/**
+		 * @param count the number of sessions
+		 * @param threads the number of VirtualSessionThreads
+		 */
+		public Sessions(int count, int threads) {
+			this.count = count;
+			free = new ArrayBlockingQueue<VirtualSessionThread>(threads);
+			done = new CountDownLatch(count);
+		}
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param db
+	 *            The DB implementation of this thread, shared by the sessions it runs sequences for.
+	 * @param workload
+	 *            The workload to use.
+	 * @param threadid
+	 *            The id of this thread.
+	 * @param threadcount
+	 *            The total number of threads.
+	 * @param props
+	 *            The properties defining the experiment.
+	 * @param opcount
+	 *            The number of actions each session does.
+	 * @param targetperthreadperms
+	 *            Target number of sequences per session per ms.
+	 * @param sessions
+	 *            The sessions shared with the other threads.
+	 */
+	public VirtualSessionThread(DB db, Workload workload, int threadid, int threadcount, Properties props,
+			int opcount, double targetperthreadperms, Sessions sessions) {
+		super(db, true, workload, threadid, threadcount, props, opcount, targetperthreadperms, false);
+		this.sessions = sessions;
+		//sessions are throttled one by one unless the threads are given a shared limiter
+		_limiter = null;
+		sessions.free.add(this);
+	}
+
+	void setRateLimiter(RateLimiter limiter) {
+		super.setRateLimiter(limiter);
+		sessions.limiter = limiter;
+	}
+
+	/**
+	 * Waits until the sessions are over, the first thread starts them
+	 */
+	public void run() {
+		try {
+			Client.threadStart.countDown();
+			Client.threadStart.await();
+			Client.experimentStartTime = System.currentTimeMillis();
+			if (_threadid == 0)
+				for (int i = 0; i < sessions.count; i++)
+					VirtualThreads.start(new Session());
+			sessions.done.await();
+		} catch (Exception e) {
+			e.printStackTrace(System.out);
+			System.exit(1);
+		}
+
+		try {
+			cleanup();
+			if (updateLog != null)
+				updateLog.close();
+			if (readLog != null)
+				readLog.close();
+		} catch (IOException e) {
+			e.printStackTrace(System.out);
+		}
+	}
+
+	/**
+	 * Runs one sequence of a session with the DB and logs of this thread
+	 *
+	 * @param due
+	 *            The System.nanoTime() the sequence was due.
+	 * @return the number of actions done, negative if the session has to end
+	 */
+	private int runSequence(long due, int thinkTime, boolean insertImage) throws IOException {
+		updateTestLog.delete(0, updateTestLog.length());
+		readTestLog.delete(0, readTestLog.length());
+		int actsDone = _workload.doTransaction(_db, _workloadstate, _threadid, updateTestLog, readTestLog, seqID,
+				resUpdateOperations, friendshipInfo, pendingInfo, thinkTime, insertImage, _warmup);
+		if (actsDone < 0)
+			return actsDone;
+
+		seqID++;
+		if (updateLog != null)
+			updateLog.write(updateTestLog.toString());
+		if (readLog != null)
+			readLog.write(readTestLog.toString());
+		_opsdone++;
+		_actionsDone += actsDone;
+		if (_schedule != null)
+			_schedule.record(due, actsDone);
+		return actsDone;
+	}
+
+	/**
+	 * A simulated member session on a virtual thread of its own
+	 */
+	private final class Session implements Runnable {
+		public void run() {
+			try {
+				int thinkTime = Integer.parseInt(_props.getProperty(Client.THINK_TIME_PROPERTY,
+						Client.THINK_TIME_PROPERTY_DEFAULT));
+				boolean insertImage = Boolean.parseBoolean(_props.getProperty(Client.INSERT_IMAGE_PROPERTY,
+						Client.INSERT_IMAGE_PROPERTY_DEFAULT));
+				long interarrivalTime = TimeUnit.MILLISECONDS.toNanos(Integer.parseInt(_props.getProperty(
+						Client.INTERARRIVAL_TIME_PROPERTY, Client.INTERARRIVAL_TIME_PROPERTY_DEFAULT)));
+				long start = System.nanoTime();
+				long due = start;
+				int opsDone = 0;
+				int actionsDone = 0;
+				while (!_workload.isStopRequested()) {
+					RateLimiter limiter = sessions.limiter;
+					if (limiter != null)
+						due = limiter.acquire();
+					else
+						RateLimiter.parkUntil(due);
+
+					VirtualSessionThread thread = sessions.free.take();
+					int actsDone;
+					try {
+						actsDone = thread.runSequence(due, thinkTime, insertImage);
+					} finally {
+						sessions.free.add(thread);
+					}
+					//the session ends like its ClientThread would
+					if (actsDone < 0)
+						break;
+					opsDone++;
+					actionsDone += actsDone;
+					if (_opcount != 0 && actionsDone >= _opcount)
+						break;
+
+					due = System.nanoTime() + interarrivalTime;
+					// throttle the session like a ClientThread, by the time its sequences should have taken
+					if (_target > 0 && limiter == null)
+						due = Math.max(due, start + (long) (opsDone / _target * TimeUnit.MILLISECONDS.toNanos(1)));
+				}
+			} catch (Exception e) {
+				e.printStackTrace(System.out);
+				System.exit(1);
+			}
+			sessions.done.countDown();
+		}
+	}
+}
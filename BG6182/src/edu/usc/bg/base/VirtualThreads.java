@@ -0,0 +1,61 @@
+package edu.usc.bg.base;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+/**
+ * Starts virtual threads on JVMs which have them. BG is built for Java 8 while virtual threads need Java 21, so they
+ * are created through reflection.
+ */
+public final class VirtualThreads {
+	//Thread.ofVirtual() and Thread.Builder.start(Runnable), null before Java 21
+	private static final Method OF_VIRTUAL;
+	private static final Method START;
+
+	static {
+		Method ofVirtual = null;
+		Method start = null;
+		try {
+			ofVirtual = Thread.class.getMethod("ofVirtual");
+			start = Class.forName("java.lang.Thread$Builder").getMethod("start", Runnable.class);
+			//virtual threads are a preview feature before Java 21 and fail unless previews are enabled
+			ofVirtual.invoke(null);
+		} catch (NoSuchMethodException | ClassNotFoundException | IllegalAccessException
+				| InvocationTargetException e) {
+			ofVirtual = null;
+			start = null;
+		}
+		OF_VIRTUAL = ofVirtual;
+		START = start;
+	}
+
+	private VirtualThreads() {
+	}
+
+	/**
+	 * Returns whether this JVM has virtual threads
+	 */
+	public static boolean isAvailable() {
+		return OF_VIRTUAL != null;
+	}
+
+	/**
+	 * Starts a virtual thread
+	 *
+	 * @param task
+	 *            What the thread runs.
+	 * @return the started thread
+	 * @throws IllegalStateException if this JVM has no virtual threads or the thread could not be started
+	 */
+	public static Thread start(Runnable task) {
+		if (!isAvailable())
+			throw new IllegalStateException("This JVM has no virtual threads");
+		try {
+			return (Thread) START.invoke(OF_VIRTUAL.invoke(null), task);
+		} catch (IllegalAccessException e) {
+			throw new IllegalStateException("Could not start a virtual thread", e);
+		} catch (InvocationTargetException e) {
+			throw new IllegalStateException("Could not start a virtual thread", e.getCause());
+		}
+	}
+}
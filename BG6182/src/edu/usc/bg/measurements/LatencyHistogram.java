@@ -0,0 +1,94 @@
+package edu.usc.bg.measurements;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts latencies in buckets so that percentiles can be reported without keeping every latency.
+ * Latencies below 64 us are counted exactly, larger ones in buckets which are at most 1/32 of the latency wide.
+ * Safe to be shared between threads.
+ */
+public class LatencyHistogram
+{
+	private static final int EXACT_BUCKETS = 64;
+	private static final int SUB_BUCKET_BITS = 5;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	private static final int BUCKETS = EXACT_BUCKETS + (Long.SIZE - 7) * SUB_BUCKETS;
+
+	private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+	private final AtomicLong count = new AtomicLong();
+	private final AtomicLong sum = new AtomicLong();
+	private final AtomicLong max = new AtomicLong();
+
+	/**
+	 * Adds one latency
+	 * @param latency latency in us, negative latencies count as 0
+	 */
+	public void record(long latency)
+	{
+		latency = Math.max(latency, 0);
+		buckets.incrementAndGet(bucket(latency));
+		count.incrementAndGet();
+		sum.addAndGet(latency);
+		max.accumulateAndGet(latency, Math::max);
+	}
+
+	public long getCount()
+	{
+		return count.get();
+	}
+
+	public long getTotal()
+	{
+		return sum.get();
+	}
+
+	public double getAverage()
+	{
+		long n = count.get();
+		return n == 0 ? 0 : ((double) sum.get()) / n;
+	}
+
+	public long getMax()
+	{
+		return max.get();
+	}
+
+	/**
+	 * Returns the latency below which the given share of the latencies lie
+	 * @param percentile between 0 and 100
+	 * @return the upper bound of the bucket holding the percentile, in us
+	 */
+	public long getPercentile(double percentile)
+	{
+		long n = count.get();
+		if (n == 0)
+			return 0;
+		long rank = Math.max((long) Math.ceil(n * percentile / 100.0), 1);
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; i++)
+		{
+			seen += buckets.get(i);
+			if (seen >= rank)
+				return Math.min(upperBound(i), getMax());
+		}
+		return getMax();
+	}
+
+	private static int bucket(long latency)
+	{
+		if (latency < EXACT_BUCKETS)
+			return (int) latency;
+		int shift = Long.SIZE - 1 - Long.numberOfLeadingZeros(latency) - SUB_BUCKET_BITS;
+		return EXACT_BUCKETS + (shift - 1) * SUB_BUCKETS + (int) (latency >> shift) - SUB_BUCKETS;
+	}
+
+	private static long upperBound(int bucket)
+	{
+		if (bucket < EXACT_BUCKETS)
+			return bucket;
+		int shift = (bucket - EXACT_BUCKETS) / SUB_BUCKETS + 1;
+		long subBucket = (bucket - EXACT_BUCKETS) % SUB_BUCKETS + SUB_BUCKETS;
+		return ((subBucket + 1) << shift) - 1;
+	}
+}
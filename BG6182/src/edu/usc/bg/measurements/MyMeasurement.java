@@ -26,7 +26,10 @@ import java.text.DecimalFormat;
 import java.util.ConcurrentModificationException;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Supplier;
 import java.util.Vector;
 
 /**
@@ -41,6 +44,11 @@ public class MyMeasurement
 	static Vector<MyMeasurement> allMeasurements=new Vector<MyMeasurement>();
 	static String fileNameToken = "latency";
 	static double expectedLatency;
+	/**
+	 * statistics of the data store binding, e.g. cache counters, by name
+	 * they are printed after the operations in the summary and the final results
+	 */
+	static Map<String, Supplier<String>> dbStatistics = new ConcurrentSkipListMap<String, Supplier<String>>();
 		
 	/**
 	 * creates a measurement tracker for each thread 
@@ -82,6 +90,16 @@ public class MyMeasurement
 		return new OpMeasurementTracker(name, out, expectedLatency);
 	}
 
+	/**
+	 * Adds statistics of the data store binding to the reports
+	 * @param name the name printed in front of the statistics
+	 * @param statistics returns the current statistics as one line
+	 */
+	public static void addDBStatistics(String name, Supplier<String> statistics)
+	{
+		dbStatistics.put(name, statistics);
+	}
+
 	/**
 	 * Adds the latency observed for the operation 
 	 */
@@ -148,6 +166,9 @@ public class MyMeasurement
 				double report=((double)totalWindowLatency)/((double)totalWindowOps);
 				ret += "["+opType+" AverageResponseTime(us)="+d.format(report)+"]";
 			}
+			for(Map.Entry<String, Supplier<String>> stats : dbStatistics.entrySet()){
+				ret += "["+stats.getKey()+" "+stats.getValue().get()+"]";
+			}
 		}
 		catch(ConcurrentModificationException e)
 		{
@@ -216,6 +237,9 @@ public class MyMeasurement
 				ret +="NumOperations="+totalOps+", AverageResponseTime(us)="+d.format(report)+", MinResponseTime(us)="+min+", MaxResponseTime(us)="+max+"\n";
 				ret += rets+"\n";
 			}
+			for(Map.Entry<String, Supplier<String>> stats : dbStatistics.entrySet()){
+				ret += "["+stats.getKey()+"]"+stats.getValue().get()+"\n";
+			}
 			return ret;
 		}
 		
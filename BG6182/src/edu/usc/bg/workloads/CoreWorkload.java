@@ -29,6 +29,7 @@ import java.util.Random;
 import java.util.Set;
 import java.util.Vector;
 import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicIntegerArray;
 
 import edu.usc.bg.BGMainClass;
 import edu.usc.bg.Member;
@@ -436,11 +437,12 @@ public class CoreWorkload extends Workload
 	public static HashMap<String, Integer> initStats = new HashMap<String, Integer>();
 
 	private static int numShards = 101;
-	private static char[][] userStatusShards;
-	private static Semaphore[] uStatSemaphores;
+	//a user is activated by a compareAndSet from INACTIVE to ACTIVE, so threads never wait for each other
+	private static final int INACTIVE = 0;
+	private static final int ACTIVE = 1;
+	private static AtomicIntegerArray[] userStatusShards;
 	//keeps a track of user frequency of access
-	private static int[][] userFreqShards;
-	private static Semaphore[] uFreqSemaphores;
+	private static AtomicIntegerArray[] userFreqShards;
 	private static DistOfAccess myDist;
 	private static Member[] myMemberObjs;	
 
@@ -549,11 +551,8 @@ public class CoreWorkload extends Workload
 	}
 	
 	private void createInternalDSFragments() {
-		userStatusShards = new char[numShards][];
-		uStatSemaphores = new Semaphore[numShards];
-
-		userFreqShards = new int[numShards][];
-		uFreqSemaphores = new Semaphore[numShards];
+		userStatusShards = new AtomicIntegerArray[numShards];
+		userFreqShards = new AtomicIntegerArray[numShards];
 
 		int avgShardSize = usercount/numShards;
 		int remainingMembers = usercount-(avgShardSize*numShards);
@@ -561,14 +560,9 @@ public class CoreWorkload extends Workload
 			int numShardUsers = avgShardSize;
 			if(i<remainingMembers)
 				numShardUsers++;
-			userStatusShards[i] = new char[numShardUsers];
-			userFreqShards[i] = new int[numShardUsers];
-			for(int j=0; j<numShardUsers; j++){
-				userStatusShards[i][j]='d';
-				userFreqShards[i][j]=0;
-			}
-			uStatSemaphores[i] = new Semaphore(1, true);
-			uFreqSemaphores[i] = new Semaphore(1, true);
+			//all users start INACTIVE and with no accesses
+			userStatusShards[i] = new AtomicIntegerArray(numShardUsers);
+			userFreqShards[i] = new AtomicIntegerArray(numShardUsers);
 		}
 	}
 	/**
@@ -3018,73 +3012,27 @@ return true;
 
 	public int isActive(int uid){
 		//if active return -1 
-		//else return 0
+		//else activate it and return 0
 		int actualIdx = memberIdxs.get(uid);
 		int shardIdx = myMemberObjs[actualIdx].get_shardIdx();
 		int idxInShard = myMemberObjs[actualIdx].get_idxInShard();
-
-		try {
-			uStatSemaphores[shardIdx].acquire();
-			if (userStatusShards[shardIdx][idxInShard] == 'a'){
-				//user is active
-				uStatSemaphores[shardIdx].release();
-				return -1;
-			}else{
-				//user is not active
-				//activate it
-				userStatusShards[shardIdx][idxInShard] = 'a';
-				uStatSemaphores[shardIdx].release();
-				return 0;
-			}	
-		} catch (Exception e) {
-			System.out.println("Error-Cant activate any user");
-			e.printStackTrace(System.out);
-			System.exit(-1);
-		}
-		return -1;
+		return userStatusShards[shardIdx].compareAndSet(idxInShard, INACTIVE, ACTIVE) ? 0 : -1;
 	}
 
 	public int activateUser(int uid)
 	{
-		try {
-			int actualIdx = memberIdxs.get(uid);
-			int shardIdx = myMemberObjs[actualIdx].get_shardIdx();
-			int idxInShard = myMemberObjs[actualIdx].get_idxInShard();
-			uStatSemaphores[shardIdx].acquire();
-			int cnt =0; //needed for avoiding loops
-			//int shardscnt = 0;
-			//find a free member within this shard
-			while (userStatusShards[shardIdx][idxInShard] != 'd'){
-				if(cnt == userStatusShards[shardIdx].length){
-					uStatSemaphores[shardIdx].release();
-					/*shardscnt ++;
-					if(shardscnt == numShards){ //went through all the shards once
-						return -1;
-					}
-					shardIdx = (shardIdx+1)%numShards;
-					cnt = 0;
-					idxInShard = 0;
-					actualIdx = numShards*idxInShard+shardIdx;
-					uid = myMemberObjs[actualIdx].get_uid();
-					uStatSemaphores[shardIdx].acquire();
-					continue;*/
-					return -1;
-				}
-				idxInShard = (idxInShard+1);
-				idxInShard = idxInShard%userStatusShards[shardIdx].length;
-				//map to actual idx
-				actualIdx = numShards*idxInShard+shardIdx;
-				uid = myMemberObjs[actualIdx].get_uid();
-				cnt++;
-			}
-			userStatusShards[shardIdx][idxInShard] ='a';
-			uStatSemaphores[shardIdx].release();
-		} catch (Exception e) {
-			System.out.println("Error-Cant activate any user");
-			e.printStackTrace(System.out);
-			System.exit(-1);
+		int actualIdx = memberIdxs.get(uid);
+		int shardIdx = myMemberObjs[actualIdx].get_shardIdx();
+		int idxInShard = myMemberObjs[actualIdx].get_idxInShard();
+		AtomicIntegerArray shard = userStatusShards[shardIdx];
+		//find a free member within this shard, starting with the chosen one
+		for (int cnt = 0; cnt < shard.length(); cnt++) {
+			//read before the compareAndSet so that busy members are skipped without writing to their cache line
+			if (shard.get(idxInShard) == INACTIVE && shard.compareAndSet(idxInShard, INACTIVE, ACTIVE))
+				return myMemberObjs[numShards*idxInShard+shardIdx].get_uid();
+			idxInShard = (idxInShard+1)%shard.length();
 		}
-		return uid;
+		return -1;
 	}
 
 
@@ -3093,21 +3041,8 @@ return true;
 		int actualIdx = memberIdxs.get(uid);
 		int shardIdx = myMemberObjs[actualIdx].get_shardIdx();
 		int idxInShard = myMemberObjs[actualIdx].get_idxInShard();
-
-		try {
-			uStatSemaphores[shardIdx].acquire();
-			if (userStatusShards[shardIdx][idxInShard] == 'd') {
-				System.out.println("Error - The user is already deactivated");	
-			}
-			userStatusShards[shardIdx][idxInShard]='d'; //Mark as available
-			uStatSemaphores[shardIdx].release();
-		} catch (Exception e) {
-			System.out.println("Error - couldnt deactivate user");
-			e.printStackTrace(System.out);
-			System.exit(-1);
-		}
-
-		return ;
+		if (userStatusShards[shardIdx].getAndSet(idxInShard, INACTIVE) == INACTIVE) //Mark as available
+			System.out.println("Error - The user is already deactivated");
 	}
 
 	public void incrUserRef(int uid)
@@ -3115,16 +3050,7 @@ return true;
 		int actualIdx = memberIdxs.get(uid);
 		int shardIdx = myMemberObjs[actualIdx].get_shardIdx();
 		int idxInShard = myMemberObjs[actualIdx].get_idxInShard();		
-		try {
-			uFreqSemaphores[shardIdx].acquire();
-			userFreqShards[shardIdx][idxInShard]=userFreqShards[shardIdx][idxInShard]+1;  
-			uFreqSemaphores[shardIdx].release();
-		} catch (Exception e) {
-			System.out.println("Error-Cant increament users frequency of access");
-			e.printStackTrace(System.out);
-			System.exit(-1);
-		}
-		return;
+		userFreqShards[shardIdx].incrementAndGet(idxInShard);
 	}
 
 
@@ -3160,7 +3086,7 @@ return true;
 		StringBuilder userFreqStats =new StringBuilder();
 		//int sum = 0;
 		for(int i=0; i<myMemberObjs.length; i++){
-			userFreqStats.append(myMemberObjs[i].get_uid()+" ,"+userFreqShards[myMemberObjs[i].get_shardIdx()][myMemberObjs[i].get_idxInShard()]+System.getProperty("line.separator"));
+			userFreqStats.append(myMemberObjs[i].get_uid()+" ,"+userFreqShards[myMemberObjs[i].get_shardIdx()].get(myMemberObjs[i].get_idxInShard())+System.getProperty("line.separator"));
 			//sum += userFreqShards[myMemberObjs[i].get_shardIdx()][myMemberObjs[i].get_idxInShard()];	
 		}
 
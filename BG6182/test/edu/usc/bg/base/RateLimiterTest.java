@@ -0,0 +1,74 @@
+package edu.usc.bg.base;
+
+import org.junit.Test;
+
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+
+public class RateLimiterTest {
+	private static final int THREADS = 32;
+	private static final double PERMITS_PER_SEC = 20000;
+	private static final long RUN_MILLIS = 1000;
+	//share of the requested rate the achieved one may be off by
+	private static final double TOLERANCE = 0.05;
+
+	@Test
+	public void testScheduleKeepsRateAcrossThreads() throws Exception {
+		assertRate(RateLimiter.SCHEDULE);
+	}
+
+	@Test
+	public void testTokenBucketKeepsRateAcrossThreads() throws Exception {
+		assertRate(RateLimiter.TOKEN_BUCKET);
+	}
+
+	private static void assertRate(String throttle) throws InterruptedException {
+		Properties props = new Properties();
+		props.setProperty(Client.THROTTLE_PROPERTY, throttle);
+		RateLimiter limiter = RateLimiter.create(props, PERMITS_PER_SEC / 1000);
+		double rate = run(limiter);
+		assertEquals(throttle, PERMITS_PER_SEC, rate, TOLERANCE * PERMITS_PER_SEC);
+	}
+
+	/**
+	 * Lets the threads acquire permits from one limiter for RUN_MILLIS
+	 *
+	 * @return the permits handed out per second
+	 */
+	private static double run(RateLimiter limiter) throws InterruptedException {
+		AtomicLong permits = new AtomicLong();
+		CountDownLatch ready = new CountDownLatch(THREADS);
+		CountDownLatch start = new CountDownLatch(1);
+		CountDownLatch done = new CountDownLatch(THREADS);
+		long[] end = new long[1];
+		for (int i = 0; i < THREADS; i++) {
+			new Thread(() -> {
+				ready.countDown();
+				try {
+					start.await();
+				} catch (InterruptedException e) {
+					return;
+				}
+				long count = 0;
+				while (true) {
+					limiter.acquire();
+					if (System.nanoTime() - end[0] > 0)
+						break;
+					count++;
+				}
+				permits.addAndGet(count);
+				done.countDown();
+			}).start();
+		}
+		ready.await();
+		long begin = System.nanoTime();
+		end[0] = begin + TimeUnit.MILLISECONDS.toNanos(RUN_MILLIS);
+		start.countDown();
+		done.await();
+		return permits.get() * 1e9 / (end[0] - begin);
+	}
+}
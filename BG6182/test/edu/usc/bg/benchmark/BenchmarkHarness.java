@@ -0,0 +1,109 @@
+package edu.usc.bg.benchmark;
+
+/**
+ * Runs the benchmarks of BG and its bindings. JMH is not on the build path, so this class does the part of its work
+ * the benchmarks need: the first iterations only warm up the JIT and are not reported, the following ones are
+ * reported as mean and standard deviation, and results the benchmark does not look at are passed to
+ * {@link #blackhole} so the JIT cannot drop the work producing them.
+ */
+public final class BenchmarkHarness {
+	public static final int WARMUP_ITERATIONS = 3;
+	public static final int MEASUREMENT_ITERATIONS = 5;
+	private static volatile Object sink;
+
+	/**
+	 * One iteration of a benchmark, which repeats the benchmarked work often enough to be timed.
+	 */
+	@FunctionalInterface
+	public interface Iteration {
+		/**
+		 * @return The metrics of the iteration, e.g. operations per second and bytes allocated per operation.
+		 * @throws Exception If the benchmarked work fails.
+		 */
+		double[] run() throws Exception;
+	}
+
+	/**
+	 * The metrics of the measured iterations.
+	 */
+	public static final class Result {
+		private final double[][] samples;
+
+		private Result(double[][] samples) {
+			this.samples = samples;
+		}
+
+		/**
+		 * Returns the mean of a metric over the measured iterations.
+		 *
+		 * @param metric Index into the metrics returned by the iteration.
+		 * @return The mean.
+		 */
+		public double mean(int metric) {
+			double sum = 0;
+			for (double[] sample : samples) {
+				sum += sample[metric];
+			}
+			return sum / samples.length;
+		}
+
+		/**
+		 * Returns the standard deviation of a metric over the measured iterations.
+		 *
+		 * @param metric Index into the metrics returned by the iteration.
+		 * @return The standard deviation.
+		 */
+		public double error(int metric) {
+			double mean = mean(metric);
+			double sum = 0;
+			for (double[] sample : samples) {
+				sum += (sample[metric] - mean) * (sample[metric] - mean);
+			}
+			return Math.sqrt(sum / Math.max(samples.length - 1, 1));
+		}
+
+		/**
+		 * Formats a metric as mean +- standard deviation.
+		 *
+		 * @param metric   Index into the metrics returned by the iteration.
+		 * @param decimals Number of decimals to print.
+		 * @return The formatted metric.
+		 */
+		public String format(int metric, int decimals) {
+			return String.format("%." + decimals + "f +-%." + decimals + "f", mean(metric), error(metric));
+		}
+	}
+
+	private BenchmarkHarness() {
+	}
+
+	/**
+	 * Runs the warmup iterations and then the measured ones.
+	 *
+	 * @param iteration The benchmark.
+	 * @return The metrics of the measured iterations.
+	 * @throws Exception If the benchmarked work fails.
+	 */
+	public static Result measure(Iteration iteration) throws Exception {
+		for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+			iteration.run();
+		}
+		double[][] samples = new double[MEASUREMENT_ITERATIONS][];
+		for (int i = 0; i < MEASUREMENT_ITERATIONS; i++) {
+			samples[i] = iteration.run();
+		}
+		return new Result(samples);
+	}
+
+	/**
+	 * Lets a value escape, so the work producing it or filling it in cannot be dropped as unused.
+	 *
+	 * @param value A result of the benchmarked work, or a container it fills in.
+	 * @param <T>   Type of the value.
+	 * @return The value.
+	 */
+	public static <T> T blackhole(T value) {
+		sink = value;
+		return value;
+	}
+}
@@ -0,0 +1,94 @@
+package edu.usc.bg.workloads;
+
+import edu.usc.bg.base.Client;
+import edu.usc.bg.base.generator.ZipfianGenerator;
+import edu.usc.bg.benchmark.BenchmarkHarness;
+
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Measures how many users CoreWorkload can activate, count and deactivate per second with 1 to 128 threads choosing
+ * the users with a Zipfian distribution, i.e. the bookkeeping every BG session does around its actions. The numbers
+ * are the mean and standard deviation over the measured iterations of {@link BenchmarkHarness}, each of which runs for
+ * the given number of seconds. Run with java -cp ... edu.usc.bg.workloads.UserStatusBenchmark [usercount] [seconds per iteration].
+ */
+public class UserStatusBenchmark {
+	private static final int[] THREAD_COUNTS = {1, 2, 4, 8, 16, 32, 64, 128};
+	/** The users are drawn in advance so that the generator is not measured. */
+	private static final int KEYS = 1 << 16;
+
+	public static void main(String[] args) throws Exception {
+		int usercount = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+		long seconds = args.length > 1 ? Long.parseLong(args[1]) : 1;
+		Properties props = new Properties();
+		props.setProperty(Client.USER_COUNT_PROPERTY, Integer.toString(usercount));
+		props.setProperty(CoreWorkload.REQUEST_DISTRIBUTION_PROPERTY, "uniform");
+		CoreWorkload workload = new CoreWorkload();
+		workload.init(props, null);
+		ZipfianGenerator keychooser = new ZipfianGenerator(usercount);
+		int[] keys = new int[KEYS];
+		for (int i = 0; i < KEYS; i++) {
+			keys[i] = keychooser.nextInt();
+		}
+
+		System.out.println(String.format("%-8s %24s %16s", "threads", "activations/s", "none free %"));
+		for (int threads : THREAD_COUNTS) {
+			BenchmarkHarness.Result result = BenchmarkHarness.measure(() -> run(workload, keys, threads, seconds));
+			System.out.println(String.format("%-8d %24s %16s", threads, result.format(0, 0), result.format(1, 2)));
+		}
+	}
+
+	/**
+	 * Lets the threads activate, count and deactivate users for the given time.
+	 *
+	 * @return Users activated per second and the share of activations which found no free user in percent.
+	 */
+	private static double[] run(CoreWorkload workload, int[] keys, int threads, long seconds)
+			throws InterruptedException {
+		LongAdder activated = new LongAdder();
+		LongAdder noneFree = new LongAdder();
+		AtomicBoolean stop = new AtomicBoolean();
+		CountDownLatch ready = new CountDownLatch(threads);
+		CountDownLatch start = new CountDownLatch(1);
+		CountDownLatch done = new CountDownLatch(threads);
+		for (int i = 0; i < threads; i++) {
+			final int offset = i * (KEYS / threads);
+			new Thread(() -> {
+				long count = 0;
+				long failed = 0;
+				ready.countDown();
+				try {
+					start.await();
+				} catch (InterruptedException e) {
+					return;
+				}
+				for (int k = offset; !stop.get(); k = (k + 1) % KEYS) {
+					int uid = workload.activateUser(keys[k]);
+					if (uid == -1) {
+						failed++;
+						continue;
+					}
+					workload.incrUserRef(uid);
+					workload.deactivateUser(uid);
+					count++;
+				}
+				activated.add(count);
+				noneFree.add(failed);
+				done.countDown();
+			}).start();
+		}
+		ready.await();
+		long st = System.nanoTime();
+		start.countDown();
+		Thread.sleep(TimeUnit.SECONDS.toMillis(seconds));
+		stop.set(true);
+		done.await();
+		long elapsed = System.nanoTime() - st;
+		return new double[]{activated.sum() * 1e9 / elapsed,
+				100.0 * noneFree.sum() / Math.max(activated.sum() + noneFree.sum(), 1)};
+	}
+}